@@ -0,0 +1,440 @@
+package com.benchmark;
+
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.mangocube.corenut.commons.bean.BeanCopier;
+import org.mangocube.corenut.commons.bean.BeanDescriber;
+import org.mangocube.corenut.commons.bean.BeanLifecycle;
+import org.mangocube.corenut.commons.bean.BeanFieldUtil;
+import org.mangocube.corenut.commons.bean.BeanPropertyUtil;
+import org.mangocube.corenut.commons.bean.CompiledPropertyPath;
+import org.mangocube.corenut.commons.bean.CompositeKeyProperties;
+import org.mangocube.corenut.commons.bean.InstanceFactory;
+import org.mangocube.corenut.commons.util.ClassUtils;
+
+/**
+ * Benchmarks of the bean package over an order graph of nested beans, a list, a map and an array: property paths,
+ * field access, bean description, factory lookups and instance creation.
+ * <p/>
+ * "factory.cacheByKey.slowCreate" is the contention case of the factory: threads create instances of 32 keys of
+ * one class with an onCreate of 1ms, each instance is evicted right after, so every operation creates.
+ * <p/>
+ * "copier.*" copy an order into an OrderView by field name, "copier.copyAll" copies a list of {@value #COPY_ALL_SIZE}
+ * orders per operation. "copier.reflective" is the same copy written with BeanFieldUtil, the way it was done before
+ * BeanCopier.
+ * <p/>
+ * Usage: <code>java com.benchmark.BeanBenchmark [threads, e.g. 1,2,4] [name filter]</code>
+ * <p/>
+ * Compare the output with bean-baseline.txt of this package, taken on the machine noted there. Numbers of
+ * different machines are not comparable, run the baseline commit and the change on the same machine.
+ */
+public class BeanBenchmark {
+
+	public static void main(String[] args) throws Exception {
+		int[] threads = { 1, 2, 4 };
+		if (args.length > 0) {
+			String[] counts = args[0].split(",");
+			threads = new int[counts.length];
+			for (int i = 0; i < counts.length; i++) {
+				threads[i] = Integer.parseInt(counts[i].trim());
+			}
+		}
+		String filter = args.length > 1 ? args[1] : "";
+
+		Benchmark.Options options = new Benchmark.Options().warmup(3).measure(5, 1000).threads(threads);
+		System.out.println(Benchmark.HEADER);
+		for (Benchmark benchmark : benchmarks()) {
+			if (benchmark.getName().contains(filter)) {
+				for (Benchmark.Result result : benchmark.run(options)) {
+					System.out.println(result);
+				}
+			}
+		}
+	}
+
+	static List<Benchmark> benchmarks() {
+		final Order order = newOrder();
+		final Map<String, Object> mapBean = newMapBean(order);
+		final BeanPropertyUtil propertyUtil = new BeanPropertyUtil();
+		final BeanFieldUtil fieldUtil = new BeanFieldUtil();
+		final CompiledPropertyPath nestedPath = propertyUtil.compile("customer.address.city");
+		final BeanDescriber describer = new BeanDescriber();
+		final InstanceFactory<Object> cachedFactory = newFactory(InstanceFactory.InstanceManage.CACHE_BY_KEY);
+		final InstanceFactory<Object> pooledFactory = newFactory(InstanceFactory.InstanceManage.POOLED);
+		pooledFactory.setMaxPoolSize(64);
+		final EvictingFactory slowFactory = newSlowFactory(SLOW_KEYS);
+		final AtomicInteger slowKey = new AtomicInteger();
+		final List<Order> orders = new ArrayList<Order>();
+		for (int i = 0; i < COPY_ALL_SIZE; i++) {
+			orders.add(newOrder());
+		}
+
+		List<Benchmark> benchmarks = new ArrayList<Benchmark>();
+		benchmarks.add(new Benchmark("property.simple") {
+			protected Object run() {
+				return propertyUtil.getPropertyValue(order, "code");
+			}
+		});
+		benchmarks.add(new Benchmark("property.nested") {
+			protected Object run() {
+				return propertyUtil.getPropertyValue(order, "customer.address.city");
+			}
+		});
+		benchmarks.add(new Benchmark("property.nested.compiled") {
+			protected Object run() {
+				return nestedPath.getValue(order);
+			}
+		});
+		benchmarks.add(new Benchmark("property.list") {
+			protected Object run() {
+				return propertyUtil.getPropertyValue(order, "lines[2].product.name");
+			}
+		});
+		benchmarks.add(new Benchmark("property.array") {
+			protected Object run() {
+				return propertyUtil.getPropertyValue(order, "tags[1]");
+			}
+		});
+		benchmarks.add(new Benchmark("property.map") {
+			protected Object run() {
+				return propertyUtil.getPropertyValue(order, "attributes.channel");
+			}
+		});
+		benchmarks.add(new Benchmark("property.mapBacked") {
+			protected Object run() {
+				return propertyUtil.getPropertyValue(mapBean, "customer.address.city");
+			}
+		});
+		benchmarks.add(new Benchmark("field.get") {
+			protected Object run() {
+				return fieldUtil.retrieveBeanField(order, "code");
+			}
+		});
+		benchmarks.add(new Benchmark("field.set") {
+			protected Object run() {
+				fieldUtil.setBeanField(order, "quantity", 3);
+				return order;
+			}
+		});
+		benchmarks.add(new Benchmark("describer.order") {
+			protected Object run() {
+				return describer.describe(order);
+			}
+		});
+		benchmarks.add(new Benchmark("factory.cacheByKey") {
+			protected Object run() {
+				return cachedFactory.getInstance("service", "order", "query");
+			}
+		});
+		benchmarks.add(new Benchmark("factory.cacheByKey.upperLevel") {
+			protected Object run() {
+				return cachedFactory.getInstance("service", "order", "export", "csv");
+			}
+		});
+		benchmarks.add(new Benchmark("factory.cacheByKey.slowCreate") {
+			protected Object run() {
+				String key = "k" + (slowKey.getAndIncrement() & (SLOW_KEYS - 1));
+				Object service = slowFactory.getInstance("slow", key);
+				slowFactory.evict("slow/" + key, service);
+				return service;
+			}
+		});
+		benchmarks.add(new Benchmark("factory.pooled") {
+			protected Object run() {
+				Object service = pooledFactory.borrowInstance("service", "order", "query");
+				pooledFactory.returnInstance(service);
+				return service;
+			}
+		});
+		benchmarks.add(new Benchmark("copier.copy") {
+			protected Object run() {
+				return BeanCopier.copy(order, OrderView.class);
+			}
+		});
+		benchmarks.add(new Benchmark("copier.copyAll") {
+			protected Object run() {
+				return BeanCopier.copyAll(orders, OrderView.class);
+			}
+		});
+		benchmarks.add(new Benchmark("copier.reflective") {
+			protected Object run() {
+				OrderView view = new OrderView();
+				for (Field field : fieldUtil.getClassFields(OrderView.class)) {
+					fieldUtil.setBeanField(view, field.getName(), fieldUtil.retrieveBeanField(order, field.getName()));
+				}
+				return view;
+			}
+		});
+		benchmarks.add(new Benchmark("classUtils.createInstance") {
+			protected Object run() throws Exception {
+				return ClassUtils.createInstance(Product.class);
+			}
+		});
+		benchmarks.add(new Benchmark("classUtils.createInstance.args") {
+			protected Object run() throws Exception {
+				return ClassUtils.createInstance(Product.class, "pen", "12");
+			}
+		});
+		return benchmarks;
+	}
+
+	static InstanceFactory<Object> newFactory(InstanceFactory.InstanceManage mgrOpt) {
+		CompositeKeyProperties properties = new CompositeKeyProperties();
+		properties.setProperty("service/order", OrderService.class.getName());
+		properties.setProperty("service/order/query", OrderService.class.getName());
+		properties.setProperty("service/order/export", OrderService.class.getName());
+		properties.setProperty("service/customer", OrderService.class.getName());
+		return new InstanceFactory<Object>(properties, mgrOpt);
+	}
+
+	static final int SLOW_KEYS = 32;
+	static final int COPY_ALL_SIZE = 10;
+
+	static EvictingFactory newSlowFactory(int keys) {
+		CompositeKeyProperties properties = new CompositeKeyProperties();
+		for (int i = 0; i < keys; i++) {
+			properties.setProperty("slow/k" + i, SlowService.class.getName());
+		}
+		return new EvictingFactory(properties);
+	}
+
+	/**
+	 * Cached by key, evicts an instance so the next lookup of its key creates again.
+	 */
+	static class EvictingFactory extends InstanceFactory<Object> {
+		EvictingFactory(CompositeKeyProperties properties) {
+			super(properties, InstanceManage.CACHE_BY_KEY);
+		}
+
+		void evict(String key, Object instance) {
+			instancePool.remove(key, instance);
+		}
+	}
+
+	static Order newOrder() {
+		Order order = new Order();
+		order.setId(10001L);
+		order.setCode("SO-10001");
+		Customer customer = new Customer();
+		customer.setName("Allen");
+		Address address = new Address();
+		address.setCity("Shenzhen");
+		customer.setAddress(address);
+		order.setCustomer(customer);
+		List<OrderLine> lines = new ArrayList<OrderLine>();
+		for (int i = 0; i < 5; i++) {
+			OrderLine line = new OrderLine();
+			line.setQuantity(i + 1);
+			line.setProduct(new Product("product-" + i, 10 * i));
+			lines.add(line);
+		}
+		order.setLines(lines);
+		Map<String, Object> attributes = new HashMap<String, Object>();
+		attributes.put("channel", "web");
+		attributes.put("priority", 2);
+		order.setAttributes(attributes);
+		order.setTags(new String[] { "new", "vip", "gift" });
+		return order;
+	}
+
+	static Map<String, Object> newMapBean(Order order) {
+		Map<String, Object> address = new HashMap<String, Object>();
+		address.put("city", order.getCustomer().getAddress().getCity());
+		Map<String, Object> customer = new HashMap<String, Object>();
+		customer.put("name", order.getCustomer().getName());
+		customer.put("address", address);
+		Map<String, Object> bean = new HashMap<String, Object>();
+		bean.put("code", order.getCode());
+		bean.put("customer", customer);
+		return bean;
+	}
+
+	public static class OrderService {
+	}
+
+	/**
+	 * Service with an expensive onCreate, e.g. opening a remote session.
+	 */
+	public static class SlowService implements BeanLifecycle {
+		public void onCreate() {
+			try {
+				Thread.sleep(1);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+
+		public void onDestroy() {
+		}
+	}
+
+	public static class Order {
+		private long id;
+		private String code;
+		private int quantity;
+		private Customer customer;
+		private List<OrderLine> lines;
+		private Map<String, Object> attributes;
+		private String[] tags;
+
+		public long getId() {
+			return id;
+		}
+
+		public void setId(long id) {
+			this.id = id;
+		}
+
+		public String getCode() {
+			return code;
+		}
+
+		public void setCode(String code) {
+			this.code = code;
+		}
+
+		public int getQuantity() {
+			return quantity;
+		}
+
+		public void setQuantity(int quantity) {
+			this.quantity = quantity;
+		}
+
+		public Customer getCustomer() {
+			return customer;
+		}
+
+		public void setCustomer(Customer customer) {
+			this.customer = customer;
+		}
+
+		public List<OrderLine> getLines() {
+			return lines;
+		}
+
+		public void setLines(List<OrderLine> lines) {
+			this.lines = lines;
+		}
+
+		public Map<String, Object> getAttributes() {
+			return attributes;
+		}
+
+		public void setAttributes(Map<String, Object> attributes) {
+			this.attributes = attributes;
+		}
+
+		public String[] getTags() {
+			return tags;
+		}
+
+		public void setTags(String[] tags) {
+			this.tags = tags;
+		}
+	}
+
+	/**
+	 * Flat view of an order, the id is boxed, lines and attributes are copied into new containers.
+	 */
+	public static class OrderView {
+		private Long id;
+		private String code;
+		private int quantity;
+		private Customer customer;
+		private List<OrderLine> lines;
+		private Map<String, Object> attributes;
+
+		public Long getId() {
+			return id;
+		}
+
+		public String getCode() {
+			return code;
+		}
+
+		public List<OrderLine> getLines() {
+			return lines;
+		}
+	}
+
+	public static class Customer {
+		private String name;
+		private Address address;
+
+		public String getName() {
+			return name;
+		}
+
+		public void setName(String name) {
+			this.name = name;
+		}
+
+		public Address getAddress() {
+			return address;
+		}
+
+		public void setAddress(Address address) {
+			this.address = address;
+		}
+	}
+
+	public static class Address {
+		private String city;
+
+		public String getCity() {
+			return city;
+		}
+
+		public void setCity(String city) {
+			this.city = city;
+		}
+	}
+
+	public static class OrderLine {
+		private int quantity;
+		private Product product;
+
+		public int getQuantity() {
+			return quantity;
+		}
+
+		public void setQuantity(int quantity) {
+			this.quantity = quantity;
+		}
+
+		public Product getProduct() {
+			return product;
+		}
+
+		public void setProduct(Product product) {
+			this.product = product;
+		}
+	}
+
+	public static class Product {
+		private String name;
+		private int price;
+
+		public Product() {
+		}
+
+		public Product(String name, int price) {
+			this.name = name;
+			this.price = price;
+		}
+
+		public String getName() {
+			return name;
+		}
+
+		public int getPrice() {
+			return price;
+		}
+	}
+}
@@ -0,0 +1,174 @@
+package com.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Minimal throughput harness in the manner of JMH: every benchmark is run by 1..N threads, each iteration runs the
+ * operation in a loop for a fixed time after warmup iterations, and results are consumed by a {@link Blackhole} of
+ * the thread so the JIT can't drop the work. Reports the average ops/s of the measured iterations and its error
+ * (min/max).
+ * <p/>
+ * It stands in for JMH because this tree has no build system to bring in the JMH dependency and its annotation
+ * processor. Unlike JMH it doesn't fork a JVM per benchmark, so the profile of earlier benchmarks carries over to
+ * later ones, run a single benchmark by the name filter for numbers free of that. Besides the Blackhole there is no
+ * protection from dead code elimination or constant folding, inputs should be read from fields, not constants.
+ */
+public abstract class Benchmark {
+
+	private final String name;
+
+	protected Benchmark(String name) {
+		this.name = name;
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	/**
+	 * One operation of the benchmark, the result is consumed by the harness.
+	 */
+	protected abstract Object run() throws Exception;
+
+	public static class Options {
+		int warmupIterations = 3;
+		int measureIterations = 5;
+		long iterationMillis = 1000;
+		int[] threads = { 1 };
+
+		public Options warmup(int iterations) {
+			this.warmupIterations = iterations;
+			return this;
+		}
+
+		public Options measure(int iterations, long millis) {
+			this.measureIterations = iterations;
+			this.iterationMillis = millis;
+			return this;
+		}
+
+		public Options threads(int... threads) {
+			this.threads = threads;
+			return this;
+		}
+	}
+
+	public static class Result {
+		final String name;
+		final int threads;
+		final double opsPerSecond;
+		final double min;
+		final double max;
+
+		Result(String name, int threads, double opsPerSecond, double min, double max) {
+			this.name = name;
+			this.threads = threads;
+			this.opsPerSecond = opsPerSecond;
+			this.min = min;
+			this.max = max;
+		}
+
+		public String toString() {
+			return String.format("%-40s %3d %15.0f %15.0f %15.0f", name, threads, opsPerSecond, min, max);
+		}
+	}
+
+	public static final String HEADER = String.format("%-40s %3s %15s %15s %15s", "Benchmark", "Thr", "ops/s", "min",
+			"max");
+
+	/**
+	 * Consumes results the way the JMH Blackhole does: a result is compared with a volatile object it can never be,
+	 * and only rarely stored, so the work can't be eliminated and consuming costs neither a call nor a shared write.
+	 */
+	static final class Blackhole {
+		private volatile Object never = new Object();
+		private int tlr = (int) System.nanoTime();
+		private int tlrMask = 1;
+		private Object stored;
+
+		void consume(Object result) {
+			int mask = tlrMask;
+			int next = tlr = tlr * 1664525 + 1013904223;
+			if ((next & mask) == 0) {
+				stored = result;
+				tlrMask = (mask << 1) + 1;
+			}
+			if (result == never) {
+				throw new IllegalStateException("Result is the blackhole itself");
+			}
+		}
+	}
+
+	private static volatile Blackhole[] blackholes;
+
+	public List<Result> run(Options options) throws Exception {
+		List<Result> results = new ArrayList<Result>();
+		for (int threads : options.threads) {
+			for (int i = 0; i < options.warmupIterations; i++) {
+				iteration(threads, options.iterationMillis);
+			}
+			double total = 0;
+			double min = Double.MAX_VALUE;
+			double max = 0;
+			for (int i = 0; i < options.measureIterations; i++) {
+				double ops = iteration(threads, options.iterationMillis);
+				total += ops;
+				min = Math.min(min, ops);
+				max = Math.max(max, ops);
+			}
+			results.add(new Result(name, threads, total / options.measureIterations, min, max));
+		}
+		return results;
+	}
+
+	/**
+	 * @return ops/s of all threads in one iteration.
+	 */
+	private double iteration(int threads, long millis) throws Exception {
+		final CountDownLatch start = new CountDownLatch(1);
+		final long[] counts = new long[threads];
+		final Exception[] failures = new Exception[threads];
+		final long deadline[] = new long[1];
+		final Blackhole[] holes = new Blackhole[threads];
+		Thread[] workers = new Thread[threads];
+		for (int t = 0; t < threads; t++) {
+			final int index = t;
+			holes[t] = new Blackhole();
+			workers[t] = new Thread(name + "-" + t) {
+				public void run() {
+					try {
+						Blackhole hole = holes[index];
+						start.await();
+						long count = 0;
+						while (System.nanoTime() < deadline[0]) {
+							for (int i = 0; i < 64; i++) {
+								hole.consume(Benchmark.this.run());
+							}
+							count += 64;
+						}
+						counts[index] = count;
+					} catch (Exception e) {
+						failures[index] = e;
+					}
+				}
+			};
+			workers[t].start();
+		}
+		long begin = System.nanoTime();
+		deadline[0] = begin + TimeUnit.MILLISECONDS.toNanos(millis);
+		start.countDown();
+		long total = 0;
+		for (int t = 0; t < threads; t++) {
+			workers[t].join();
+			if (failures[t] != null) {
+				throw failures[t];
+			}
+			total += counts[t];
+		}
+		blackholes = holes;
+		return total * 1e9 / (System.nanoTime() - begin);
+	}
+}
@@ -0,0 +1,329 @@
+package com.benchmark;
+
+import java.io.PrintWriter;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Logger;
+
+import javax.sql.DataSource;
+
+import org.mangocube.corenut.commons.db.connection.DelegatingConnection;
+import org.mangocube.corenut.commons.db.connection.DelegatingPreparedStatement;
+import org.mangocube.corenut.commons.db.connection.DelegatingResultSet;
+import org.mangocube.corenut.commons.db.log.ConnectionLogger;
+import org.mangocube.corenut.commons.db.log.DataSourceWrapperFactoryBean;
+import org.mangocube.corenut.commons.db.log.StatementLogger;
+import org.mangocube.corenut.commons.db.log.StatementStatistics;
+
+/**
+ * Benchmarks of the data source wrapped by {@link DataSourceWrapperFactoryBean} against the dynamic proxies it
+ * used before the typed Logging* wrappers, over an in-memory data source: open a connection, prepare a query, bind
+ * a parameter, read 10 rows and close everything.
+ * <p/>
+ * Usage: <code>java com.benchmark.JdbcWrapperBenchmark [threads, e.g. 1,2,4] [name filter]</code>
+ * <p/>
+ * The proxy handlers are copied from the factory bean before the change, statement logging is on and connection
+ * logging off for both, so the rows differ in the dispatch only. "jdbc.query.raw" is the in-memory data source
+ * itself.
+ */
+public class JdbcWrapperBenchmark {
+
+	private static final String SQL = "select name from orders where id = ?";
+	private static final int ROWS = 10;
+
+	public static void main(String[] args) throws Exception {
+		int[] threads = { 1, 2, 4 };
+		if (args.length > 0) {
+			String[] counts = args[0].split(",");
+			threads = new int[counts.length];
+			for (int i = 0; i < counts.length; i++) {
+				threads[i] = Integer.parseInt(counts[i].trim());
+			}
+		}
+		String filter = args.length > 1 ? args[1] : "";
+
+		StatementLogger.turnOnLog(true);
+		ConnectionLogger.turnOnLog(false);
+		Benchmark.Options options = new Benchmark.Options().warmup(3).measure(5, 1000).threads(threads);
+		System.out.println(Benchmark.HEADER);
+		for (Benchmark benchmark : benchmarks()) {
+			if (benchmark.getName().contains(filter)) {
+				for (Benchmark.Result result : benchmark.run(options)) {
+					System.out.println(result);
+				}
+			}
+		}
+	}
+
+	static List<Benchmark> benchmarks() throws Exception {
+		final DataSource raw = new InMemoryDataSource();
+		DataSourceWrapperFactoryBean factory = new DataSourceWrapperFactoryBean();
+		factory.setDataSourceId("benchmark");
+		factory.setDataSource(raw);
+		final DataSource wrapper = (DataSource) factory.getObject();
+		final DataSource proxy = (DataSource) Proxy.newProxyInstance(JdbcWrapperBenchmark.class.getClassLoader(),
+				new Class[] { DataSource.class }, new DataSourceHandler(raw, "benchmark"));
+
+		List<Benchmark> benchmarks = new ArrayList<Benchmark>();
+		benchmarks.add(new Benchmark("jdbc.query.raw") {
+			protected Object run() throws Exception {
+				return query(raw);
+			}
+		});
+		benchmarks.add(new Benchmark("jdbc.query.wrapper") {
+			protected Object run() throws Exception {
+				return query(wrapper);
+			}
+		});
+		benchmarks.add(new Benchmark("jdbc.query.proxy") {
+			protected Object run() throws Exception {
+				return query(proxy);
+			}
+		});
+		return benchmarks;
+	}
+
+	static String query(DataSource dataSource) throws SQLException {
+		String last = null;
+		Connection con = dataSource.getConnection();
+		try {
+			PreparedStatement stmt = con.prepareStatement(SQL);
+			try {
+				stmt.setInt(1, 10001);
+				ResultSet rs = stmt.executeQuery();
+				try {
+					while (rs.next()) {
+						last = rs.getString(1);
+					}
+				} finally {
+					rs.close();
+				}
+			} finally {
+				stmt.close();
+			}
+		} finally {
+			con.close();
+		}
+		return last;
+	}
+
+	static Object invokeTarget(Method method, Object target, Object[] args) throws Throwable {
+		try {
+			return method.invoke(target, args);
+		} catch (InvocationTargetException e) {
+			throw e.getTargetException();
+		}
+	}
+
+	/**
+	 * Data source handler of the factory bean before the typed wrappers.
+	 */
+	static class DataSourceHandler implements InvocationHandler {
+		private final DataSource dataSource;
+		private final String dataSourceId;
+
+		DataSourceHandler(DataSource dataSource, String dataSourceId) {
+			this.dataSource = dataSource;
+			this.dataSourceId = dataSourceId;
+		}
+
+		public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+			Object result = invokeTarget(method, dataSource, args);
+			if ("getConnection".equals(method.getName()) && result instanceof Connection) {
+				ConnectionLogger.openConnectionLog(result, dataSourceId);
+				result = Proxy.newProxyInstance(JdbcWrapperBenchmark.class.getClassLoader(),
+						new Class[] { Connection.class }, new ConnectionHandler((Connection) result, dataSourceId));
+			}
+			return result;
+		}
+	}
+
+	static class ConnectionHandler implements InvocationHandler {
+		private final Connection con;
+		private final String dataSourceId;
+
+		ConnectionHandler(Connection con, String dataSourceId) {
+			this.con = con;
+			this.dataSourceId = dataSourceId;
+		}
+
+		public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+			Object result = invokeTarget(method, con, args);
+			String methodName = method.getName();
+			if ("close".equals(methodName)) {
+				ConnectionLogger.closeConnectionLog(con, dataSourceId);
+			} else if (result instanceof PreparedStatement && StatementLogger.isLogOn()) {
+				result = Proxy.newProxyInstance(JdbcWrapperBenchmark.class.getClassLoader(),
+						new Class[] { PreparedStatement.class },
+						new StatementHandler((Statement) result, (String) args[0]));
+			}
+			return result;
+		}
+	}
+
+	static class StatementHandler implements InvocationHandler {
+		private final Statement stmt;
+		private final StatementStatistics preparedStats;
+
+		StatementHandler(Statement stmt, String preparedSql) {
+			this.stmt = stmt;
+			this.preparedStats = StatementLogger.getStatistics(preparedSql);
+		}
+
+		public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+			if (!method.getName().startsWith("execute")) {
+				return invokeTarget(method, stmt, args);
+			}
+			boolean failed = true;
+			long start = System.nanoTime();
+			try {
+				Object result = invokeTarget(method, stmt, args);
+				failed = false;
+				if (result instanceof ResultSet) {
+					result = Proxy.newProxyInstance(JdbcWrapperBenchmark.class.getClassLoader(),
+							new Class[] { ResultSet.class }, new ResultSetHandler((ResultSet) result, preparedStats));
+				}
+				return result;
+			} finally {
+				preparedStats.recordExecution(System.nanoTime() - start, failed);
+			}
+		}
+	}
+
+	static class ResultSetHandler implements InvocationHandler {
+		private final ResultSet rs;
+		private final StatementStatistics stats;
+		private long rows = 0;
+		private boolean recorded = false;
+
+		ResultSetHandler(ResultSet rs, StatementStatistics stats) {
+			this.rs = rs;
+			this.stats = stats;
+		}
+
+		public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+			Object result = invokeTarget(method, rs, args);
+			String methodName = method.getName();
+			if ("next".equals(methodName)) {
+				if (Boolean.TRUE.equals(result)) {
+					rows++;
+				} else {
+					record();
+				}
+			} else if ("close".equals(methodName)) {
+				record();
+			}
+			return result;
+		}
+
+		private void record() {
+			if (!recorded) {
+				recorded = true;
+				stats.recordFetchedRows(rows);
+			}
+		}
+	}
+
+	/**
+	 * Hands out connections answering the benchmark query with fixed rows, every other call fails on the missing
+	 * target of the delegating base classes.
+	 */
+	static class InMemoryDataSource implements DataSource {
+		public Connection getConnection() {
+			return new InMemoryConnection();
+		}
+
+		public Connection getConnection(String username, String password) {
+			return new InMemoryConnection();
+		}
+
+		public PrintWriter getLogWriter() {
+			return null;
+		}
+
+		public void setLogWriter(PrintWriter out) {
+		}
+
+		public void setLoginTimeout(int seconds) {
+		}
+
+		public int getLoginTimeout() {
+			return 0;
+		}
+
+		public Logger getParentLogger() throws SQLFeatureNotSupportedException {
+			throw new SQLFeatureNotSupportedException();
+		}
+
+		public <T> T unwrap(Class<T> iface) throws SQLException {
+			throw new SQLException("Not a wrapper");
+		}
+
+		public boolean isWrapperFor(Class<?> iface) {
+			return false;
+		}
+	}
+
+	static class InMemoryConnection extends DelegatingConnection {
+		InMemoryConnection() {
+			super(null);
+		}
+
+		public PreparedStatement prepareStatement(String sql) {
+			return new InMemoryStatement();
+		}
+
+		public void close() {
+		}
+	}
+
+	static class InMemoryStatement extends DelegatingPreparedStatement {
+		private int id;
+
+		InMemoryStatement() {
+			super(null);
+		}
+
+		public void setInt(int parameterIndex, int x) {
+			id = x;
+		}
+
+		public ResultSet executeQuery() {
+			return new InMemoryResultSet(id);
+		}
+
+		public void close() {
+		}
+	}
+
+	static class InMemoryResultSet extends DelegatingResultSet {
+		private final int id;
+		private int row;
+
+		InMemoryResultSet(int id) {
+			super(null);
+			this.id = id;
+		}
+
+		public boolean next() {
+			return ++row <= ROWS;
+		}
+
+		public String getString(int columnIndex) {
+			return row == ROWS ? "order-" + id : "order";
+		}
+
+		public void close() {
+		}
+	}
+}
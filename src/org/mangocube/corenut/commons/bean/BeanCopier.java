@@ -0,0 +1,297 @@
+package org.mangocube.corenut.commons.bean;
+
+import org.mangocube.corenut.commons.exception.ErrorCode;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Copies field values between beans of different classes, e.g. DTO and entity, by field name.
+ * <p/>
+ * A mapping plan is built once per (source class, target class) and cached with the target class. The plan refers
+ * to the source class, so a source class stays loaded as long as any target class it was copied into.
+ * <p/>
+ * A target field is mapped from the same named source field when its type is assignable from the source type, or
+ * is the primitive/wrapper counterpart of it. Collection and map fields are copied into a new container by the
+ * rules of {@link BeanFieldUtil#setBeanField(Object, String, Object)}. Static, transient and unmatched fields are
+ * left untouched, a null wrapper is not copied into a primitive field.
+ * <p/>
+ * Every mapping runs a MethodHandle chain of the field getter and setter, plain fields are copied without boxing.
+ * <pre>
+ * OrderDTO dto = BeanCopier.copy(order, OrderDTO.class);
+ * List&lt;OrderDTO&gt; dtos = BeanCopier.copyAll(orders, OrderDTO.class);
+ * </pre>
+ *
+ * @since 1.0
+ */
+public final class BeanCopier {
+    public enum BeanCopierError {
+        @ErrorCode(comment = "Fail to create instance of [${1}]!")
+        CREATE_TARGET_FAIL,
+
+        @ErrorCode(comment = "Fail to copy field [${1}] from [${2}] to [${3}]!")
+        COPY_FIELD_FAIL
+    }
+
+    private static final MethodHandles.Lookup LOOKUP = MethodHandles.lookup();
+
+    private static final ClassValue<ClassValue<CopyPlan>> PLANS = new ClassValue<ClassValue<CopyPlan>>() {
+        protected ClassValue<CopyPlan> computeValue(final Class<?> sourceClass) {
+            return new ClassValue<CopyPlan>() {
+                protected CopyPlan computeValue(Class<?> targetClass) {
+                    return new CopyPlan(sourceClass, targetClass);
+                }
+            };
+        }
+    };
+
+    private static final ClassValue<MethodHandle> CONSTRUCTORS = new ClassValue<MethodHandle>() {
+        protected MethodHandle computeValue(Class<?> type) {
+            try {
+                java.lang.reflect.Constructor<?> constructor = type.getDeclaredConstructor();
+                constructor.setAccessible(true);
+                return LOOKUP.unreflectConstructor(constructor).asType(MethodType.methodType(Object.class));
+            } catch (Exception e) {
+                return null;
+            }
+        }
+    };
+
+    private BeanCopier() {
+    }
+
+    /**
+     * Copy the matched fields of source into target.
+     *
+     * @param source bean to copy from, must not be null
+     * @param target bean to copy to, must not be null
+     * @return target
+     */
+    public static <T> T copy(Object source, T target) {
+        if (source == null || target == null) {
+            throw new BeanUtilException(BeanFieldUtil.FieldUtilError.BEAN_IS_NULL);
+        }
+        planOf(source.getClass(), target.getClass()).copy(source, target);
+        return target;
+    }
+
+    /**
+     * Copy the matched fields of source into a new instance of target class created by its default constructor.
+     *
+     * @return new target, null if source is null
+     */
+    public static <T> T copy(Object source, Class<T> targetClass) {
+        if (source == null) {
+            return null;
+        }
+        T target = newInstance(targetClass);
+        planOf(source.getClass(), targetClass).copy(source, target);
+        return target;
+    }
+
+    /**
+     * Copy every source into a new instance of target class. The plan is looked up once per run of sources of
+     * the same class, null sources are mapped to null.
+     *
+     * @return new targets in the order of sources
+     */
+    public static <T> List<T> copyAll(List<?> sources, Class<T> targetClass) {
+        List<T> targets = new ArrayList<T>(sources.size());
+        Class<?> planSource = null;
+        CopyPlan plan = null;
+        for (Object source : sources) {
+            if (source == null) {
+                targets.add(null);
+                continue;
+            }
+            if (source.getClass() != planSource) {
+                planSource = source.getClass();
+                plan = planOf(planSource, targetClass);
+            }
+            T target = newInstance(targetClass);
+            plan.copy(source, target);
+            targets.add(target);
+        }
+        return targets;
+    }
+
+    private static CopyPlan planOf(Class<?> sourceClass, Class<?> targetClass) {
+        return PLANS.get(sourceClass).get(targetClass);
+    }
+
+    private static <T> T newInstance(Class<T> type) {
+        MethodHandle constructor = CONSTRUCTORS.get(type);
+        if (constructor == null) {
+            throw new BeanUtilException(BeanCopierError.CREATE_TARGET_FAIL, type.getName());
+        }
+        try {
+            return type.cast((Object) constructor.invokeExact());
+        } catch (RuntimeException e) {
+            throw new BeanUtilException(BeanCopierError.CREATE_TARGET_FAIL, e, type.getName());
+        } catch (Error e) {
+            throw e;
+        } catch (Throwable e) {
+            throw new BeanUtilException(BeanCopierError.CREATE_TARGET_FAIL, e, type.getName());
+        }
+    }
+
+    /**
+     * Field mappings from one source class to one target class.
+     */
+    private static final class CopyPlan {
+        private final Class<?> sourceClass;
+        private final Class<?> targetClass;
+        private final FieldMapping[] mappings;
+
+        CopyPlan(Class<?> sourceClass, Class<?> targetClass) {
+            this.sourceClass = sourceClass;
+            this.targetClass = targetClass;
+
+            BeanFieldUtil.ClassFields sourceFields = BeanFieldUtil.ClassFields.of(sourceClass);
+            BeanFieldUtil.ClassFields targetFields = BeanFieldUtil.ClassFields.of(targetClass);
+            List<FieldMapping> list = new ArrayList<FieldMapping>();
+            Set<String> mapped = new HashSet<String>();
+            for (Field field : targetFields.classFields) {
+                String name = field.getName();
+                if (!mapped.add(name)) continue;
+
+                BeanFieldUtil.FieldAccessor target = targetFields.fields.get(name);
+                BeanFieldUtil.FieldAccessor source = sourceFields.fields.get(name);
+                if (source == null || Modifier.isStatic(source.field.getModifiers())) continue;
+
+                FieldMapping mapping = map(source, target);
+                if (mapping != null) {
+                    list.add(mapping);
+                }
+            }
+            mappings = list.toArray(new FieldMapping[list.size()]);
+        }
+
+        private static FieldMapping map(BeanFieldUtil.FieldAccessor source, BeanFieldUtil.FieldAccessor target) {
+            Class<?> sourceType = source.field.getType();
+            Class<?> targetType = target.field.getType();
+            MethodHandle getter;
+            MethodHandle setter;
+            try {
+                getter = LOOKUP.unreflectGetter(source.field);
+                setter = LOOKUP.unreflectSetter(target.field);
+            } catch (IllegalAccessException e) {
+                return null;
+            }
+
+            if (target.isContainer()) {
+                boolean compatible = Collection.class.isAssignableFrom(targetType)
+                        ? Collection.class.isAssignableFrom(sourceType) || sourceType.isAssignableFrom(Collection.class)
+                        : Map.class.isAssignableFrom(sourceType) || sourceType.isAssignableFrom(Map.class);
+                return compatible ? new ContainerMapping(source.field, target, getter, setter) : null;
+            }
+            if (targetType.isAssignableFrom(sourceType)) {
+                return new DirectMapping(source.field, getter, setter);
+            }
+            if (targetType.isPrimitive() && wrapperOf(targetType) == sourceType) {
+                return new UnboxingMapping(source.field, getter, setter);
+            }
+            if (sourceType.isPrimitive() && wrapperOf(sourceType) == targetType) {
+                return new DirectMapping(source.field, getter, setter.asType(
+                        MethodType.methodType(void.class, target.field.getDeclaringClass(), sourceType)));
+            }
+            return null;
+        }
+
+        void copy(Object source, Object target) {
+            FieldMapping current = null;
+            try {
+                for (FieldMapping mapping : mappings) {
+                    current = mapping;
+                    mapping.copy(source, target);
+                }
+            } catch (RuntimeException e) {
+                throw new BeanUtilException(BeanCopierError.COPY_FIELD_FAIL, e, current.name,
+                        sourceClass.getName(), targetClass.getName());
+            } catch (Error e) {
+                throw e;
+            } catch (Throwable e) {
+                throw new BeanUtilException(BeanCopierError.COPY_FIELD_FAIL, e, current.name,
+                        sourceClass.getName(), targetClass.getName());
+            }
+        }
+    }
+
+    private abstract static class FieldMapping {
+        final String name;
+
+        FieldMapping(Field sourceField) {
+            this.name = sourceField.getName();
+        }
+
+        abstract void copy(Object source, Object target) throws Throwable;
+    }
+
+    /**
+     * Setter filtered by getter, (Object source, Object target) without boxing of the value.
+     */
+    private static final class DirectMapping extends FieldMapping {
+        private final MethodHandle copier;
+
+        DirectMapping(Field sourceField, MethodHandle getter, MethodHandle setter) {
+            super(sourceField);
+            Class<?> valueType = setter.type().parameterType(1);
+            MethodHandle typedSetter = setter.asType(MethodType.methodType(void.class, Object.class, valueType));
+            MethodHandle typedGetter = getter.asType(MethodType.methodType(valueType, Object.class));
+            copier = MethodHandles.filterArguments(typedSetter, 1, typedGetter);
+        }
+
+        void copy(Object source, Object target) throws Throwable {
+            copier.invokeExact(target, source);
+        }
+    }
+
+    private static final class UnboxingMapping extends FieldMapping {
+        private final MethodHandle getter;
+        private final MethodHandle setter;
+
+        UnboxingMapping(Field sourceField, MethodHandle getter, MethodHandle setter) {
+            super(sourceField);
+            this.getter = getter.asType(MethodType.methodType(Object.class, Object.class));
+            this.setter = setter.asType(MethodType.methodType(void.class, Object.class, Object.class));
+        }
+
+        void copy(Object source, Object target) throws Throwable {
+            Object value = getter.invokeExact(source);
+            if (value != null) {
+                setter.invokeExact(target, value);
+            }
+        }
+    }
+
+    private static final class ContainerMapping extends FieldMapping {
+        private final BeanFieldUtil.FieldAccessor target;
+        private final MethodHandle getter;
+        private final MethodHandle setter;
+
+        ContainerMapping(Field sourceField, BeanFieldUtil.FieldAccessor target, MethodHandle getter,
+                         MethodHandle setter) {
+            super(sourceField);
+            this.target = target;
+            this.getter = getter.asType(MethodType.methodType(Object.class, Object.class));
+            this.setter = setter.asType(MethodType.methodType(void.class, Object.class, Object.class));
+        }
+
+        void copy(Object source, Object target) throws Throwable {
+            setter.invokeExact(target, this.target.adapt(getter.invokeExact(source)));
+        }
+    }
+
+    private static Class<?> wrapperOf(Class<?> primitive) {
+        return MethodType.methodType(primitive).wrap().returnType();
+    }
+}
@@ -1,15 +1,19 @@
-
 package org.mangocube.corenut.commons.bean;
 
-import org.apache.commons.beanutils.BeanUtilsBean;
-import org.apache.commons.beanutils.PropertyUtilsBean;
+import org.apache.commons.beanutils.PropertyUtils;
 
 import java.beans.PropertyDescriptor;
+import java.io.IOException;
+import java.lang.reflect.Array;
+import java.util.ArrayList;
 import java.util.Calendar;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.Date;
+import java.util.IdentityHashMap;
+import java.util.List;
 import java.util.Map;
-import java.util.Stack;
+import java.util.Set;
 
 /**
  * A util class for present the object description. A object description is a
@@ -28,6 +32,10 @@ import java.util.Stack;
  * 6. Array type, Collection, or Map, the element can contains primitive type, wrapper type, util type(date,time), Array,
  * Collection, Map or java bean.
  * </pre>
+ * The description is streamed to an Appendable and never exceeds <code>maxDescriptionLength</code> characters
+ * plus the trailing " ... " mark, nodes deeper than <code>maxDepth</code> are not expanded, and an object already
+ * described is referred to instead of described again, so a big or cyclic object graph costs bounded time.
+ * Getters are bound once per class.
  *
  * @since 1.0
  */
@@ -35,13 +43,22 @@ public class BeanDescriber {
 
     private static final String NULL = "null";
     private static final String NEW_LINE = "\r\n";
+    private static final String TRUNCATED = " ... ";
+    private static final String INDENT = "                                                                ";
+    public static final int DEFAULT_MAX_DEPTH = 16;
 
     private int maxDescriptionLength = 4096;
+    private int maxDepth = DEFAULT_MAX_DEPTH;
 
     public BeanDescriber(int maxDescriptionLength) {
         this.maxDescriptionLength = maxDescriptionLength;
     }
 
+    public BeanDescriber(int maxDescriptionLength, int maxDepth) {
+        this.maxDescriptionLength = maxDescriptionLength;
+        this.maxDepth = maxDepth;
+    }
+
     public BeanDescriber() {
     }
 
@@ -93,121 +110,211 @@ public class BeanDescriber {
     }
 
     public String describe(Object bean) {
-        if (bean == null) return NULL;
-
-        BeanUtilsBean bu = BeanUtilsBean.getInstance();
-        PropertyUtilsBean pub = bu.getPropertyUtils();
-        Stack<Object> stack = new Stack<Object>();
+        StringBuilder description = new StringBuilder(Math.min(maxDescriptionLength, 1024) + TRUNCATED.length());
+        try {
+            describe(bean, description);
+        } catch (IOException e) {
+            // StringBuilder never throws
+        }
+        return description.toString();
+    }
 
-        return descBean(bean, pub, stack, new StringBuilder()).toString();
+    /**
+     * Stream the description of the bean to out, see {@link #descriptBean(Object)}.
+     *
+     * @param bean the given bean.
+     * @param out  the destination of the description.
+     * @throws IOException fail to append to out.
+     */
+    public void describe(Object bean, Appendable out) throws IOException {
+        Output output = new Output(out, maxDescriptionLength);
+        try {
+            descBean(bean, output, Collections.newSetFromMap(new IdentityHashMap<Object, Boolean>()), 0);
+        } catch (BudgetExceededException e) {
+            out.append(TRUNCATED);
+        }
     }
 
-    private StringBuilder descBean(Object bean, PropertyUtilsBean pub, Stack<Object> stack, StringBuilder beanDescription) {
+    private void descBean(Object bean, Output out, Set<Object> visited, int depth) throws IOException {
         if (bean == null) {
-            beanDescription.append(NULL);
-            return beanDescription;
+            out.append(NULL);
+            return;
         }
 
-        if (beanDescription.length() > maxDescriptionLength) {
-            beanDescription.append(" ... ");
-            return beanDescription;
+        if (bean instanceof CharSequence) { // the bean is string type
+            out.append(" [").appendValue((CharSequence) bean).append("]");
+            return;
+        } else if (bean instanceof Number || bean instanceof Boolean || bean instanceof Character) {
+            out.append(" [").append(bean.toString()).append("]");
+            return;
+        } else if (bean instanceof Date) { // the bean is date type
+            out.append(" [").append(bean.toString()).append("]");
+            return;
+        } else if (bean instanceof Calendar) { // the bean is calendar type
+            out.append(" [").append(((Calendar) bean).getTime().toString()).append("]");
+            return;
         }
 
-        for (Object ele : stack) {
-            if (ele == bean) { // the bean is already defined previous.
-                beanDescription.append("Refer to ").append(bean.getClass().getName()).append(" @").append(
-                        Integer.toHexString(bean.hashCode()));
-                return beanDescription;
-            }
+        if (visited.contains(bean)) { // the bean is already described previous.
+            out.append("Refer to ").append(bean.getClass().getName()).append(" @").append(identity(bean));
+            return;
         }
+        if (depth >= maxDepth) { // not visited, it's described in full where it's reached within the depth
+            out.append(bean.getClass().getName()).append(" @").append(identity(bean)).append(" {").append(TRUNCATED)
+                    .append("}");
+            return;
+        }
+        visited.add(bean);
 
-        if (bean.getClass().isPrimitive() || bean instanceof Number || bean instanceof Boolean
-                || bean instanceof Character || bean instanceof CharSequence) { // the bean is primitive type
-            beanDescription.append(" [").append(bean.toString()).append("]");
-        } else if (bean instanceof Date) { // the bean is date type
-            beanDescription.append(" [").append(bean.toString()).append("]");
-        } else if (bean instanceof Calendar) { // the bean is calendar type
-            beanDescription.append(" [").append(((Calendar) bean).getTime().toString()).append("]");
-        } else if (bean.getClass().isArray()) {
-            stack.push(bean);
-            beanDescription.append(bean.getClass().getCanonicalName()).append(" {").append(NEW_LINE);
-            for (Object ele : (Object[]) bean) {
-                beanDescription.append(getIndent(stack.size()));
-                beanDescription = descBean(ele, pub, stack, beanDescription);
-                beanDescription.append(NEW_LINE);
+        if (bean.getClass().isArray()) {
+            out.append(bean.getClass().getCanonicalName()).append(" {").append(NEW_LINE);
+            int length = Array.getLength(bean);
+            for (int i = 0; i < length; i++) {
+                out.indent(depth + 1);
+                descBean(Array.get(bean, i), out, visited, depth + 1);
+                out.append(NEW_LINE);
             }
-            stack.pop();
-            beanDescription.append(getIndent(stack.size())).append("}").append(NEW_LINE);
+            out.indent(depth).append("}").append(NEW_LINE);
         } else if (bean instanceof Collection) { // the bean is a collection
-            stack.push(bean);
-            beanDescription.append(bean.getClass().getName()).append(" @")
-                    .append(Integer.toHexString(bean.hashCode())).append(" {").append(NEW_LINE);
+            out.append(bean.getClass().getName()).append(" @").append(identity(bean)).append(" {").append(NEW_LINE);
             int i = 0;
             for (Object ele : (Collection) bean) {
-                beanDescription.append(getIndent(stack.size()));
-                beanDescription.append("[").append(i).append("] ");
-                beanDescription = descBean(ele, pub, stack, beanDescription);
-                beanDescription.append(NEW_LINE);
+                out.indent(depth + 1).append("[").append(Integer.toString(i)).append("] ");
+                descBean(ele, out, visited, depth + 1);
+                out.append(NEW_LINE);
                 i++;
             }
-            stack.pop();
-            beanDescription.append(getIndent(stack.size())).append("}").append(NEW_LINE);
+            out.indent(depth).append("}").append(NEW_LINE);
         } else if (bean instanceof Map) { // the bean is a map
-            stack.push(bean);
-            Map mapBean = (Map) bean;
-            beanDescription.append(bean.getClass().getName()).append(" @")
-                    .append(Integer.toHexString(bean.hashCode())).append(" {").append(NEW_LINE);
-            for (Object key : mapBean.keySet()) {
-                beanDescription.append(getIndent(stack.size())).append("{").append(NEW_LINE);
-                stack.push(new Object());
-                beanDescription.append(getIndent(stack.size()));
-                beanDescription.append("KEY: ");
-                beanDescription = descBean(key, pub, stack, beanDescription);
-                beanDescription.append(NEW_LINE);
-                beanDescription.append(getIndent(stack.size()));
-                beanDescription.append("VALUE: ");
-                beanDescription = descBean(mapBean.get(key), pub, stack, beanDescription);
-                beanDescription.append(NEW_LINE);
-                stack.pop();
-                beanDescription.append(getIndent(stack.size())).append("}").append(NEW_LINE);
+            out.append(bean.getClass().getName()).append(" @").append(identity(bean)).append(" {").append(NEW_LINE);
+            for (Object o : ((Map) bean).entrySet()) {
+                Map.Entry entry = (Map.Entry) o;
+                out.indent(depth + 1).append("{").append(NEW_LINE);
+                out.indent(depth + 2).append("KEY: ");
+                descBean(entry.getKey(), out, visited, depth + 2);
+                out.append(NEW_LINE);
+                out.indent(depth + 2).append("VALUE: ");
+                descBean(entry.getValue(), out, visited, depth + 2);
+                out.append(NEW_LINE);
+                out.indent(depth + 1).append("}").append(NEW_LINE);
             }
-            stack.pop();
-            beanDescription.append(getIndent(stack.size())).append("}").append(NEW_LINE);
+            out.indent(depth).append("}").append(NEW_LINE);
         } else { // other bean processing
-            stack.push(bean);
-            beanDescription.append(bean.getClass().getName()).append(" @")
-                    .append(Integer.toHexString(bean.hashCode())).append(" { ").append(NEW_LINE);
+            out.append(bean.getClass().getName()).append(" @").append(identity(bean)).append(" { ").append(NEW_LINE);
+            for (PropertyReader reader : PROPERTY_READERS.get(bean.getClass())) {
+                out.indent(depth + 1).append(reader.name).append("(): ");
+                Object val;
+                try {
+                    val = reader.read(bean);
+                } catch (Error e) {
+                    throw e;
+                } catch (Throwable e) {
+                    out.append("Error raise: ").append(String.valueOf(e.getMessage())).append(" ...").append(NEW_LINE);
+                    continue;
+                }
+                descBean(val, out, visited, depth + 1);
+                out.append(NEW_LINE);
+            }
+            out.indent(depth).append("}");
+        }
+    }
 
-            PropertyDescriptor[] properties = pub.getPropertyDescriptors(bean);
+    private static String identity(Object bean) {
+        return Integer.toHexString(System.identityHashCode(bean));
+    }
 
-            try {
+    private static final ClassValue<PropertyReader[]> PROPERTY_READERS = new ClassValue<PropertyReader[]>() {
+        protected PropertyReader[] computeValue(Class<?> type) {
+            List<PropertyReader> readers = new ArrayList<PropertyReader>();
+            PropertyDescriptor[] properties = PropertyUtils.getPropertyDescriptors(type);
+            if (properties != null) {
                 for (PropertyDescriptor pd : properties) {
                     if ("class".equals(pd.getName()) || pd.getReadMethod() == null)
                         continue;
-                    beanDescription.append(getIndent(stack.size()));
-                    beanDescription.append(pd.getName()).append("(): ");
-                    Object val = pub.getProperty(bean, pd.getName());
-                    beanDescription = descBean(val, pub, stack, beanDescription);
-                    beanDescription.append(NEW_LINE);
+                    readers.add(new PropertyReader(pd.getName(),
+                            CompiledPropertyPath.bindMethod(type, pd.getReadMethod())));
                 }
-            } catch (Exception e) {
-                beanDescription.append("Error raise: ").append(e.getMessage()).append(" ...");
-                beanDescription.append(NEW_LINE);
             }
+            return readers.toArray(new PropertyReader[readers.size()]);
+        }
+    };
 
-            stack.pop();
-            beanDescription.append(getIndent(stack.size())).append("}");
+    /**
+     * Getter of one property, bound once per class.
+     */
+    private static final class PropertyReader {
+        final String name;
+        final CompiledPropertyPath.Getter getter;
+
+        PropertyReader(String name, CompiledPropertyPath.Getter getter) {
+            this.name = name;
+            this.getter = getter;
         }
 
-        return beanDescription;
+        Object read(Object bean) throws Throwable {
+            return getter != null ? getter.get(bean) : PropertyUtils.getProperty(bean, name);
+        }
+    }
+
+    /**
+     * Thrown when the output budget is used up, unwinds the description without a stack trace.
+     */
+    private static final class BudgetExceededException extends RuntimeException {
+        BudgetExceededException() {
+            super(null, null, false, false);
+        }
     }
 
-    private static String getIndent(int level) {
-        char[] indent = new char[level * 2];
-        for (int i = 0; i < indent.length; i++) {
-            indent[i] = ' ';
+    /**
+     * Appendable that refuses to write past the budget, the part that fits is written before giving up.
+     */
+    private static final class Output {
+        private final Appendable out;
+        private int remaining;
+
+        Output(Appendable out, int budget) {
+            this.out = out;
+            this.remaining = budget;
+        }
+
+        Output append(String str) throws IOException {
+            return append(str, str.length());
+        }
+
+        /**
+         * Value may be a huge string, only the part fitting the budget is taken.
+         */
+        Output appendValue(CharSequence value) throws IOException {
+            int length = value.length();
+            if (length > remaining) {
+                out.append(value, 0, remaining);
+                remaining = 0;
+                throw new BudgetExceededException();
+            }
+            out.append(value);
+            remaining -= length;
+            return this;
+        }
+
+        Output indent(int level) throws IOException {
+            int length = level * 2;
+            while (length > INDENT.length()) {
+                append(INDENT, INDENT.length());
+                length -= INDENT.length();
+            }
+            return append(INDENT, length);
+        }
+
+        private Output append(String str, int length) throws IOException {
+            if (length > remaining) {
+                out.append(str, 0, remaining);
+                remaining = 0;
+                throw new BudgetExceededException();
+            }
+            out.append(str, 0, length);
+            remaining -= length;
+            return this;
         }
-        return new String(indent);
     }
 
 }
@@ -5,6 +5,7 @@ import org.mangocube.corenut.commons.exception.ErrorCode;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 
+import java.lang.reflect.Constructor;
 import java.lang.reflect.Field;
 import java.lang.reflect.Modifier;
 import java.util.*;
@@ -12,6 +13,10 @@ import java.util.*;
 /**
  * Accesses the bean fields and sets or gets the value of the properties.
  * <p/>
+ * Fields of every class are resolved once and cached with the class by a ClassValue, so the cache never
+ * keeps a class loader alive. The cached fields are made accessible once, and the way a collection or map
+ * value is copied into each field is decided when the field is resolved.
+ * <p/>
  *
  * @since 1.0
  */
@@ -143,38 +148,23 @@ public class BeanFieldUtil {
      * Also the field type is Class or inner class is not in the list.
      * When the super class contains such member fields, then should gather them altogether.
      *
+     * The fields are resolved once per class and returned in a new list, they are separate Field objects from the
+     * accessible ones cached for field access, which are never handed out.
+     *
      * @param clazz defiend the memeber fields
      * @return all avaliable fields that used for serialization or object reference
      */
     public List<Field> getClassFields(Class clazz) {
-        List<Field> fieldList = new ArrayList<Field>();
-        Field[] fields = clazz.getDeclaredFields();
-        for (Field field : fields) {
-            int modifiers = field.getModifiers();
-            if (field.getType() == Class.class || field.getName().startsWith("this$")
-                    || Modifier.isStatic(modifiers) || Modifier.isTransient(modifiers)) continue;
-            fieldList.add(field);
-        }
-        //Gets the valid fields from super class cursively
-        Class superClazz = clazz.getSuperclass();
-        if (superClazz != null && superClazz != Object.class) {
-            fieldList.addAll(getClassFields(superClazz));
-        }
-        return fieldList;
+        return new ArrayList<Field>(Arrays.asList(ClassFields.of(clazz).classFields));
     }
 
     //if the field is in the super class then should lookup from super.
-    private Field getSpecField(Class clazz, String fieldName) {
-        Field field = null;
-        try {
-            field = clazz.getDeclaredField(fieldName);
-        } catch (NoSuchFieldException e) {
-            logger.debug("Field[" + fieldName + "] cannot be found in class [" + clazz.getName() + "]");
+    private FieldAccessor getSpecField(Class clazz, String fieldName) throws NoSuchFieldException {
+        FieldAccessor accessor = ClassFields.of(clazz).fields.get(fieldName);
+        if (accessor == null) {
+            throw new NoSuchFieldException("Field[" + fieldName + "] cannot be found in class [" + clazz.getName() + "]");
         }
-        if (field != null) return field;
-        Class superClazz = clazz.getSuperclass();
-        if (superClazz == null || superClazz == Object.class) return null;
-        return getSpecField(superClazz, fieldName);
+        return accessor;
     }
 
     /**
@@ -189,22 +179,11 @@ public class BeanFieldUtil {
         if (bean instanceof Map) {
             return ((Map) bean).get(decodeMapKey(field));
         } else {
-            Field f = null;
-            Object res = null;
-            boolean org_acc = true;
             try {
-                f = getSpecField(bean.getClass(), field);
-                org_acc = f.isAccessible();
-                f.setAccessible(true);
-                res = f.get(bean);
+                return getSpecField(bean.getClass(), field).field.get(bean);
             } catch (Exception e) {
                 throw new BeanUtilException(FieldUtilError.GET_FIELD_FAIL, bean.getClass().getName(), field, e);
-            } finally {
-                if (f != null) {
-                    f.setAccessible(org_acc);
-                }
             }
-            return res;
         }
     }
 
@@ -217,22 +196,11 @@ public class BeanFieldUtil {
      * @return retrieved static field's value
      */
     public Object retrieveBeanField(Class clazz, String field) {
-        Field f = null;
-        Object res = null;
-        boolean org_acc = true;
         try {
-            f = getSpecField(clazz, field);
-            org_acc = f.isAccessible();
-            f.setAccessible(true);
-            res = f.get(null);
+            return getSpecField(clazz, field).field.get(null);
         } catch (Exception e) {
             throw new BeanUtilException(FieldUtilError.GET_FIELD_FAIL, clazz.getName(), field, e);
-        } finally {
-            if (f != null) {
-                f.setAccessible(org_acc);
-            }
         }
-        return res;
     }
 
     /**
@@ -247,58 +215,182 @@ public class BeanFieldUtil {
         if (bean instanceof Map) {
             ((Map) bean).put(decodeMapKey(field), value);
         } else {
-            Object retrivedValue = value;
-            Field f = null;
-            boolean org_acc = true;
             try {
-                f = getSpecField(bean.getClass(), field);
-                org_acc = f.isAccessible();
-                f.setAccessible(true);
-                Class fieldType = f.getType();
-                int modifier = fieldType.getModifiers();
-                if (value != null) {
-                    if (value instanceof Collection && Collection.class.isAssignableFrom(fieldType)) {
-                        if (fieldType.isInterface() || Modifier.isAbstract(modifier)) {
-                            if (List.class == fieldType || AbstractList.class == fieldType) {
-                                retrivedValue = new ArrayList();
-                                ((List) retrivedValue).addAll((List) value);
-                            } else if (Set.class == fieldType || AbstractSet.class == fieldType) {
-                                retrivedValue = new HashSet();
-                                ((Set) retrivedValue).addAll((Set) value);
-                            } else if (Queue.class == fieldType || AbstractQueue.class == fieldType) {
-                                retrivedValue = new LinkedList();
-                                for (Object o : (List) value) {
-                                    ((Queue) retrivedValue).offer(o);
-                                }
-                            } else {
-                                throw new BeanUtilException(FieldUtilError.INVALID_COLLECTION_FIELD_TYPE, fieldType);
-                            }
-                        } else {
-                            retrivedValue = f.getType().newInstance();
-                            ((Collection) retrivedValue).addAll((Collection) value);
-                        }
-                    } else if (value instanceof Map && Map.class.isAssignableFrom(f.getType())) {
-                        if (fieldType.isInterface() || Modifier.isAbstract(modifier)) {
-                            if (Map.class == fieldType || AbstractMap.class == fieldType) {
-                                retrivedValue = new HashMap();
-                                ((Map) retrivedValue).putAll((Map) value);
-                            } else {
-                                throw new BeanUtilException(FieldUtilError.INVALID_MAP_FIELD_TYPE, fieldType);
-                            }
-                        } else {
-                            retrivedValue = f.getType().newInstance();
-                            ((Map) retrivedValue).putAll((Map) value);
-                        }
-                    }
-                }
-                f.set(bean, retrivedValue);
+                FieldAccessor accessor = getSpecField(bean.getClass(), field);
+                accessor.field.set(bean, accessor.adapt(value));
             } catch (Exception e) {
                 throw new BeanUtilException(FieldUtilError.SET_FIELD_FAIL, bean.getClass().getName(), field, e);
-            } finally {
-                if (f != null && f.isAccessible() != org_acc) {
-                    f.setAccessible(org_acc);
+            }
+        }
+    }
+
+    /**
+     * How a collection or map value is copied into a field of collection or map type.
+     */
+    private enum CopyStrategy {
+        NONE,
+        ARRAY_LIST,
+        HASH_SET,
+        LINKED_LIST,
+        HASH_MAP,
+        NEW_COLLECTION,
+        NEW_MAP,
+        INVALID_COLLECTION,
+        INVALID_MAP
+    }
+
+    /**
+     * Resolved field, made accessible once, with the copy strategy of its type.
+     */
+    static final class FieldAccessor {
+        final Field field;
+        final CopyStrategy strategy;
+        final Constructor<?> constructor;
+
+        FieldAccessor(Field field) {
+            this.field = field;
+            Class<?> fieldType = field.getType();
+            boolean isAbstract = fieldType.isInterface() || Modifier.isAbstract(fieldType.getModifiers());
+            if (Collection.class.isAssignableFrom(fieldType)) {
+                if (!isAbstract) {
+                    strategy = CopyStrategy.NEW_COLLECTION;
+                } else if (List.class == fieldType || AbstractList.class == fieldType) {
+                    strategy = CopyStrategy.ARRAY_LIST;
+                } else if (Set.class == fieldType || AbstractSet.class == fieldType) {
+                    strategy = CopyStrategy.HASH_SET;
+                } else if (Queue.class == fieldType || AbstractQueue.class == fieldType) {
+                    strategy = CopyStrategy.LINKED_LIST;
+                } else {
+                    strategy = CopyStrategy.INVALID_COLLECTION;
+                }
+            } else if (Map.class.isAssignableFrom(fieldType)) {
+                if (!isAbstract) {
+                    strategy = CopyStrategy.NEW_MAP;
+                } else if (Map.class == fieldType || AbstractMap.class == fieldType) {
+                    strategy = CopyStrategy.HASH_MAP;
+                } else {
+                    strategy = CopyStrategy.INVALID_MAP;
+                }
+            } else {
+                strategy = CopyStrategy.NONE;
+            }
+            constructor = strategy == CopyStrategy.NEW_COLLECTION || strategy == CopyStrategy.NEW_MAP
+                    ? defaultConstructor(fieldType) : null;
+        }
+
+        /**
+         * @return whether the field is a collection or map, which gets a copy of the value.
+         */
+        boolean isContainer() {
+            return strategy != CopyStrategy.NONE;
+        }
+
+        private static Constructor<?> defaultConstructor(Class<?> type) {
+            Constructor<?> constructor;
+            try {
+                constructor = type.getDeclaredConstructor();
+            } catch (NoSuchMethodException e) {
+                return null;
+            }
+            try {
+                constructor.setAccessible(true);
+            } catch (RuntimeException e) {
+                logger.debug("Constructor[" + constructor + "] cannot be made accessible", e);
+            }
+            return constructor;
+        }
+
+        /**
+         * @return copy of collection or map value in the type of field, the value itself for other field type.
+         */
+        @SuppressWarnings("unchecked")
+        Object adapt(Object value) throws Exception {
+            if (value instanceof Collection) {
+                switch (strategy) {
+                    case ARRAY_LIST:
+                        return new ArrayList((Collection) value);
+                    case HASH_SET:
+                        return new HashSet((Collection) value);
+                    case LINKED_LIST:
+                        return new LinkedList((Collection) value);
+                    case NEW_COLLECTION:
+                        Collection collection = (Collection) newInstance();
+                        collection.addAll((Collection) value);
+                        return collection;
+                    case INVALID_COLLECTION:
+                        throw new BeanUtilException(FieldUtilError.INVALID_COLLECTION_FIELD_TYPE, field.getType());
+                    default:
+                        return value;
+                }
+            } else if (value instanceof Map) {
+                switch (strategy) {
+                    case HASH_MAP:
+                        return new HashMap((Map) value);
+                    case NEW_MAP:
+                        Map map = (Map) newInstance();
+                        map.putAll((Map) value);
+                        return map;
+                    case INVALID_MAP:
+                        throw new BeanUtilException(FieldUtilError.INVALID_MAP_FIELD_TYPE, field.getType());
+                    default:
+                        return value;
+                }
+            }
+            return value;
+        }
+
+        private Object newInstance() throws Exception {
+            if (constructor == null) {
+                throw new InstantiationException(field.getType().getName() + " has no default constructor");
+            }
+            return constructor.newInstance();
+        }
+    }
+
+    /**
+     * Fields of a class and its super classes, a field of sub class hides the same named one of super class.
+     */
+    static final class ClassFields {
+        private static final ClassValue<ClassFields> CACHE = new ClassValue<ClassFields>() {
+            protected ClassFields computeValue(Class<?> type) {
+                return new ClassFields(type);
+            }
+        };
+
+        final Map<String, FieldAccessor> fields;
+        final Field[] classFields;//not accessible, listed by getClassFields
+
+        static ClassFields of(Class<?> clazz) {
+            return CACHE.get(clazz);
+        }
+
+        private ClassFields(Class<?> clazz) {
+            Map<String, FieldAccessor> resolved = new HashMap<String, FieldAccessor>();
+            List<Field> fieldList = new ArrayList<Field>();
+            for (Class<?> c = clazz; c != null && c != Object.class; c = c.getSuperclass()) {
+                for (Field field : c.getDeclaredFields()) {
+                    int modifiers = field.getModifiers();
+                    if (field.getType() == Class.class || field.getName().startsWith("this$")
+                            || Modifier.isStatic(modifiers) || Modifier.isTransient(modifiers)) continue;
+                    fieldList.add(field);
+                }
+                for (Field field : c.getDeclaredFields()) {//another copy, opened for field access
+                    open(field);
+                    if (!resolved.containsKey(field.getName())) {
+                        resolved.put(field.getName(), new FieldAccessor(field));
+                    }
                 }
             }
+            fields = resolved;
+            classFields = fieldList.toArray(new Field[fieldList.size()]);
+        }
+
+        private static void open(Field field) {
+            try {
+                field.setAccessible(true);
+            } catch (RuntimeException e) {
+                logger.debug("Field[" + field + "] cannot be made accessible", e);
+            }
         }
     }
 
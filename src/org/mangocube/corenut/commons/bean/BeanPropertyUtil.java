@@ -7,6 +7,7 @@ import org.apache.commons.beanutils.PropertyUtils;
 import java.lang.reflect.Method;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.beans.PropertyDescriptor;
 
 /**
@@ -54,8 +55,12 @@ public class BeanPropertyUtil {
         INVALID_OPERATOR
     }
 
+    private static final int MAX_COMPILED_PATHS = 10000;
+
     private String getMethodName = "get";
     private BeanFieldUtil fieldUtil = new BeanFieldUtil();
+    private final ConcurrentHashMap<String, CompiledPropertyPath> compiledPaths =
+            new ConcurrentHashMap<String, CompiledPropertyPath>();
 
     public BeanPropertyUtil() {
     }
@@ -64,6 +69,38 @@ public class BeanPropertyUtil {
         this.getMethodName = getMethodName;
     }
 
+    public String getGetMethodName() {
+        return getMethodName;
+    }
+
+    /**
+     * Parse the property path once into an accessor chain, see {@link #getPropertyValue(Object, String)} for the
+     * forms of path. Compiled paths are cached by path, so compiling the same path again is a map lookup.
+     *
+     * @param propertyName property path, e.g. "a.b[2].c"
+     * @return compiled path, reusable for any bean and thread
+     */
+    public CompiledPropertyPath compile(String propertyName) {
+        if (propertyName == null) {
+            throw new BeanUtilException(PropertyUtilError.PROPERTY_NULL_NAME);
+        }
+        CompiledPropertyPath compiled = compiledPaths.get(propertyName);
+        if (compiled == null) {
+            if (propertyName.startsWith(".") || propertyName.startsWith("[")) {
+                throw new BeanUtilException(PropertyUtilError.INVALID_PROPERTY_NAME, propertyName);
+            }
+            compiled = new CompiledPropertyPath(propertyName.trim(), this);
+            if (compiledPaths.size() >= MAX_COMPILED_PATHS) {
+                compiledPaths.clear();
+            }
+            CompiledPropertyPath exists = compiledPaths.putIfAbsent(propertyName, compiled);
+            if (exists != null) {
+                compiled = exists;
+            }
+        }
+        return compiled;
+    }
+
     /**
      * Retrieve the property value of specific object. The parameter propertyName is the key specifies
      * the identity of the value. There are many forms of the propertyName:
@@ -98,6 +135,11 @@ public class BeanPropertyUtil {
             throw new BeanUtilException(PropertyUtilError.PROPERTY_NULL_NAME);
         }
 
+        //subclass may override the retrieving methods, so only the plain util uses the compiled path
+        if (getClass() == BeanPropertyUtil.class) {
+            return compile(propertyName).getValue(bean);
+        }
+
         //if propertyName start with the special character then raise an exception
         if (propertyName.startsWith(".") || propertyName.startsWith("[")) {
             throw new BeanUtilException(PropertyUtilError.INVALID_PROPERTY_NAME, propertyName);
@@ -0,0 +1,364 @@
+package org.mangocube.corenut.commons.bean;
+
+import org.apache.commons.beanutils.PropertyUtils;
+
+import java.beans.PropertyDescriptor;
+import java.lang.invoke.CallSite;
+import java.lang.invoke.LambdaMetafactory;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Array;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Property path parsed once by {@link BeanPropertyUtil#compile(String)}, e.g. "a.b[2].c", evaluated against
+ * any number of beans. Resolves the same values as {@link BeanPropertyUtil#getPropertyValue(Object, String)}.
+ * <p/>
+ * Every property segment binds its getter on first use for the receiver class, to a lambda generated by
+ * LambdaMetafactory when the class is visible, or to a MethodHandle otherwise. The last binding is kept as
+ * an inline cache guarded by the receiver class, bindings of other receiver classes of a polymorphic path
+ * are kept with the receiver class by a per segment ClassValue, so a segment refers to no class but the last
+ * receiver class. It's thread-safe and immutable except the caches.
+ *
+ * @since 1.0
+ */
+public final class CompiledPropertyPath {
+    private static final MethodHandles.Lookup LOOKUP = MethodHandles.lookup();
+    private static final MethodType GETTER_TYPE = MethodType.methodType(Object.class, Object.class);
+
+    private final String path;
+    private final Segment[] segments;
+
+    CompiledPropertyPath(String path, BeanPropertyUtil util) {
+        this.path = path;
+        this.segments = parse(path, util);
+    }
+
+    public String getPath() {
+        return path;
+    }
+
+    /**
+     * @param bean root object, must not be null.
+     * @return value of the path, null if the last segment is null.
+     */
+    public Object getValue(Object bean) {
+        if (bean == null) {
+            throw new BeanUtilException(BeanPropertyUtil.PropertyUtilError.BEAN_IS_NULL);
+        }
+        Object value = bean;
+        for (Segment segment : segments) {
+            if (value == null) {
+                throw new BeanUtilException(BeanPropertyUtil.PropertyUtilError.PROPERTY_NULL_VALUE, segment.prefix);
+            }
+            value = segment.getValue(value);
+        }
+        return value;
+    }
+
+    public String toString() {
+        return path;
+    }
+
+    /**
+     * A name without "." or "[" is one segment, as the interpreted path retrieves it. Otherwise whitespace around
+     * the delimiters is dropped, whitespace inside a name is kept.
+     */
+    private static Segment[] parse(String path, BeanPropertyUtil util) {
+        if (path.indexOf('.') < 0 && path.indexOf('[') < 0) {
+            return new Segment[]{new PropertySegment("", path.trim(), util)};
+        }
+
+        List<Segment> segments = new ArrayList<Segment>();
+        StringBuilder current = new StringBuilder();
+        //delimiter before the current segment, the path before it is reported when the receiver is null
+        int delimiter = 0;
+        for (int i = 0; i < path.length(); i++) {
+            char c = path.charAt(i);
+            if (c == '.' || c == '[') {
+                String name = current.toString().trim();
+                if (name.length() != 0) {
+                    segments.add(new PropertySegment(path.substring(0, delimiter), name, util));
+                }
+                current.setLength(0);
+                delimiter = i;
+            } else if (c == ']') {
+                int index;
+                try {
+                    index = Integer.parseInt(current.toString().trim());
+                } catch (NumberFormatException e) {
+                    throw new BeanUtilException(BeanPropertyUtil.PropertyUtilError.INVALID_OPERATOR, e,
+                            path.substring(0, i + 1));
+                }
+                segments.add(new IndexSegment(path.substring(0, delimiter), path.substring(0, i + 1), index));
+                current.setLength(0);
+            } else {
+                current.append(c);
+            }
+        }
+        String name = current.toString().trim();
+        if (name.length() != 0) {
+            segments.add(new PropertySegment(path.substring(0, delimiter), name, util));
+        }
+        return segments.toArray(new Segment[segments.size()]);
+    }
+
+    private abstract static class Segment {
+        /**
+         * Path before the segment, reported when the receiver is null.
+         */
+        final String prefix;
+
+        Segment(String prefix) {
+            this.prefix = prefix;
+        }
+
+        abstract Object getValue(Object bean);
+    }
+
+    private static final class IndexSegment extends Segment {
+        private final String operator;
+        private final int index;
+
+        IndexSegment(String prefix, String operator, int index) {
+            super(prefix);
+            this.operator = operator;
+            this.index = index;
+        }
+
+        Object getValue(Object bean) {
+            if (bean instanceof List) {
+                return ((List) bean).get(index);
+            } else if (bean.getClass().isArray()) {
+                return bean instanceof Object[] ? ((Object[]) bean)[index] : Array.get(bean, index);
+            }
+            throw new BeanUtilException(BeanPropertyUtil.PropertyUtilError.INVALID_OPERATOR, operator);
+        }
+    }
+
+    /**
+     * Getter of one property on one receiver class.
+     */
+    interface Getter {
+        Object get(Object bean) throws Throwable;
+    }
+
+    private static final class Binding {
+        final Class<?> type;
+        final Getter getter;
+
+        Binding(Class<?> type, Getter getter) {
+            this.type = type;
+            this.getter = getter;
+        }
+    }
+
+    /**
+     * Getter of a segment for one receiver class, bound on first use since binding needs the bean.
+     */
+    private static final class BoundGetter {
+        volatile Getter getter;
+    }
+
+    private static final class PropertySegment extends Segment {
+        private final String name;
+        private final BeanPropertyUtil util;
+        private volatile Binding cached;
+        private final ClassValue<BoundGetter> polymorphic = new ClassValue<BoundGetter>() {
+            protected BoundGetter computeValue(Class<?> type) {
+                return new BoundGetter();
+            }
+        };
+
+        PropertySegment(String prefix, String name, BeanPropertyUtil util) {
+            super(prefix);
+            this.name = name;
+            this.util = util;
+        }
+
+        Object getValue(Object bean) {
+            if (bean instanceof Map) {
+                return ((Map) bean).get(name);
+            }
+
+            Class<?> type = bean.getClass();
+            Binding binding = cached;
+            Getter getter = binding != null && binding.type == type ? binding.getter : lookup(bean, type);
+            try {
+                return getter.get(bean);
+            } catch (BeanUtilException e) {
+                throw e;
+            } catch (Throwable e) {
+                if (e instanceof Error) throw (Error) e;
+                throw new BeanUtilException(BeanPropertyUtil.PropertyUtilError.RETRIEVE_PROPERY_FAIL, e,
+                        type.getName(), name);
+            }
+        }
+
+        private Getter lookup(Object bean, Class<?> type) {
+            BoundGetter bound = polymorphic.get(type);
+            Getter getter = bound.getter;
+            if (getter == null) {
+                //bound on the first bean, the same getter may be bound twice by racing threads.
+                getter = bind(bean, type);
+                bound.getter = getter;
+            }
+            cached = new Binding(type, getter);
+            return getter;
+        }
+
+        /**
+         * Same resolution order as {@link BeanPropertyUtil#retrievePropertyValue(Object, String)}: the JavaBean getter,
+         * then the public method of the property name, then <code>get(String)</code>. Anything else is left to it.
+         */
+        private Getter bind(Object bean, Class<?> type) {
+            try {
+                PropertyDescriptor descriptor = PropertyUtils.getPropertyDescriptor(bean, name);
+                if (descriptor != null) {
+                    Method read = descriptor.getReadMethod();
+                    Getter getter = read == null ? null : bindMethod(type, read);
+                    return getter != null ? getter : legacyGetter();
+                }
+            } catch (Exception e) {
+                return legacyGetter();
+            }
+
+            try {
+                Method method = type.getMethod(name);
+                Getter getter = bindMethod(type, method);
+                if (getter != null) {
+                    return getter;
+                }
+            } catch (NoSuchMethodException e) {
+                // go on with get(String)
+            }
+
+            try {
+                Method method = type.getMethod(util.getGetMethodName(), String.class);
+                Method accessible = accessibleMethod(type, method);
+                if (accessible != null) {
+                    final MethodHandle handle = MethodHandles.insertArguments(LOOKUP.unreflect(accessible), 1, name)
+                            .asType(GETTER_TYPE);
+                    return new Getter() {
+                        public Object get(Object bean) throws Throwable {
+                            return handle.invokeExact(bean);
+                        }
+                    };
+                }
+            } catch (NoSuchMethodException e) {
+                // unable to retrieve, let the legacy path report it
+            } catch (IllegalAccessException e) {
+                // not accessible, use the legacy path
+            }
+            return legacyGetter();
+        }
+
+        private Getter legacyGetter() {
+            return new Getter() {
+                public Object get(Object bean) {
+                    return util.retrievePropertyValue(bean, name);
+                }
+            };
+        }
+    }
+
+    /**
+     * @return getter bound to a generated lambda or a method handle, null if the method is not accessible.
+     */
+    static Getter bindMethod(Class<?> type, Method method) {
+        Method accessible = accessibleMethod(type, method);
+        if (accessible == null) {
+            return null;
+        }
+        MethodHandle handle;
+        try {
+            handle = LOOKUP.unreflect(accessible);
+        } catch (IllegalAccessException e) {
+            return null;
+        }
+
+        Class<?> declaring = accessible.getDeclaringClass();
+        if (isVisible(declaring)) {
+            try {
+                CallSite site = LambdaMetafactory.metafactory(LOOKUP, "get", MethodType.methodType(Getter.class),
+                        GETTER_TYPE, handle, MethodType.methodType(Object.class, declaring));
+                return (Getter) site.getTarget().invoke();
+            } catch (Throwable e) {
+                // fall back to the method handle
+            }
+        }
+
+        final MethodHandle getter = handle.asType(GETTER_TYPE);
+        return new Getter() {
+            public Object get(Object bean) throws Throwable {
+                return getter.invokeExact(bean);
+            }
+        };
+    }
+
+    /**
+     * Public method callable on the type, found on a public super class or interface when the declaring class
+     * is not public, e.g. a getter of a private implementation class declared by a public interface.
+     */
+    private static Method accessibleMethod(Class<?> type, Method method) {
+        if (!Modifier.isPublic(method.getModifiers())) {
+            return null;
+        }
+        if (Modifier.isPublic(method.getDeclaringClass().getModifiers())) {
+            return method;
+        }
+        for (Class<?> c = type; c != null; c = c.getSuperclass()) {
+            if (Modifier.isPublic(c.getModifiers()) && c != method.getDeclaringClass()) {
+                try {
+                    return c.getMethod(method.getName(), method.getParameterTypes());
+                } catch (NoSuchMethodException e) {
+                    // try interfaces
+                }
+            }
+            for (Class<?> interf : c.getInterfaces()) {
+                Method found = interfaceMethod(interf, method);
+                if (found != null) {
+                    return found;
+                }
+            }
+        }
+        return null;
+    }
+
+    private static Method interfaceMethod(Class<?> interf, Method method) {
+        if (Modifier.isPublic(interf.getModifiers())) {
+            try {
+                return interf.getMethod(method.getName(), method.getParameterTypes());
+            } catch (NoSuchMethodException e) {
+                return null;
+            }
+        }
+        for (Class<?> parent : interf.getInterfaces()) {
+            Method found = interfaceMethod(parent, method);
+            if (found != null) {
+                return found;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Generated lambda links the class by the class loader of this class, so the class must be visible from it.
+     */
+    private static boolean isVisible(Class<?> type) {
+        ClassLoader loader = CompiledPropertyPath.class.getClassLoader();
+        try {
+            return Class.forName(type.getName(), false, loader) == type;
+        } catch (ClassNotFoundException e) {
+            return false;
+        } catch (LinkageError e) {
+            return false;
+        }
+    }
+
+}
@@ -1,15 +1,36 @@
 
 package org.mangocube.corenut.commons.bean;
 
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
 import org.mangocube.corenut.commons.devprocess.CoverageMetric;
 import org.mangocube.corenut.commons.io.resource.Resource;
 import org.mangocube.corenut.commons.io.resource.ResourcePatternResolver;
 
+import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.net.URLConnection;
+import java.util.AbstractCollection;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Properties;
 import java.util.InvalidPropertiesFormatException;
+import java.util.Iterator;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiFunction;
+import java.util.function.Function;
 
 /**
  * Composite key properties util. Unlike the ordinary key-value pair, the key is composited hierarchy.
@@ -32,6 +53,12 @@ import java.util.InvalidPropertiesFormatException;
  * iteratively. For example, "SQL/UPDATE/MYSQL" is not found, then try "SQL/UPDATE", and match, so return "VAL3".
  * Analogously, when retrieve value with key "SQL/SELECT", mismatch, then use upper level key "SQL", but still
  * mismatch, finally return null. That's why v2 is null.
+ * <p/>
+ * Lookups by composite key go through an immutable trie of the "/" delimited keys, built after load and rebuilt
+ * on first lookup after the properties are changed, by any Map method or through the key, value and entry views. A lookup neither locks nor
+ * allocates, except the MatchProperty returned for an upper level match.
+ * <p/>
+ * Properties loaded from resources can be reloaded, see {@link #reload()} and {@link #startReloading(long)}.
  *
  * @since 1.0
  */
@@ -39,17 +66,35 @@ import java.util.InvalidPropertiesFormatException;
 public class CompositeKeyProperties extends Properties {
     private static final char DELIMITER = '/';
 
+    private static final Log logger = LogFactory.getLog(CompositeKeyProperties.class);
+    private static final ScheduledExecutorService RELOAD_TIMER = newReloadTimer();
+
+    private transient volatile Node index;
+    private transient volatile Reloader reloader;
+
     //************************************** Properties file loading **********************************************//    
 
     public synchronized void load(String resourcePath, ClassLoader classLoader) throws IOException {
         //1. Resolve resources, find out all resource files to be loaded with given class loader.
+        Resource[] resources = resolveResources(resourcePath, classLoader);
+
+        //2. Load all resource files, and set property according to priority
+        mergeResources(resources, this);
+
+        reloader().loaded(resourcePath, classLoader, resources);
+        buildIndex();
+    }
+
+    private static Resource[] resolveResources(String resourcePath, ClassLoader classLoader) throws IOException {
         ResourcePatternResolver patternResolver = classLoader == null ?
                 ResourcePatternResolver.getInstance() : ResourcePatternResolver.getInstance(null, classLoader);
         Resource[] resources = patternResolver.getResources(resourcePath);
         if (resources == null)
             throw new IOException("Resource " + resourcePath + " not found or unavailable!");
+        return resources;
+    }
 
-        //2. Load all resource files, and set property according to priority
+    private static void mergeResources(Resource[] resources, Properties target) throws IOException {
         Map<String, Integer> pty_priority = new HashMap<String, Integer>();
         for (Resource resource : resources) {
             Properties ptys = loadPropertiesFromResource(resource);
@@ -80,11 +125,11 @@ public class CompositeKeyProperties extends Properties {
                 if (pty_priority.containsKey(actual_key)) {//priority is set
                     int p = pty_priority.get(actual_key);
                     if (p < priority) {//priority is lower, then override value
-                        this.setProperty(actual_key, val);
+                        target.setProperty(actual_key, val);
                         pty_priority.put(actual_key, priority);
                     }
                 } else {//no priority is set yet.
-                    this.setProperty(actual_key, val);
+                    target.setProperty(actual_key, val);
                     pty_priority.put(actual_key, priority);
                 }
             }
@@ -93,7 +138,7 @@ public class CompositeKeyProperties extends Properties {
         }
     }
 
-    private Properties loadPropertiesFromResource(Resource resource) throws IOException {
+    private static Properties loadPropertiesFromResource(Resource resource) throws IOException {
         String url;
         try {
             url = resource.getURL().toString();
@@ -102,14 +147,243 @@ public class CompositeKeyProperties extends Properties {
         }
 
         Properties ptys = new Properties();
-        if (url != null && url.endsWith(".xml")) {
-            ptys.loadFromXML(resource.getInputStream());
-        } else {
-            ptys.load(resource.getInputStream());
+        InputStream in = resource.getInputStream();
+        try {
+            if (url != null && url.endsWith(".xml")) {
+                ptys.loadFromXML(in);
+            } else {
+                ptys.load(in);
+            }
+        } finally {
+            in.close();
         }
         return ptys;
     }
 
+    /**
+     * Daemon timer shared by all reloading properties, cancelled reload tasks are removed from its queue.
+     */
+    private static ScheduledExecutorService newReloadTimer() {
+        ScheduledThreadPoolExecutor timer = new ScheduledThreadPoolExecutor(1, new ThreadFactory() {
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "CompositeKeyProperties-reload");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        timer.setRemoveOnCancelPolicy(true);
+        return timer;
+    }
+
+    /**
+     * Resource locations with their modification time and length, changes when a resource is added, removed or
+     * modified. Time of a resource which is not a file is taken from its URL connection, e.g. the jar file.
+     */
+    private static String signatureOf(Resource[] resources) {
+        StringBuilder signature = new StringBuilder();
+        for (Resource resource : resources) {
+            long modified = 0;
+            long length = -1;
+            String location;
+            try {
+                URL url = resource.getURL();
+                location = url.toString();
+                try {
+                    File file = resource.getFile();
+                    modified = file.lastModified();
+                    length = file.length();
+                } catch (IOException e) {
+                    URLConnection connection = url.openConnection();
+                    connection.setUseCaches(false);
+                    modified = connection.getLastModified();
+                    length = connection.getContentLength();
+                    if (connection.getDoInput()) {
+                        connection.getInputStream().close();
+                    }
+                }
+            } catch (IOException e) {
+                location = resource.getDescription();
+            }
+            signature.append(location).append('@').append(modified).append(':').append(length).append('\n');
+        }
+        return signature.toString();
+    }
+
+    //************************************************************************************************************//
+
+    //************************************** Hot reload *********************************************************//
+
+    /**
+     * Notified after reloaded properties become visible.
+     */
+    public interface ReloadListener {
+        /**
+         * @param properties  the reloaded properties
+         * @param changedKeys keys added, removed or changed by the reload
+         */
+        void propertiesReloaded(CompositeKeyProperties properties, Set<String> changedKeys);
+    }
+
+    public void addReloadListener(ReloadListener listener) {
+        reloader().listeners.add(listener);
+    }
+
+    public void removeReloadListener(ReloadListener listener) {
+        reloader().listeners.remove(listener);
+    }
+
+    /**
+     * Load the resource path of the last {@link #load(String, ClassLoader)} again, and replace all properties with
+     * the merged view of the resources. The new view is merged and indexed aside, then swapped in at once, so
+     * composite key lookups go on without blocking and never see a partial view. Listeners are notified of the
+     * changed keys afterwards.
+     *
+     * @return true if any property is changed.
+     * @throws IOException           fail to load the resources, the current properties are kept.
+     * @throws IllegalStateException properties are not loaded from resources.
+     */
+    public boolean reload() throws IOException {
+        return reloader().reload(false);
+    }
+
+    /**
+     * Poll the resources of the last load every interval in a daemon thread, and {@link #reload()} when any of
+     * them is added, removed or modified. Call {@link #stopReloading()} to stop polling.
+     */
+    public void startReloading(long intervalMillis) {
+        if (intervalMillis <= 0) {
+            throw new IllegalArgumentException("Reload interval must be positive: " + intervalMillis);
+        }
+        reloader().start(intervalMillis);
+    }
+
+    public void stopReloading() {
+        reloader().stop();
+    }
+
+    private Reloader reloader() {
+        Reloader r = reloader;
+        if (r == null) {
+            synchronized (this) {
+                if (reloader == null) {
+                    reloader = new Reloader();
+                }
+                r = reloader;
+            }
+        }
+        return r;
+    }
+
+    /**
+     * Replace all properties with the given ones and publish their index, composite key lookups keep using the
+     * old index until the new one is published. The difference is applied in place, added and changed keys are put
+     * before removed keys are removed, so a plain Properties read of a key kept by the reload never misses it.
+     *
+     * @return keys added, removed or changed.
+     */
+    private synchronized Set<String> swap(Properties properties, Node newIndex) {
+        Set<String> changed = new HashSet<String>();
+        List<Object> removed = new ArrayList<Object>();
+        for (Map.Entry<Object, Object> entry : super.entrySet()) {
+            if (!properties.containsKey(entry.getKey())) {
+                removed.add(entry.getKey());
+                changed.add(entry.getKey().toString());
+            }
+        }
+
+        for (Map.Entry<Object, Object> entry : properties.entrySet()) {
+            if (!entry.getValue().equals(super.get(entry.getKey()))) {
+                super.put(entry.getKey(), entry.getValue());
+                changed.add(entry.getKey().toString());
+            }
+        }
+        for (Object key : removed) {
+            super.remove(key);
+        }
+        index = newIndex;
+        return changed;
+    }
+
+    /**
+     * Reload state, reloads are serialized by its lock which is taken before the lock of the properties, load
+     * publishes the loaded resources without it. Polling is shared by all properties in one daemon thread.
+     * The signature of the resources is only taken while polling, properties never reloaded don't touch the
+     * resources again after load.
+     */
+    private final class Reloader implements Runnable {
+        private final List<ReloadListener> listeners = new CopyOnWriteArrayList<ReloadListener>();
+        private volatile String resourcePath;
+        private volatile ClassLoader classLoader;
+        private volatile String signature;//null if unknown, the next poll reloads.
+        private volatile ScheduledFuture<?> task;
+
+        void loaded(String resourcePath, ClassLoader classLoader, Resource[] resources) {
+            this.resourcePath = resourcePath;
+            this.classLoader = classLoader;
+            this.signature = task != null ? signatureOf(resources) : null;
+        }
+
+        synchronized boolean reload(boolean onlyIfModified) throws IOException {
+            if (resourcePath == null) {
+                throw new IllegalStateException("Properties are not loaded from resources!");
+            }
+            Resource[] resources = resolveResources(resourcePath, classLoader);
+            String newSignature = signatureOf(resources);
+            if (onlyIfModified && newSignature.equals(signature)) {
+                return false;
+            }
+
+            Properties merged = new Properties();
+            mergeResources(resources, merged);
+            Set<String> changed = swap(merged, buildIndex(merged.entrySet()));
+            signature = newSignature;
+
+            if (changed.isEmpty()) {
+                return false;
+            }
+            for (ReloadListener listener : listeners) {
+                try {
+                    listener.propertiesReloaded(CompositeKeyProperties.this, changed);
+                } catch (RuntimeException e) {
+                    logger.error("Reload listener " + listener + " fails!", e);
+                }
+            }
+            return true;
+        }
+
+        synchronized void start(long intervalMillis) {
+            if (resourcePath == null) {
+                throw new IllegalStateException("Properties are not loaded from resources!");
+            }
+            if (task != null) {
+                task.cancel(false);
+            }
+            if (signature == null) {
+                try {
+                    signature = signatureOf(resolveResources(resourcePath, classLoader));
+                } catch (IOException e) {
+                    logger.warn("Resolve properties " + resourcePath + " fails, reload on the first poll!", e);
+                }
+            }
+            task = RELOAD_TIMER.scheduleWithFixedDelay(this, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+        }
+
+        synchronized void stop() {
+            if (task != null) {
+                task.cancel(false);
+                task = null;
+            }
+        }
+
+        public void run() {
+            try {
+                reload(true);
+            } catch (Exception e) {
+                logger.error("Reload properties " + resourcePath + " fails, keep the current properties!", e);
+            }
+        }
+    }
+
     //************************************************************************************************************//
 
     //*********************************** Composite Key matching *************************************************//
@@ -118,6 +392,7 @@ public class CompositeKeyProperties extends Properties {
         private String propertyKey;//Property key to be retrieved.
         private String propertyValue;//Property value
         private String matchedKey;//Matched key
+        private String[] keys;//Composite keys of property key, joined on demand.
 
         MatchProperty(String propertyKey, String matchedKey, String propertyValue) {
             this.matchedKey = matchedKey;
@@ -125,6 +400,12 @@ public class CompositeKeyProperties extends Properties {
             this.propertyKey = propertyKey;
         }
 
+        MatchProperty(String[] keys, String matchedKey, String propertyValue) {
+            this.matchedKey = matchedKey;
+            this.propertyValue = propertyValue;
+            this.keys = keys;
+        }
+
         public String getMatchedKey() {
             return matchedKey;
         }
@@ -134,11 +415,38 @@ public class CompositeKeyProperties extends Properties {
         }
 
         public String getPropertyKey() {
+            if (propertyKey == null) {
+                propertyKey = getFullKey(keys);
+            }
             return propertyKey;
         }
     }
 
     public MatchProperty getMatchedProperty(String... keys) {
+        if (keys.length == 0) {
+            return legacyMatchedProperty(keys);
+        }
+
+        Node node = lookup(keys);
+        if (node == null) {
+            return new MatchProperty(keys, null, null);
+        } else if (node.exact && node.key.length() == fullKeyLength(keys)) {
+            return node.match;
+        } else {
+            return node.value == null ? new MatchProperty(keys, null, null) : new MatchProperty(keys, node.key, node.value);
+        }
+    }
+
+    public String getCompositeProperty(String... keys) {
+        if (keys.length == 0) {
+            return legacyCompositeProperty(keys);
+        }
+
+        Node node = lookup(keys);
+        return node == null ? null : node.value;
+    }
+
+    private MatchProperty legacyMatchedProperty(String... keys) {
         String key = getFullKey(keys);
         String value = getProperty(key);
 
@@ -151,7 +459,7 @@ public class CompositeKeyProperties extends Properties {
         }
     }
 
-    public String getCompositeProperty(String... keys) {
+    private String legacyCompositeProperty(String... keys) {
         String key = getFullKey(keys);
         String value = getProperty(key);
 
@@ -177,5 +485,373 @@ public class CompositeKeyProperties extends Properties {
         full_key.setLength(full_key.length() - 1);
         return full_key.toString();
     }
+
+    private static int fullKeyLength(String[] keys) {
+        int length = keys.length - 1;
+        for (String k : keys) {
+            length += k == null ? 4 : k.length();
+        }
+        return length;
+    }
+
+    /**
+     * Walk the trie by the segments of the keys, each key may contain delimiters too.
+     *
+     * @return the node of the full key if it has a string value. Otherwise the deepest upper level node which is
+     *         a key, null if no such node.
+     */
+    private Node lookup(String[] keys) {
+        Node root = index;
+        if (root == null) {
+            root = buildIndex();
+        }
+
+        Node node = root;
+        Node upper = null;
+        for (String key : keys) {
+            if (key == null) key = "null";
+            int from = 0;
+            while (true) {
+                if (node.present && node.key.length() > 0) {//upper level key, the same as getMatchedKey
+                    upper = node;
+                }
+                int to = key.indexOf(DELIMITER, from);
+                node = node.child(key, from, to < 0 ? key.length() : to);
+                if (node == null) {
+                    return upper;
+                }
+                if (to < 0) break;
+                from = to + 1;
+            }
+        }
+        return node.exact ? node : upper;
+    }
+
+    private Node buildIndex() {
+        synchronized (this) {
+            Node built = buildIndex(super.entrySet());
+            index = built;
+            return built;
+        }
+    }
+
+    private Node buildIndex(Set<Map.Entry<Object, Object>> entries) {
+        Node.Builder root = new Node.Builder("", "");
+        for (Map.Entry<Object, Object> entry : entries) {
+            if (!(entry.getKey() instanceof String)) continue;
+
+            String key = (String) entry.getKey();
+            Node.Builder node = root;
+            int from = 0;
+            while (true) {
+                int to = key.indexOf(DELIMITER, from);
+                int end = to < 0 ? key.length() : to;
+                node = node.child(key.substring(0, end), key.substring(from, end));
+                if (to < 0) break;
+                from = to + 1;
+            }
+            node.present = true;
+            node.value = entry.getValue() instanceof String ? (String) entry.getValue() : null;
+        }
+        return root.build(this);
+    }
+
+    private void invalidateIndex() {
+        index = null;
+    }
+
+    public synchronized Object put(Object key, Object value) {
+        Object old = super.put(key, value);
+        invalidateIndex();
+        return old;
+    }
+
+    public synchronized void putAll(Map<?, ?> t) {
+        super.putAll(t);
+        invalidateIndex();
+    }
+
+    public synchronized Object remove(Object key) {
+        Object old = super.remove(key);
+        invalidateIndex();
+        return old;
+    }
+
+    public synchronized void clear() {
+        super.clear();
+        invalidateIndex();
+    }
+
+    public synchronized Object putIfAbsent(Object key, Object value) {
+        Object old = super.putIfAbsent(key, value);
+        invalidateIndex();
+        return old;
+    }
+
+    public synchronized boolean remove(Object key, Object value) {
+        boolean removed = super.remove(key, value);
+        invalidateIndex();
+        return removed;
+    }
+
+    public synchronized boolean replace(Object key, Object oldValue, Object newValue) {
+        boolean replaced = super.replace(key, oldValue, newValue);
+        invalidateIndex();
+        return replaced;
+    }
+
+    public synchronized Object replace(Object key, Object value) {
+        Object old = super.replace(key, value);
+        invalidateIndex();
+        return old;
+    }
+
+    public synchronized void replaceAll(BiFunction<? super Object, ? super Object, ?> function) {
+        super.replaceAll(function);
+        invalidateIndex();
+    }
+
+    public synchronized Object computeIfAbsent(Object key, Function<? super Object, ?> mappingFunction) {
+        Object value = super.computeIfAbsent(key, mappingFunction);
+        invalidateIndex();
+        return value;
+    }
+
+    public synchronized Object computeIfPresent(Object key,
+                                                BiFunction<? super Object, ? super Object, ?> remappingFunction) {
+        Object value = super.computeIfPresent(key, remappingFunction);
+        invalidateIndex();
+        return value;
+    }
+
+    public synchronized Object compute(Object key, BiFunction<? super Object, ? super Object, ?> remappingFunction) {
+        Object value = super.compute(key, remappingFunction);
+        invalidateIndex();
+        return value;
+    }
+
+    public synchronized Object merge(Object key, Object value,
+                                     BiFunction<? super Object, ? super Object, ?> remappingFunction) {
+        Object merged = super.merge(key, value, remappingFunction);
+        invalidateIndex();
+        return merged;
+    }
+
+    /*
+     * The views write through to the properties, their removals and Map.Entry.setValue drop the index as well.
+     * They hold the lock of the properties like the mutators do, so an index built meanwhile is never published
+     * after being dropped.
+     */
+
+    public Set<Object> keySet() {
+        return new IndexedSet<Object>(super.keySet());
+    }
+
+    public Set<Map.Entry<Object, Object>> entrySet() {
+        return new IndexedSet<Map.Entry<Object, Object>>(super.entrySet());
+    }
+
+    public Collection<Object> values() {
+        return new IndexedCollection<Object>(super.values());
+    }
+
+    private class IndexedCollection<E> extends AbstractCollection<E> {
+        final Collection<E> view;
+
+        IndexedCollection(Collection<E> view) {
+            this.view = view;
+        }
+
+        public int size() {
+            return view.size();
+        }
+
+        public boolean contains(Object o) {
+            return view.contains(o);
+        }
+
+        public Iterator<E> iterator() {
+            final Iterator<E> it = view.iterator();
+            return new Iterator<E>() {
+                public boolean hasNext() {
+                    return it.hasNext();
+                }
+
+                @SuppressWarnings("unchecked")
+                public E next() {
+                    E next = it.next();
+                    if (next instanceof Map.Entry) {
+                        return (E) new IndexedEntry((Map.Entry<Object, Object>) next);
+                    }
+                    return next;
+                }
+
+                public void remove() {
+                    synchronized (CompositeKeyProperties.this) {
+                        it.remove();
+                        invalidateIndex();
+                    }
+                }
+            };
+        }
+
+        public boolean remove(Object o) {
+            synchronized (CompositeKeyProperties.this) {
+                boolean removed = view.remove(o);
+                invalidateIndex();
+                return removed;
+            }
+        }
+
+        public void clear() {
+            synchronized (CompositeKeyProperties.this) {
+                view.clear();
+                invalidateIndex();
+            }
+        }
+    }
+
+    private final class IndexedSet<E> extends IndexedCollection<E> implements Set<E> {
+        IndexedSet(Set<E> view) {
+            super(view);
+        }
+
+        public boolean equals(Object o) {
+            return o == this || view.equals(o);
+        }
+
+        public int hashCode() {
+            return view.hashCode();
+        }
+    }
+
+    private final class IndexedEntry implements Map.Entry<Object, Object> {
+        private final Map.Entry<Object, Object> entry;
+
+        IndexedEntry(Map.Entry<Object, Object> entry) {
+            this.entry = entry;
+        }
+
+        public Object getKey() {
+            return entry.getKey();
+        }
+
+        public Object getValue() {
+            return entry.getValue();
+        }
+
+        public Object setValue(Object value) {
+            synchronized (CompositeKeyProperties.this) {
+                Object old = entry.setValue(value);
+                invalidateIndex();
+                return old;
+            }
+        }
+
+        public boolean equals(Object o) {
+            return entry.equals(o);
+        }
+
+        public int hashCode() {
+            return entry.hashCode();
+        }
+
+        public String toString() {
+            return entry.toString();
+        }
+    }
+
+    /**
+     * Immutable trie node of one key segment, children are kept in an open addressing table probed by the
+     * segment characters, so a lookup needs no substring.
+     */
+    private static final class Node {
+        private static final Node[] NO_CHILDREN = new Node[0];
+
+        final String key;
+        final String segment;
+        final int hash;
+        final boolean present;//the key is in properties
+        final boolean exact;//the key has a string value
+        final String value;
+        final MatchProperty match;
+        private final Node[] children;
+
+        private Node(Builder builder, Node[] children, CompositeKeyProperties owner) {
+            this.key = builder.key;
+            this.segment = builder.segment;
+            this.hash = builder.segment.hashCode();
+            this.present = builder.present;
+            this.exact = builder.value != null;
+            this.value = builder.value;
+            this.match = exact ? owner.new MatchProperty(key, key, value) : null;
+            this.children = children;
+        }
+
+        Node child(String key, int from, int to) {
+            if (children.length == 0) {
+                return null;
+            }
+            int h = 0;
+            for (int i = from; i < to; i++) {
+                h = 31 * h + key.charAt(i);
+            }
+            int len = to - from;
+            int mask = children.length - 1;
+            for (int i = spread(h) & mask; ; i = (i + 1) & mask) {
+                Node child = children[i];
+                if (child == null) {
+                    return null;
+                }
+                if (child.hash == h && child.segment.length() == len && child.segment.regionMatches(0, key, from, len)) {
+                    return child;
+                }
+            }
+        }
+
+        private static int spread(int h) {
+            return h ^ (h >>> 16);
+        }
+
+        static final class Builder {
+            final String key;
+            final String segment;
+            boolean present;
+            String value;
+            private final Map<String, Builder> children = new HashMap<String, Builder>();
+
+            Builder(String key, String segment) {
+                this.key = key;
+                this.segment = segment;
+            }
+
+            Builder child(String key, String segment) {
+                Builder child = children.get(segment);
+                if (child == null) {
+                    child = new Builder(key, segment);
+                    children.put(segment, child);
+                }
+                return child;
+            }
+
+            Node build(CompositeKeyProperties owner) {
+                if (children.isEmpty()) {
+                    return new Node(this, NO_CHILDREN, owner);
+                }
+                //keep the table at most half full, so a probe for a missing segment ends soon.
+                int size = Integer.highestOneBit(children.size()) << 2;
+                Node[] table = new Node[size];
+                for (Builder child : children.values()) {
+                    Node node = child.build(owner);
+                    int i = spread(node.hash) & (size - 1);
+                    while (table[i] != null) {
+                        i = (i + 1) & (size - 1);
+                    }
+                    table[i] = node;
+                }
+                return new Node(this, table, owner);
+            }
+        }
+    }
     //*************************************************************************************************************//
 }
@@ -1,13 +1,25 @@
 
 package org.mangocube.corenut.commons.bean;
 
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
 import org.mangocube.corenut.commons.devprocess.CoverageMetric;
 import org.mangocube.corenut.commons.exception.ErrorCode;
 import org.mangocube.corenut.commons.util.ClassUtils;
 
+import java.util.Arrays;
 import java.util.Map;
 import java.util.Properties;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.BlockingDeque;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 import java.io.IOException;
 
 /**
@@ -16,6 +28,10 @@ import java.io.IOException;
  * When retrieve instance by InstanceFactory, the factory will check its pool first, try to get cached instance if available.
  * If no cached instance is found, then retrieve matched class name from property file and create the instance. Afterwards,
  * put instance into pool when necessary, and return the instance.
+ * <p/>
+ * In POOLED mode instances are borrowed and returned, see {@link #borrowInstance(String[])}.
+ * <p/>
+ * The configuration can be reloaded while the factory is in use, see {@link #startReloading(long)}.
  *
  * @since 1.0
  */
@@ -29,13 +45,35 @@ public class InstanceFactory<T> {
         @ErrorCode(comment = "Fail to create instance of class ${1}!")
         CREATE_INSTANCE_FAIL,
         @ErrorCode(comment = "Fail to initialize instance of class ${1}!")
-        INI_INSTANCE_FAIL
+        INI_INSTANCE_FAIL,
+        @ErrorCode(comment = "Timeout to borrow instance for key ${1} after ${2} ms!")
+        BORROW_TIMEOUT,
+        @ErrorCode(comment = "Interrupted while waiting to borrow instance for key ${1}!")
+        BORROW_INTERRUPTED,
+        @ErrorCode(comment = "Instance ${1} is not borrowed from the factory!")
+        NOT_BORROWED,
+        @ErrorCode(comment = "Instances of POOLED factory must be borrowed by borrowInstance, keys ${1}!")
+        BORROW_REQUIRED,
+        @ErrorCode(comment = "Instances can only be borrowed from POOLED factory, keys ${1}!")
+        NOT_POOLED
     }
 
+    private static final Log logger = LogFactory.getLog(InstanceFactory.class);
+    private static final int LOCK_STRIPES = 64;
+
     protected CompositeKeyProperties factoryProperties;
     protected Map<String, T> instancePool;
+    private final Object[] creationLocks = newLocks();
 
     private InstanceManage insMgrOpt = InstanceManage.NA;
+    private volatile int generation;//count of reloads evicting the pool
+    private PoolEvictor poolEvictor;//guarded by this, registered while reloading
+
+    private ConcurrentMap<String, InstancePool> borrowPools;
+    private final Map<Lease, InstancePool> leases = new ConcurrentHashMap<Lease, InstancePool>();
+    private volatile int maxPoolSize = 8;
+    private volatile long maxWaitMillis = 30000;
+    private volatile long idleTimeoutMillis = 300000;
 
     public enum InstanceManage {
         /**
@@ -53,7 +91,12 @@ public class InstanceFactory<T> {
         /**
          * For certain object class, only cache one instance.
          */
-        REUSE_INSTANCE
+        REUSE_INSTANCE,
+        /**
+         * Keep a bounded pool of instances for individual key, for instances which are expensive and not thread-safe.
+         * An instance is borrowed by borrowInstance and must be given back by returnInstance, getInstance is refused.
+         */
+        POOLED
     }
 
     /**
@@ -110,10 +153,11 @@ public class InstanceFactory<T> {
     public InstanceFactory(CompositeKeyProperties factoryProperties, InstanceManage mgrOpt) {
         this.factoryProperties = factoryProperties;
 
-        if (!mgrOpt.equals(InstanceManage.NA) && instancePool == null) {
+        if (isCaching(mgrOpt) && instancePool == null) {
             instancePool = new ConcurrentHashMap<String, T>();
         }
         insMgrOpt = mgrOpt;
+        if (mgrOpt.equals(InstanceManage.POOLED)) borrowPools = new ConcurrentHashMap<String, InstancePool>();
     }
 
     private void construct(String resourcePattern, InstanceManage mgrOpt, ClassLoader classLoader) {
@@ -124,8 +168,13 @@ public class InstanceFactory<T> {
             throw new FactoryException(FactoryError.LOAD_FACTORY_CONFIG_FAIL, e, resourcePattern);
         }
 
-        if (!mgrOpt.equals(InstanceManage.NA)) instancePool = new ConcurrentHashMap<String, T>();
+        if (isCaching(mgrOpt)) instancePool = new ConcurrentHashMap<String, T>();
         insMgrOpt = mgrOpt;
+        if (mgrOpt.equals(InstanceManage.POOLED)) borrowPools = new ConcurrentHashMap<String, InstancePool>();
+    }
+
+    private static boolean isCaching(InstanceManage mgrOpt) {
+        return !mgrOpt.equals(InstanceManage.NA) && !mgrOpt.equals(InstanceManage.POOLED);
     }
 
     public Properties getFactoryProperties() {
@@ -138,11 +187,59 @@ public class InstanceFactory<T> {
      * which delimiter is "/". Once matched entry is found, factory will create/return instance according to
      * InstanceManage option. If the instance implements org.mangocube.corenut.commons.bean.BeanLifecycle, then onCreate
      * method will be invoked.  
+     * <p/>
+     * A cached instance is returned without locking. Creation of a cached instance is guarded by one of striped locks
+     * owned by the factory, so onCreate runs once per cached instance and creations of other keys go on in parallel.
+     * Cached instances affected by a reload of the configuration are evicted and their onDestroy invoked.
      *
      * @param keys composite keys to retrieve corresponding instance.
      * @return object instance mathed the given keys. if not matched, return null. 
+     * @throws FactoryException the factory is in POOLED mode, use {@link #borrowInstance(String[])} instead.
      */
     public T getInstance(String... keys) {
+        if (borrowPools != null) {
+            throw new FactoryException(FactoryError.BORROW_REQUIRED, Arrays.toString(keys));
+        }
+
+        int gen = generation;
+        CompositeKeyProperties.MatchProperty match = matchProperty(keys);
+        if (match == null) {
+            return null;
+        }
+
+        String cls_name = match.getPropertyValue();
+        if (instancePool == null) {
+            return newInstance(cls_name);
+        }
+
+        String instance_key = getInstanceKey(match);
+        T instance = instancePool.get(instance_key);
+        if (instance != null) {
+            return instance;
+        }
+
+        //only creators of keys in the same stripe wait for each other, hits never lock.
+        synchronized (creationLocks[stripeOf(instance_key)]) {
+            instance = instancePool.get(instance_key);
+            if (instance != null) {
+                return instance;
+            }
+            instance = newInstance(cls_name);
+            instancePool.put(instance_key, instance);
+            if (generation == gen) {
+                return instance;
+            }
+            //properties are reloaded meanwhile, the instance may be created by the old mapping.
+            instancePool.remove(instance_key);
+        }
+        destroyQuietly(instance);
+        return getInstance(keys);
+    }
+
+    /**
+     * @return matched property with class defined, null if not matched.
+     */
+    private CompositeKeyProperties.MatchProperty matchProperty(String[] keys) {
         if (keys.length == 1 && keys[0].indexOf('/') > 0) {
             keys = keys[0].split("//");
         }
@@ -155,34 +252,149 @@ public class InstanceFactory<T> {
                 throw new FactoryException(FactoryError.NO_CLASS_DEF, match.getPropertyKey());
             }
         }
+        return match;
+    }
 
-        T instance = null;
-        String instance_key = getInstanceKey(match);
-        String cls_name = match.getPropertyValue();
+    private T newInstance(String clsName) {
+        T instance = createInstance(clsName);
+        try {
+            initialize(instance);
+        } catch (Exception e) {
+            throw new FactoryException(FactoryError.INI_INSTANCE_FAIL, e, clsName);
+        }
+        return instance;
+    }
 
-        synchronized (cls_name) {
-            if (instancePool != null) {
-                instance = instancePool.get(instance_key);
-            }
+    /**
+     * Borrow an instance in POOLED mode, keys are matched the same as {@link #getInstance(String[])}. The instance is
+     * taken from the idle instances of the key, or created when the pool of the key is not full, otherwise wait for
+     * an instance to be returned at most maxWaitMillis. Idle instances longer than idleTimeoutMillis are destroyed
+     * instead of borrowed.
+     *
+     * @param keys composite keys to retrieve corresponding instance.
+     * @return borrowed instance, must be given back by {@link #returnInstance(Object)}. if not matched, return null.
+     * @throws FactoryException the factory is not in POOLED mode, or no instance is returned in maxWaitMillis.
+     */
+    public T borrowInstance(String... keys) {
+        if (borrowPools == null) {
+            throw new FactoryException(FactoryError.NOT_POOLED, Arrays.toString(keys));
+        }
 
-            if (instance == null) {
-                instance = createInstance(cls_name);
+        int gen = generation;
+        CompositeKeyProperties.MatchProperty match = matchProperty(keys);
+        if (match == null) {
+            return null;
+        }
+        return borrow(match.getPropertyKey(), match.getPropertyValue(), gen, keys);
+    }
 
-                try {
-                    initialize(instance);
-                } catch (Exception e) {
-                    throw new FactoryException(FactoryError.INI_INSTANCE_FAIL, e, cls_name);
-                }
+    /**
+     * Give back an instance borrowed in POOLED mode. An instance of a key whose pool is evicted by reload is
+     * destroyed.
+     *
+     * @param instance the borrowed instance.
+     */
+    public void returnInstance(T instance) {
+        InstancePool pool = leases.remove(new Lease(instance));
+        if (pool == null) {
+            throw new FactoryException(FactoryError.NOT_BORROWED, instance);
+        }
+        pool.giveBack(instance);
+    }
 
-                if (instancePool != null) {
-                    instancePool.put(instance_key, instance);
+    private T borrow(String key, String clsName, int gen, String[] keys) {
+        InstancePool pool = borrowPools.get(key);
+        if (pool == null) {
+            InstancePool created = new InstancePool(key, clsName);
+            pool = borrowPools.putIfAbsent(key, created);
+            if (pool == null) {
+                pool = created;
+            }
+            if (generation != gen) {
+                //properties are reloaded meanwhile, the pool may be created by the old mapping.
+                //only the creator drops its pool, a pool of another thread is left to that thread.
+                if (pool == created) {
+                    borrowPools.remove(key, created);
+                    created.close();
                 }
+                return borrowInstance(keys);
             }
         }
 
+        T instance = pool.borrow();
+        if (instance == null) {//pool is evicted by reload
+            return borrowInstance(keys);
+        }
+        leases.put(new Lease(instance), pool);
         return instance;
     }
 
+    public int getMaxPoolSize() {
+        return maxPoolSize;
+    }
+
+    /**
+     * @param maxPoolSize max count of borrowed and idle instances per key in POOLED mode, default 8. Applies to
+     *                    pools created afterwards.
+     */
+    public void setMaxPoolSize(int maxPoolSize) {
+        if (maxPoolSize <= 0) {
+            throw new IllegalArgumentException("Max pool size must be positive: " + maxPoolSize);
+        }
+        this.maxPoolSize = maxPoolSize;
+    }
+
+    public long getMaxWaitMillis() {
+        return maxWaitMillis;
+    }
+
+    /**
+     * @param maxWaitMillis max time to wait for an instance when the pool is full, negative to wait forever,
+     *                      default 30 seconds.
+     */
+    public void setMaxWaitMillis(long maxWaitMillis) {
+        this.maxWaitMillis = maxWaitMillis;
+    }
+
+    public long getIdleTimeoutMillis() {
+        return idleTimeoutMillis;
+    }
+
+    /**
+     * @param idleTimeoutMillis idle instances longer than it are destroyed when the pool is next used, non-positive
+     *                          to keep idle instances forever, default 5 minutes.
+     */
+    public void setIdleTimeoutMillis(long idleTimeoutMillis) {
+        this.idleTimeoutMillis = idleTimeoutMillis;
+    }
+
+    /**
+     * @return metrics of pools by property key in POOLED mode, empty in other modes.
+     */
+    public Map<String, PoolMetrics> getPoolMetrics() {
+        Map<String, PoolMetrics> metrics = new TreeMap<String, PoolMetrics>();
+        if (borrowPools != null) {
+            for (Map.Entry<String, InstancePool> entry : borrowPools.entrySet()) {
+                metrics.put(entry.getKey(), entry.getValue().metrics());
+            }
+        }
+        return metrics;
+    }
+
+    private static Object[] newLocks() {
+        Object[] locks = new Object[LOCK_STRIPES];
+        for (int i = 0; i < locks.length; i++) {
+            locks[i] = new Object();
+        }
+        return locks;
+    }
+
+    private static int stripeOf(String key) {
+        int h = key.hashCode();
+        h ^= (h >>> 16);
+        return h & (LOCK_STRIPES - 1);
+    }
+
     protected String getInstanceKey(CompositeKeyProperties.MatchProperty match) {
         String ins_key = "";
         switch (insMgrOpt) {
@@ -246,4 +458,326 @@ public class InstanceFactory<T> {
             ((BeanLifecycle) instance).onCreate();
         }
     }
+
+    protected void destroy(T instance) throws Exception {
+        if (instance instanceof BeanLifecycle) {
+            ((BeanLifecycle) instance).onDestroy();
+        }
+    }
+
+    private void destroyQuietly(T instance) {
+        try {
+            destroy(instance);
+        } catch (Exception e) {
+            logger.error("Fail to destroy instance of class " + instance.getClass().getName() + "!", e);
+        }
+    }
+
+    /**
+     * Poll the configuration resources every interval and reload them when modified, cached instances affected by
+     * the reload are evicted and destroyed, borrowed ones when returned, see {@link CompositeKeyProperties#startReloading(long)}.
+     * The factory listens to reloads of its properties until {@link #stopReloading()}.
+     */
+    public synchronized void startReloading(long intervalMillis) {
+        if (poolEvictor == null && (instancePool != null || borrowPools != null)) {
+            poolEvictor = new PoolEvictor();
+            factoryProperties.addReloadListener(poolEvictor);
+        }
+        try {
+            factoryProperties.startReloading(intervalMillis);
+        } catch (RuntimeException e) {
+            stopReloading();
+            throw e;
+        }
+    }
+
+    /**
+     * Stop polling the configuration resources and listening to their reloads, so a factory over properties shared
+     * with others is no longer referred by them.
+     */
+    public synchronized void stopReloading() {
+        factoryProperties.stopReloading();
+        if (poolEvictor != null) {
+            factoryProperties.removeReloadListener(poolEvictor);
+            poolEvictor = null;
+        }
+    }
+
+    /**
+     * Evicts cached instances and pools whose key may resolve to another class after reload: by key, the key or an upper level
+     * key of it is changed; by catalog, the catalog key is changed; reused, no key refers to the class any more.
+     */
+    private class PoolEvictor implements CompositeKeyProperties.ReloadListener {
+        public void propertiesReloaded(CompositeKeyProperties properties, Set<String> changedKeys) {
+            //single writer, reloads of the properties are serialized.
+            generation++;
+            if (borrowPools != null) {
+                for (Map.Entry<String, InstancePool> entry : borrowPools.entrySet()) {
+                    if (isAffected(entry.getKey(), changedKeys) && borrowPools.remove(entry.getKey(), entry.getValue())) {
+                        entry.getValue().close();
+                    }
+                }
+                return;
+            }
+            for (Map.Entry<String, T> entry : instancePool.entrySet()) {
+                if (isAffected(entry.getKey(), changedKeys)) {
+                    boolean removed;
+                    synchronized (creationLocks[stripeOf(entry.getKey())]) {
+                        removed = instancePool.remove(entry.getKey(), entry.getValue());
+                    }
+                    if (removed) {
+                        destroyQuietly(entry.getValue());
+                    }
+                }
+            }
+        }
+
+        private boolean isAffected(String instanceKey, Set<String> changedKeys) {
+            switch (insMgrOpt) {
+                case CACHE_BY_KEY:
+                case POOLED:
+                    for (String key : changedKeys) {
+                        if (instanceKey.startsWith(key)
+                                && (instanceKey.length() == key.length() || instanceKey.charAt(key.length()) == '/')) {
+                            return true;
+                        }
+                    }
+                    return false;
+                case CACHE_BY_CATALOG:
+                    return changedKeys.contains(instanceKey);
+                case REUSE_INSTANCE:
+                    return !factoryProperties.containsValue(instanceKey);
+                default:
+                    return false;
+            }
+        }
+    }
+
+    /**
+     * Bounded pool of one key in POOLED mode. Permits bound the count of borrowed and idle instances, idle
+     * instances are kept most recently returned first, so the ones at the tail expire.
+     */
+    private final class InstancePool {
+        private final String key;
+        private final String clsName;
+        private final int maxSize;
+        private final Semaphore permits;
+        private final BlockingDeque<IdleInstance<T>> idle = new LinkedBlockingDeque<IdleInstance<T>>();
+        private volatile boolean closed;
+
+        private final AtomicInteger active = new AtomicInteger();
+        private final AtomicLong created = new AtomicLong();
+        private final AtomicLong destroyed = new AtomicLong();
+        private final AtomicLong borrowed = new AtomicLong();
+        private final AtomicLong waitTimeouts = new AtomicLong();
+        private final AtomicLong waitNanos = new AtomicLong();
+
+        InstancePool(String key, String clsName) {
+            this.key = key;
+            this.clsName = clsName;
+            this.maxSize = maxPoolSize;
+            this.permits = new Semaphore(maxSize);
+        }
+
+        /**
+         * @return borrowed instance, null if the pool is closed.
+         */
+        T borrow() {
+            long wait = maxWaitMillis;
+            long start = System.nanoTime();
+            try {
+                if (wait < 0) {
+                    permits.acquire();
+                } else if (!permits.tryAcquire(wait, TimeUnit.MILLISECONDS)) {
+                    waitTimeouts.incrementAndGet();
+                    throw new FactoryException(FactoryError.BORROW_TIMEOUT, key, wait);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new FactoryException(FactoryError.BORROW_INTERRUPTED, e, key);
+            }
+            waitNanos.addAndGet(System.nanoTime() - start);
+
+            T instance = null;
+            try {
+                if (closed) {
+                    return null;
+                }
+                long now = System.currentTimeMillis();
+                IdleInstance<T> entry;
+                while (instance == null && (entry = idle.pollFirst()) != null) {
+                    if (isExpired(entry, now)) {
+                        destroyInstance(entry.instance);
+                    } else {
+                        instance = entry.instance;
+                    }
+                }
+                if (instance == null) {
+                    instance = newInstance(clsName);
+                    created.incrementAndGet();
+                }
+            } finally {
+                if (instance == null) {
+                    permits.release();
+                }
+            }
+            active.incrementAndGet();
+            borrowed.incrementAndGet();
+            return instance;
+        }
+
+        void giveBack(T instance) {
+            active.decrementAndGet();
+            if (closed) {
+                destroyInstance(instance);
+            } else {
+                idle.offerFirst(new IdleInstance<T>(instance, System.currentTimeMillis()));
+                if (closed) {//closed meanwhile, the instance may be missed by close
+                    destroyIdle();
+                } else {
+                    evictExpired();
+                }
+            }
+            permits.release();
+        }
+
+        void close() {
+            closed = true;
+            destroyIdle();
+        }
+
+        private void evictExpired() {
+            long now = System.currentTimeMillis();
+            IdleInstance<T> entry;
+            while ((entry = idle.peekLast()) != null && isExpired(entry, now)) {
+                if (idle.removeLastOccurrence(entry)) {
+                    destroyInstance(entry.instance);
+                }
+            }
+        }
+
+        private void destroyIdle() {
+            IdleInstance<T> entry;
+            while ((entry = idle.pollFirst()) != null) {
+                destroyInstance(entry.instance);
+            }
+        }
+
+        private boolean isExpired(IdleInstance<T> entry, long now) {
+            long timeout = idleTimeoutMillis;
+            return timeout > 0 && now - entry.since > timeout;
+        }
+
+        private void destroyInstance(T instance) {
+            destroyed.incrementAndGet();
+            destroyQuietly(instance);
+        }
+
+        PoolMetrics metrics() {
+            return new PoolMetrics(maxSize, active.get(), idle.size(), created.get(), destroyed.get(), borrowed.get(),
+                    waitTimeouts.get(), waitNanos.get());
+        }
+    }
+
+    private static final class IdleInstance<T> {
+        final T instance;
+        final long since;
+
+        IdleInstance(T instance, long since) {
+            this.instance = instance;
+            this.since = since;
+        }
+    }
+
+    /**
+     * Key of a borrowed instance by identity.
+     */
+    private static final class Lease {
+        private final Object instance;
+
+        Lease(Object instance) {
+            this.instance = instance;
+        }
+
+        public boolean equals(Object o) {
+            return o instanceof Lease && ((Lease) o).instance == instance;
+        }
+
+        public int hashCode() {
+            return System.identityHashCode(instance);
+        }
+    }
+
+    /**
+     * Snapshot of the metrics of one pool in POOLED mode.
+     */
+    public static final class PoolMetrics {
+        private final int maxSize;
+        private final int active;
+        private final int idle;
+        private final long created;
+        private final long destroyed;
+        private final long borrowed;
+        private final long waitTimeouts;
+        private final long waitNanos;
+
+        PoolMetrics(int maxSize, int active, int idle, long created, long destroyed, long borrowed,
+                    long waitTimeouts, long waitNanos) {
+            this.maxSize = maxSize;
+            this.active = active;
+            this.idle = idle;
+            this.created = created;
+            this.destroyed = destroyed;
+            this.borrowed = borrowed;
+            this.waitTimeouts = waitTimeouts;
+            this.waitNanos = waitNanos;
+        }
+
+        public int getMaxSize() {
+            return maxSize;
+        }
+
+        /**
+         * @return count of instances borrowed and not returned yet.
+         */
+        public int getActive() {
+            return active;
+        }
+
+        public int getIdle() {
+            return idle;
+        }
+
+        public long getCreated() {
+            return created;
+        }
+
+        public long getDestroyed() {
+            return destroyed;
+        }
+
+        public long getBorrowed() {
+            return borrowed;
+        }
+
+        /**
+         * @return count of borrows failed for the pool is still full after max wait.
+         */
+        public long getWaitTimeouts() {
+            return waitTimeouts;
+        }
+
+        /**
+         * @return total time spent by borrows waiting for the pool, in nanoseconds.
+         */
+        public long getWaitNanos() {
+            return waitNanos;
+        }
+
+        public String toString() {
+            return "PoolMetrics[maxSize=" + maxSize + ", active=" + active + ", idle=" + idle + ", created=" + created
+                    + ", destroyed=" + destroyed + ", borrowed=" + borrowed + ", waitTimeouts=" + waitTimeouts
+                    + ", waitNanos=" + waitNanos + "]";
+        }
+    }
 }
@@ -0,0 +1,453 @@
+/**
+ * Copyright Mangocity Limited (c) 2010. All rights reserved.
+ * This software is proprietary to and embodies the confidential
+ * technology of Mangocity Limited.  Possession, use, or copying
+ * of this software and media is authorized only pursuant to a
+ * valid written license from Mangocity or an authorized sublicensor.
+ */
+package org.mangocube.corenut.commons.db;
+
+import java.lang.reflect.Method;
+import java.sql.CallableStatement;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.mangocube.corenut.commons.db.connection.DelegatingConnection;
+import org.mangocube.corenut.commons.db.connection.IConnectionProvider;
+import org.mangocube.corenut.commons.db.connection.IReadWriteConnectionProvider;
+import org.mangocube.corenut.commons.db.connection.PooledConnectionProvider;
+
+/**
+ * Asynchronous facade of JdbcTemplate. Every call runs on a dedicated JDBC executor and returns a
+ * CompletableFuture, so a request thread can fan out independent queries in parallel.
+ * <p/>
+ * The default executor has as many threads as the connection pool has connections and a bounded queue,
+ * a call rejected by the full queue completes exceptionally with RejectedExecutionException. On JDK 21 or
+ * later {@link #withVirtualThreads(IConnectionProvider, int)} runs every call on its own virtual thread,
+ * with the concurrency bounded by a semaphore.
+ * <p/>
+ * When a call is given a timeout and does not complete in time, every statement it created is cancelled
+ * by <code>Statement.cancel()</code> and the future completes exceptionally with TimeoutException.
+ * Cancelling the future cancels the statements too.
+ * <pre>
+ * AsyncJdbcTemplate async = new AsyncJdbcTemplate(pool);
+ * CompletableFuture&lt;List&lt;User&gt;&gt; users = async.executeQuery(userSql, userCallback, 2000);
+ * CompletableFuture&lt;List&lt;Order&gt;&gt; orders = async.executeQuery(orderSql, orderCallback, 2000);
+ * CompletableFuture.allOf(users, orders).join();
+ * ...
+ * async.shutdown();
+ * </pre>
+ *
+ * @since 1.0
+ */
+public class AsyncJdbcTemplate {
+	private static Log log = LogFactory.getLog(AsyncJdbcTemplate.class);
+
+	public static final int DEFAULT_QUEUE_CAPACITY = 1000;
+
+	private final JdbcTemplate template;
+	private final ExecutorService executor;
+	private final Semaphore concurrency;
+	private final ScheduledThreadPoolExecutor timer;
+	private final ThreadLocal<CancelHandle> currentHandle = new ThreadLocal<CancelHandle>();
+
+	/**
+	 * Executor sized to the max size of the pool.
+	 */
+	public AsyncJdbcTemplate(PooledConnectionProvider pool) {
+		this(pool, pool.getMaxSize(), DEFAULT_QUEUE_CAPACITY);
+	}
+
+	/**
+	 * @param threads       threads of the JDBC executor, should be the number of connections of the provider.
+	 * @param queueCapacity calls waiting for a thread before rejected.
+	 */
+	public AsyncJdbcTemplate(IConnectionProvider conProvider, int threads, int queueCapacity) {
+		this(conProvider, newJdbcExecutor(threads, queueCapacity), null);
+	}
+
+	/**
+	 * @param executor executor owned by this template, shut down by {@link #shutdown()}.
+	 */
+	public AsyncJdbcTemplate(IConnectionProvider conProvider, ExecutorService executor) {
+		this(conProvider, executor, null);
+	}
+
+	private AsyncJdbcTemplate(IConnectionProvider conProvider, ExecutorService executor, Semaphore concurrency) {
+		this.template = new JdbcTemplate(new CancellableConnectionProvider(conProvider));
+		this.executor = executor;
+		this.concurrency = concurrency;
+		this.timer = new ScheduledThreadPoolExecutor(1, new JdbcThreadFactory("jdbc-async-timer"));
+		this.timer.setRemoveOnCancelPolicy(true);
+	}
+
+	/**
+	 * Run every call on its own virtual thread, needs JDK 21 or later.
+	 *
+	 * @param maxConcurrency calls running at the same time, should be the number of connections of the provider.
+	 * @throws UnsupportedOperationException virtual thread is not supported by the running JDK.
+	 */
+	public static AsyncJdbcTemplate withVirtualThreads(IConnectionProvider conProvider, int maxConcurrency) {
+		ExecutorService executor;
+		try {
+			Method factory = java.util.concurrent.Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+			executor = (ExecutorService) factory.invoke(null);
+		} catch (NoSuchMethodException e) {
+			throw new UnsupportedOperationException("virtual thread needs JDK 21 or later", e);
+		} catch (Exception e) {
+			throw new UnsupportedOperationException("fail to create virtual thread executor", e);
+		}
+		return new AsyncJdbcTemplate(conProvider, executor, new Semaphore(maxConcurrency, true));
+	}
+
+	private static ExecutorService newJdbcExecutor(int threads, int queueCapacity) {
+		return new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+				new ArrayBlockingQueue<Runnable>(queueCapacity), new JdbcThreadFactory("jdbc-async"));
+	}
+
+	/**
+	 * @return the blocking template the calls are run by.
+	 */
+	public JdbcTemplate getTemplate() {
+		return template;
+	}
+
+	public <T> CompletableFuture<T> executeQuery(String sql, IQueryCallback<T> callback) {
+		return executeQuery(sql, callback, 0);
+	}
+
+	/**
+	 * @param timeout milliseconds before the statements are cancelled, 0 for no timeout.
+	 */
+	public <T> CompletableFuture<T> executeQuery(final String sql, final IQueryCallback<T> callback, long timeout) {
+		return submit(new JdbcCall<T>() {
+			public T call() throws SQLException {
+				return template.executeQuery(sql, callback);
+			}
+		}, timeout);
+	}
+
+	public <T> CompletableFuture<T> execute(IConnectionCallback<T> callback) {
+		return execute(callback, 0);
+	}
+
+	public <T> CompletableFuture<T> execute(final IConnectionCallback<T> callback, long timeout) {
+		return submit(new JdbcCall<T>() {
+			public T call() throws SQLException {
+				return template.execute(callback);
+			}
+		}, timeout);
+	}
+
+	public <T> CompletableFuture<T> execute(IStatementCallback<T> callback) {
+		return execute(callback, 0);
+	}
+
+	public <T> CompletableFuture<T> execute(final IStatementCallback<T> callback, long timeout) {
+		return submit(new JdbcCall<T>() {
+			public T call() throws SQLException {
+				return template.execute(callback);
+			}
+		}, timeout);
+	}
+
+	public <T> CompletableFuture<T> execute(IPrepareStatementCallback<T> callback) {
+		return execute(callback, 0);
+	}
+
+	public <T> CompletableFuture<T> execute(final IPrepareStatementCallback<T> callback, long timeout) {
+		return submit(new JdbcCall<T>() {
+			public T call() throws SQLException {
+				return template.execute(callback);
+			}
+		}, timeout);
+	}
+
+	public CompletableFuture<BatchResult> executeBatch(String sql, Iterable<Object[]> rows) {
+		return executeBatch(sql, rows, 0);
+	}
+
+	public CompletableFuture<BatchResult> executeBatch(final String sql, final Iterable<Object[]> rows, long timeout) {
+		return submit(new JdbcCall<BatchResult>() {
+			public BatchResult call() throws SQLException {
+				return template.executeBatch(sql, rows);
+			}
+		}, timeout);
+	}
+
+	public <T> CompletableFuture<BatchResult> executeBatch(final String sql, final Iterable<T> rows,
+			final IBatchStatementCallback<T> callback, final int batchSize, final int commitInterval,
+			final JdbcTemplate.BatchFailureMode failureMode, long timeout) {
+		return submit(new JdbcCall<BatchResult>() {
+			public BatchResult call() throws SQLException {
+				return template.executeBatch(sql, rows, callback, batchSize, commitInterval, failureMode);
+			}
+		}, timeout);
+	}
+
+	private <T> CompletableFuture<T> submit(final JdbcCall<T> call, final long timeout) {
+		final CompletableFuture<T> future = new CompletableFuture<T>();
+		final CancelHandle handle = new CancelHandle();
+		try {
+			executor.execute(new Runnable() {
+				public void run() {
+					runCall(call, future, handle);
+				}
+			});
+		} catch (RejectedExecutionException e) {
+			future.completeExceptionally(e);
+			return future;
+		}
+
+		final ScheduledFuture<?> timeoutTask = timeout > 0 ? timer.schedule(new Runnable() {
+			public void run() {
+				if (future.completeExceptionally(new TimeoutException("JDBC call timed out after " + timeout + "ms"))) {
+					handle.cancel();
+				}
+			}
+		}, timeout, TimeUnit.MILLISECONDS) : null;
+
+		future.whenComplete(new BiConsumer<T, Throwable>() {
+			public void accept(T result, Throwable e) {
+				if (timeoutTask != null) {
+					timeoutTask.cancel(false);
+				}
+				if (future.isCancelled()) {
+					handle.cancel();
+				}
+			}
+		});
+		return future;
+	}
+
+	private <T> void runCall(JdbcCall<T> call, CompletableFuture<T> future, CancelHandle handle) {
+		if (future.isDone()) {
+			return;
+		}
+
+		boolean acquired = false;
+		currentHandle.set(handle);
+		try {
+			if (concurrency != null) {
+				concurrency.acquire();
+				acquired = true;
+			}
+			if (!future.isDone()) {
+				future.complete(call.call());
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			future.completeExceptionally(e);
+		} catch (Throwable e) {
+			future.completeExceptionally(e);
+		} finally {
+			handle.finish();
+			currentHandle.remove();
+			if (acquired) {
+				concurrency.release();
+			}
+		}
+	}
+
+	/**
+	 * Stop accepting calls, running calls are completed.
+	 */
+	public void shutdown() {
+		executor.shutdown();
+		timer.shutdown();
+	}
+
+	private interface JdbcCall<T> {
+		T call() throws SQLException;
+	}
+
+	/**
+	 * Statements created by a call. Once the connection of a statement is closed the statement may be closed
+	 * or parked in a statement cache for another caller, so its statements are forgotten before the connection
+	 * goes back and never cancelled afterwards. Statements are cancelled under the lock, so forgetting waits for
+	 * a cancel in progress.
+	 */
+	private static class CancelHandle {
+		private final List<Statement> statements = new ArrayList<Statement>(2);
+		private boolean cancelled = false;
+		private boolean finished = false;
+
+		synchronized void register(Statement stmt) {
+			if (finished) return;
+			statements.add(stmt);
+			if (cancelled) {
+				cancelStatement(stmt);
+			}
+		}
+
+		synchronized void cancel() {
+			if (finished || cancelled) return;
+			cancelled = true;
+			for (Statement stmt : statements) {
+				cancelStatement(stmt);
+			}
+		}
+
+		synchronized void forget(List<Statement> closing) {
+			statements.removeAll(closing);
+		}
+
+		synchronized void finish() {
+			finished = true;
+			statements.clear();
+		}
+
+		private static void cancelStatement(Statement stmt) {
+			try {
+				stmt.cancel();
+			} catch (SQLException e) {
+				log.warn("fail to cancel JDBC Statement", e);
+			} catch (Throwable ex) {
+				log.warn("Unexpected exception on cancelling JDBC Statement", ex);
+			}
+		}
+	}
+
+	/**
+	 * Hands out connections registering every statement they create to the call of the current thread.
+	 */
+	private class CancellableConnectionProvider implements IReadWriteConnectionProvider {
+		private final IConnectionProvider target;
+
+		CancellableConnectionProvider(IConnectionProvider target) {
+			this.target = target;
+		}
+
+		public Connection getConnection() throws SQLException {
+			return wrap(target.getConnection());
+		}
+
+		public Connection getReadConnection() throws SQLException {
+			if (target instanceof IReadWriteConnectionProvider) {
+				return wrap(((IReadWriteConnectionProvider) target).getReadConnection());
+			}
+			return getConnection();
+		}
+
+		private Connection wrap(Connection con) {
+			return con == null ? null : new CancellableConnection(con);
+		}
+	}
+
+	/**
+	 * Used by the thread of one call, it forgets its statements in the handle of the call before it's closed.
+	 */
+	private class CancellableConnection extends DelegatingConnection {
+		private CancelHandle handle;
+		private final List<Statement> registered = new ArrayList<Statement>(2);
+
+		CancellableConnection(Connection target) {
+			super(target);
+		}
+
+		private <S extends Statement> S register(S stmt) {
+			CancelHandle current = currentHandle.get();
+			if (current != null && stmt != null) {
+				handle = current;
+				registered.add(stmt);
+				current.register(stmt);
+			}
+			return stmt;
+		}
+
+		public void close() throws SQLException {
+			if (handle != null) {
+				handle.forget(registered);
+				registered.clear();
+			}
+			target.close();
+		}
+
+		public Statement createStatement() throws SQLException {
+			return register(target.createStatement());
+		}
+
+		public Statement createStatement(int resultSetType, int resultSetConcurrency) throws SQLException {
+			return register(target.createStatement(resultSetType, resultSetConcurrency));
+		}
+
+		public Statement createStatement(int resultSetType, int resultSetConcurrency, int resultSetHoldability)
+				throws SQLException {
+			return register(target.createStatement(resultSetType, resultSetConcurrency, resultSetHoldability));
+		}
+
+		public PreparedStatement prepareStatement(String sql) throws SQLException {
+			return register(target.prepareStatement(sql));
+		}
+
+		public PreparedStatement prepareStatement(String sql, int autoGeneratedKeys) throws SQLException {
+			return register(target.prepareStatement(sql, autoGeneratedKeys));
+		}
+
+		public PreparedStatement prepareStatement(String sql, int[] columnIndexes) throws SQLException {
+			return register(target.prepareStatement(sql, columnIndexes));
+		}
+
+		public PreparedStatement prepareStatement(String sql, String[] columnNames) throws SQLException {
+			return register(target.prepareStatement(sql, columnNames));
+		}
+
+		public PreparedStatement prepareStatement(String sql, int resultSetType, int resultSetConcurrency)
+				throws SQLException {
+			return register(target.prepareStatement(sql, resultSetType, resultSetConcurrency));
+		}
+
+		public PreparedStatement prepareStatement(String sql, int resultSetType, int resultSetConcurrency,
+				int resultSetHoldability) throws SQLException {
+			return register(target.prepareStatement(sql, resultSetType, resultSetConcurrency, resultSetHoldability));
+		}
+
+		public CallableStatement prepareCall(String sql) throws SQLException {
+			return register(target.prepareCall(sql));
+		}
+
+		public CallableStatement prepareCall(String sql, int resultSetType, int resultSetConcurrency)
+				throws SQLException {
+			return register(target.prepareCall(sql, resultSetType, resultSetConcurrency));
+		}
+
+		public CallableStatement prepareCall(String sql, int resultSetType, int resultSetConcurrency,
+				int resultSetHoldability) throws SQLException {
+			return register(target.prepareCall(sql, resultSetType, resultSetConcurrency, resultSetHoldability));
+		}
+	}
+
+	private static class JdbcThreadFactory implements ThreadFactory {
+		private final String prefix;
+		private final AtomicInteger count = new AtomicInteger(0);
+
+		JdbcThreadFactory(String prefix) {
+			this.prefix = prefix;
+		}
+
+		public Thread newThread(Runnable r) {
+			Thread thread = new Thread(r, prefix + "-" + count.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		}
+	}
+}
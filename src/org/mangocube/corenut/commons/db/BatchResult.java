@@ -0,0 +1,99 @@
+/**
+ * Copyright Mangocity Limited (c) 2010. All rights reserved.
+ * This software is proprietary to and embodies the confidential
+ * technology of Mangocity Limited.  Possession, use, or copying
+ * of this software and media is authorized only pursuant to a
+ * valid written license from Mangocity or an authorized sublicensor.
+ */
+package org.mangocube.corenut.commons.db;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Outcome of <code>JdbcTemplate.executeBatch</code>, holds the update counts of every executed chunk,
+ * and the error of failed chunks when batch is not executed in <code>BatchFailureMode.ABORT</code> mode.
+ *
+ * @since 1.0
+ */
+public class BatchResult {
+	private final List<Chunk> chunks = new ArrayList<Chunk>();
+	private int succeededRows;
+	private int failedRows;
+
+	public static class Chunk {
+		private final int offset;
+		private final int size;
+		private final int[] updateCounts;
+		private final SQLException error;
+
+		Chunk(int offset, int size, int[] updateCounts, SQLException error) {
+			this.offset = offset;
+			this.size = size;
+			this.updateCounts = updateCounts;
+			this.error = error;
+		}
+
+		/**
+		 * @return index of the first row of this chunk in the input rows.
+		 */
+		public int getOffset() {
+			return offset;
+		}
+
+		public int getSize() {
+			return size;
+		}
+
+		/**
+		 * @return update counts returned by <code>executeBatch</code>, null if chunk failed.
+		 */
+		public int[] getUpdateCounts() {
+			return updateCounts;
+		}
+
+		public SQLException getError() {
+			return error;
+		}
+
+		public boolean isFailed() {
+			return error != null;
+		}
+	}
+
+	void addChunk(int offset, int size, int[] updateCounts) {
+		chunks.add(new Chunk(offset, size, updateCounts, null));
+		succeededRows += size;
+	}
+
+	void addFailedChunk(int offset, int size, SQLException error) {
+		chunks.add(new Chunk(offset, size, null, error));
+		failedRows += size;
+	}
+
+	public List<Chunk> getChunks() {
+		return Collections.unmodifiableList(chunks);
+	}
+
+	public List<Chunk> getFailedChunks() {
+		List<Chunk> failed = new ArrayList<Chunk>();
+		for (Chunk chunk : chunks) {
+			if (chunk.isFailed()) failed.add(chunk);
+		}
+		return failed;
+	}
+
+	public boolean hasFailure() {
+		return failedRows > 0;
+	}
+
+	public int getSucceededRows() {
+		return succeededRows;
+	}
+
+	public int getFailedRows() {
+		return failedRows;
+	}
+}
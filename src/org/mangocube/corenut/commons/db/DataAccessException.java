@@ -0,0 +1,33 @@
+/**
+ * Copyright Mangocity Limited (c) 2010. All rights reserved.
+ * This software is proprietary to and embodies the confidential
+ * technology of Mangocity Limited.  Possession, use, or copying
+ * of this software and media is authorized only pursuant to a
+ * valid written license from Mangocity or an authorized sublicensor.
+ */
+package org.mangocube.corenut.commons.db;
+
+import org.mangocube.corenut.commons.exception.UncheckedException;
+
+/**
+ * Unchecked wrapper of SQLException, thrown where the checked one can't be declared, e.g. by ResultIterator.
+ *
+ * @since 1.0
+ */
+public class DataAccessException extends UncheckedException {
+	public DataAccessException(Enum errorCode) {
+		super(errorCode);
+	}
+
+	public DataAccessException(Enum errorCode, Object... para) {
+		super(errorCode, para);
+	}
+
+	public DataAccessException(Enum errorCode, Throwable throwable) {
+		super(errorCode, throwable);
+	}
+
+	public DataAccessException(Enum errorCode, Throwable throwable, Object... para) {
+		super(errorCode, throwable, para);
+	}
+}
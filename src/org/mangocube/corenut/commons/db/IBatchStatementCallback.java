@@ -0,0 +1,22 @@
+/**
+ * Copyright Mangocity Limited (c) 2010. All rights reserved.
+ * This software is proprietary to and embodies the confidential
+ * technology of Mangocity Limited.  Possession, use, or copying
+ * of this software and media is authorized only pursuant to a
+ * valid written license from Mangocity or an authorized sublicensor.
+ */
+package org.mangocube.corenut.commons.db;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+
+/**
+ * Binds one parameter row to the batch statement, JdbcTemplate calls <code>addBatch</code> afterwards.
+ *
+ * @since 1.0
+ */
+public interface IBatchStatementCallback<T> {
+	
+	public void setValues(PreparedStatement stmt, T row) throws SQLException;
+	
+}
@@ -0,0 +1,22 @@
+/**
+ * Copyright Mangocity Limited (c) 2010. All rights reserved.
+ * This software is proprietary to and embodies the confidential
+ * technology of Mangocity Limited.  Possession, use, or copying
+ * of this software and media is authorized only pursuant to a
+ * valid written license from Mangocity or an authorized sublicensor.
+ */
+package org.mangocube.corenut.commons.db;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * Maps the current row of the result set to an object, must not move the cursor.
+ *
+ * @since 1.0
+ */
+public interface IRowMapper<T> {
+	
+	public T mapRow(ResultSet rs, int rowNum) throws SQLException;
+	
+}
@@ -11,11 +11,15 @@ import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.Savepoint;
 import java.sql.Statement;
+import java.util.Iterator;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
+import org.mangocube.corenut.commons.exception.ErrorCode;
 import org.mangocube.corenut.commons.db.connection.IConnectionProvider;
+import org.mangocube.corenut.commons.db.connection.IReadWriteConnectionProvider;
 import org.mangocube.corenut.commons.db.connection.JNDIConnectionProvider;
 import org.mangocube.corenut.commons.db.connection.JdbcConnectionProvider;
 
@@ -32,7 +36,44 @@ import org.mangocube.corenut.commons.db.connection.JdbcConnectionProvider;
  */
 public class JdbcTemplate {
 	private static Log log = LogFactory.getLog(JdbcTemplate.class);
+	public static final int DEFAULT_BATCH_SIZE = 100;
+	public static final int DEFAULT_COMMIT_INTERVAL = 10;
+	public static final int DEFAULT_FETCH_SIZE = 500;
+
+	public enum JdbcError {
+		@ErrorCode(comment = "Fail to fetch row ${1} of query [${2}]!")
+		FETCH_ROW_FAIL,
+		@ErrorCode(comment = "Fail to map row ${1} of query [${2}]!")
+		MAP_ROW_FAIL
+	}
+
+	/**
+	 * How <code>executeBatch</code> reacts when a chunk fails.
+	 */
+	public enum BatchFailureMode {
+		/**
+		 * Rollback the uncommitted chunks and throw the exception. Chunks committed before are kept.
+		 */
+		ABORT,
+		/**
+		 * Rollback the failed chunk only, commit the succeeded ones and stop processing further rows.
+		 */
+		STOP,
+		/**
+		 * Rollback the failed chunk only and go on with the next chunk.
+		 */
+		CONTINUE
+	}
+
+	private static final IBatchStatementCallback<Object[]> ARRAY_ROW_SETTER = new IBatchStatementCallback<Object[]>() {
+		public void setValues(PreparedStatement stmt, Object[] row) throws SQLException {
+			for (int i = 0; i < row.length; i++) {
+				stmt.setObject(i + 1, row[i]);
+			}
+		}
+	};
 	private final IConnectionProvider conProvider;
+	private volatile QueryResultCache resultCache;
 
 	public JdbcTemplate(IConnectionProvider conProvider) {
 		this.conProvider = conProvider;
@@ -94,7 +135,7 @@ public class JdbcTemplate {
 		Statement stmt = null;
 		ResultSet rs = null;
 		try {
-			con = getConnection();
+			con = getReadConnection();
 			if (callback instanceof IPreparedQueryCallback) {
 				stmt = ((IPreparedQueryCallback<T>) callback).createStatement(con, sql);
 				rs = ((PreparedStatement) stmt).executeQuery();
@@ -114,6 +155,119 @@ public class JdbcTemplate {
 		}
 	}
 
+	public QueryResultCache getResultCache() {
+		return resultCache;
+	}
+
+	/**
+	 * Enable caching of <code>queryCached</code> results. Connections borrowed for writes are tracked, so
+	 * committing a write to a table registered in the cache invalidates the results depending on it.
+	 *
+	 * @param resultCache cache of query results, null to disable caching.
+	 */
+	public void setResultCache(QueryResultCache resultCache) {
+		this.resultCache = resultCache;
+	}
+
+	public <T> T queryCached(String sql, IQueryCallback<T> callback, Object... params) throws SQLException {
+		QueryResultCache cache = resultCache;
+		return queryCached(sql, cache == null ? 0 : cache.getDefaultTtl(), callback, params);
+	}
+
+	/**
+	 * Execute the query with bound parameters, the result of callback is cached by SQL and parameters when
+	 * the template has a result cache, otherwise the query is always executed.
+	 *
+	 * @param sql      query, parameters in form of "?".
+	 * @param ttl      milliseconds the result is cached.
+	 * @param callback extracts result from the result set, the result is shared and must not be modified.
+	 * @param params   query parameters bound in order, part of the cache key.
+	 * @return result of callback.
+	 * @throws SQLException fail to execute the query, shared by concurrent callers of the same key.
+	 */
+	public <T> T queryCached(final String sql, long ttl, final IQueryCallback<T> callback, final Object... params)
+			throws SQLException {
+		QueryResultCache cache = resultCache;
+		if (cache == null) {
+			return queryWithParams(sql, callback, params);
+		}
+		return cache.query(sql, params, ttl, new QueryResultCache.Loader<T>() {
+			public T load() throws SQLException {
+				return queryWithParams(sql, callback, params);
+			}
+		});
+	}
+
+	private <T> T queryWithParams(String sql, IQueryCallback<T> callback, Object[] params) throws SQLException {
+		Connection con = null;
+		PreparedStatement stmt = null;
+		ResultSet rs = null;
+		try {
+			con = getReadConnection();
+			stmt = con.prepareStatement(sql);
+			for (int i = 0; i < params.length; i++) {
+				stmt.setObject(i + 1, params[i]);
+			}
+			rs = stmt.executeQuery();
+
+			return callback.run(rs);
+		} finally {
+			closeResultSet(rs);
+			closeStatement(stmt);
+			releaseConnection(con);
+		}
+	}
+
+	public <T> ResultIterator<T> queryForIterator(String sql, IRowMapper<T> rowMapper, Object... params)
+			throws SQLException {
+		return queryForIterator(sql, DEFAULT_FETCH_SIZE, rowMapper, params);
+	}
+
+	/**
+	 * Execute the query and return its rows as a lazily pulled iterator. The statement is created forward-only
+	 * and read-only with the given fetch size, so the driver streams the rows in pages instead of loading
+	 * the whole result. The connection is held until the iterator is exhausted or closed.
+	 *
+	 * @param sql       query, parameters in form of "?".
+	 * @param fetchSize JDBC fetch size hint, 0 to keep the driver default. Some drivers need a special value
+	 *                  to stream, e.g. MySQL Connector/J needs Integer.MIN_VALUE.
+	 * @param rowMapper maps each row.
+	 * @param params    query parameters bound in order.
+	 * @return iterator of mapped rows, must be closed if not exhausted.
+	 * @throws SQLException fail to execute the query.
+	 */
+	public <T> ResultIterator<T> queryForIterator(String sql, int fetchSize, IRowMapper<T> rowMapper,
+												  Object... params) throws SQLException {
+		Connection con = null;
+		PreparedStatement stmt = null;
+		ResultSet rs = null;
+		try {
+			con = getReadConnection();
+			stmt = con.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+			if (fetchSize != 0) {
+				stmt.setFetchSize(fetchSize);
+			}
+			for (int i = 0; i < params.length; i++) {
+				stmt.setObject(i + 1, params[i]);
+			}
+			rs = stmt.executeQuery();
+
+			return new ResultIterator<T>(this, sql, con, stmt, rs, rowMapper);
+		} catch (SQLException e) {
+			closeResultSet(rs);
+			closeStatement(stmt);
+			releaseConnection(con);
+
+			throw e;
+		} catch (RuntimeException e) {
+			closeResultSet(rs);
+			closeStatement(stmt);
+			releaseConnection(con);
+
+			throw e;
+		}
+	}
+
 	public <T> T execute(IPrepareStatementCallback<T> callback)
 			throws SQLException {
 		Connection con = null;
@@ -138,14 +292,136 @@ public class JdbcTemplate {
 		}
 	}
 
+	public BatchResult executeBatch(String sql, Iterable<Object[]> rows) throws SQLException {
+		return executeBatch(sql, rows, ARRAY_ROW_SETTER, DEFAULT_BATCH_SIZE, DEFAULT_COMMIT_INTERVAL,
+				BatchFailureMode.ABORT);
+	}
+
+	public BatchResult executeBatch(String sql, Iterable<Object[]> rows, int batchSize, int commitInterval,
+									BatchFailureMode failureMode) throws SQLException {
+		return executeBatch(sql, rows, ARRAY_ROW_SETTER, batchSize, commitInterval, failureMode);
+	}
+
+	public <T> BatchResult executeBatch(String sql, Iterable<T> rows, IBatchStatementCallback<T> callback)
+			throws SQLException {
+		return executeBatch(sql, rows, callback, DEFAULT_BATCH_SIZE, DEFAULT_COMMIT_INTERVAL, BatchFailureMode.ABORT);
+	}
+
+	/**
+	 * Execute the statement for every row with JDBC batch. Rows are bound by callback and sent to database
+	 * in chunks of <code>batchSize</code>, the transaction is committed every <code>commitInterval</code> chunks
+	 * and at the end. When a chunk fails in STOP or CONTINUE mode, only the failed chunk is rolled back by a
+	 * savepoint taken before it, so the driver must support savepoints in these modes.
+	 *
+	 * @param sql            statement to execute, parameters in form of "?".
+	 * @param rows           parameter rows, iterated lazily, so it may be a cursor or stream of any size.
+	 * @param callback       binds one row to the statement.
+	 * @param batchSize      rows per executeBatch call.
+	 * @param commitInterval chunks per commit.
+	 * @param failureMode    reaction to a failed chunk.
+	 * @return update counts per chunk and the failed chunks.
+	 * @throws SQLException fail to execute the batch in ABORT mode, or fail to commit.
+	 */
+	public <T> BatchResult executeBatch(String sql, Iterable<T> rows, IBatchStatementCallback<T> callback,
+										int batchSize, int commitInterval, BatchFailureMode failureMode)
+			throws SQLException {
+		if (batchSize <= 0 || commitInterval <= 0) {
+			throw new IllegalArgumentException("invalid batch size " + batchSize + " or commit interval " + commitInterval);
+		}
+
+		Connection con = null;
+		PreparedStatement stmt = null;
+		BatchResult result = new BatchResult();
+		try {
+			con = getConnection();
+			stmt = con.prepareStatement(sql);
+
+			Iterator<T> it = rows.iterator();
+			int offset = 0;
+			int pending = 0;
+			int uncommitted = 0;
+			while (it.hasNext()) {
+				callback.setValues(stmt, it.next());
+				stmt.addBatch();
+				pending++;
+
+				if (pending == batchSize || !it.hasNext()) {
+					boolean succeeded = executeChunk(con, stmt, offset, pending, failureMode, result);
+					offset += pending;
+					pending = 0;
+					if (!succeeded && failureMode == BatchFailureMode.STOP) {
+						break;
+					}
+					if (++uncommitted == commitInterval) {
+						con.commit();
+						uncommitted = 0;
+					}
+				}
+			}
+			con.commit();
+
+			return result;
+		} catch (SQLException e) {
+			if (con != null) {
+				con.rollback();
+			}
+
+			throw e;
+		} finally {
+			closeStatement(stmt);
+			releaseConnection(con);
+		}
+	}
+
+	private boolean executeChunk(Connection con, PreparedStatement stmt, int offset, int size,
+								 BatchFailureMode failureMode, BatchResult result) throws SQLException {
+		Savepoint savepoint = failureMode == BatchFailureMode.ABORT ? null : con.setSavepoint();
+		try {
+			result.addChunk(offset, size, stmt.executeBatch());
+			return true;
+		} catch (SQLException e) {
+			if (savepoint == null) {
+				throw e;
+			}
+
+			log.warn("fail to execute batch chunk of rows [" + offset + ", " + (offset + size) + ")", e);
+			stmt.clearBatch();
+			con.rollback(savepoint);
+			result.addFailedChunk(offset, size, e);
+			return false;
+		}
+	}
+
 	private Connection getConnection() throws SQLException {
-		Connection con = conProvider.getConnection();
+		Connection con = prepareConnection(conProvider.getConnection());
+		QueryResultCache cache = resultCache;
+		return cache == null ? con : cache.trackWrites(con);
+	}
+
+	/**
+	 * Connection for read only queries, served by a replica when the provider is an
+	 * IReadWriteConnectionProvider.
+	 */
+	private Connection getReadConnection() throws SQLException {
+		if (conProvider instanceof IReadWriteConnectionProvider) {
+			return prepareConnection(((IReadWriteConnectionProvider) conProvider).getReadConnection());
+		}
+		return getConnection();
+	}
+
+	private Connection prepareConnection(Connection con) throws SQLException {
 		if (con != null && con.getAutoCommit()) {
 			con.setAutoCommit(false);
 		}
 		return con;
 	}
 
+	/**
+	 * Release the connection by closing it. Connection borrowed from PooledConnectionProvider
+	 * is returned to pool on close, the physical connection is kept open.
+	 *
+	 * @param con connection to release, may be null.
+	 */
 	public void releaseConnection(Connection con) {
 		if (con != null) {
 			try {
@@ -0,0 +1,618 @@
+/**
+ * Copyright Mangocity Limited (c) 2010. All rights reserved.
+ * This software is proprietary to and embodies the confidential
+ * technology of Mangocity Limited.  Possession, use, or copying
+ * of this software and media is authorized only pursuant to a
+ * valid written license from Mangocity or an authorized sublicensor.
+ */
+package org.mangocube.corenut.commons.db;
+
+import java.sql.CallableStatement;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.mangocube.corenut.commons.db.connection.DelegatingConnection;
+import org.mangocube.corenut.commons.db.connection.DelegatingStatement;
+
+/**
+ * Opt-in cache of query results for JdbcTemplate, see {@link JdbcTemplate#setResultCache(QueryResultCache)}
+ * and <code>JdbcTemplate.queryCached</code>. Results are keyed by SQL text plus bound parameters and
+ * expire after a per-query TTL.
+ * <p/>
+ * The cache holds at most <code>maxSize</code> results. With LRU the least recently used result is evicted,
+ * with LFU the least frequently hit one of the {@value #LFU_SAMPLE_SIZE} least recently used results.
+ * <p/>
+ * A query depends on every registered table whose name appears in its SQL. When a connection of the
+ * template commits a write statement mentioning a registered table, the results depending on it are
+ * invalidated. A query loaded while one of its tables was invalidated is returned but not cached, so
+ * a stale result never outlives the write. Writes by other applications are not seen, only the TTL
+ * bounds their staleness.
+ * <p/>
+ * That holds when queries read what was committed, i.e. from the primary. Served by a lagging replica of
+ * RoutingConnectionProvider, a query loaded after the invalidation may still read the old rows, set
+ * <code>replicaLag</code> to the lag of the replicas so results loaded that soon after a write to one
+ * of their tables are not cached either.
+ * <p/>
+ * Concurrent misses on one key run the query once, the other callers wait and share its result.
+ * Cached results are shared by all callers and must not be modified.
+ * <pre>
+ * QueryResultCache cache = new QueryResultCache(500, QueryResultCache.EvictionPolicy.LFU);
+ * cache.registerTable("currency", "country");
+ * template.setResultCache(cache);
+ * List&lt;Currency&gt; currencies = template.queryCached(sql, 60 * 1000L, currencyCallback);
+ * </pre>
+ *
+ * @since 1.0
+ */
+public class QueryResultCache {
+	public static final int DEFAULT_MAX_SIZE = 1000;
+	public static final long DEFAULT_TTL = 5 * 60 * 1000L;
+	public static final int LFU_SAMPLE_SIZE = 16;
+	private static final int MAX_PARSED_SQL = 5000;
+	private static final Object NULL_VALUE = new Object();
+	private static final String[] NO_TABLES = new String[0];
+	private static final Object[] NO_PARAMS = new Object[0];
+
+	public enum EvictionPolicy {
+		LRU,
+		LFU
+	}
+
+	interface Loader<T> {
+		T load() throws SQLException;
+	}
+
+	private final int maxSize;
+	private final EvictionPolicy evictionPolicy;
+	private volatile long defaultTtl = DEFAULT_TTL;
+	private volatile long replicaLag = 0;
+
+	// guarded by itself, so are tableVersions and tableWriteTimes
+	private final LinkedHashMap<CacheKey, CacheEntry> entries;
+	private final Map<String, Long> tableVersions = new HashMap<String, Long>();
+	private final Map<String, Long> tableWriteTimes = new HashMap<String, Long>();
+	private final ConcurrentHashMap<CacheKey, CompletableFuture<Object>> loading =
+			new ConcurrentHashMap<CacheKey, CompletableFuture<Object>>();
+	private final Set<String> tables = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+	private final ConcurrentHashMap<String, String[]> parsedSql = new ConcurrentHashMap<String, String[]>();
+
+	private final AtomicLong hits = new AtomicLong(0);
+	private final AtomicLong misses = new AtomicLong(0);
+	private final AtomicLong evictions = new AtomicLong(0);
+	private final AtomicLong invalidations = new AtomicLong(0);
+
+	public QueryResultCache() {
+		this(DEFAULT_MAX_SIZE, EvictionPolicy.LRU);
+	}
+
+	public QueryResultCache(int maxSize, EvictionPolicy evictionPolicy) {
+		if (maxSize <= 0) {
+			throw new IllegalArgumentException("maxSize must be positive: " + maxSize);
+		}
+		this.maxSize = maxSize;
+		this.evictionPolicy = evictionPolicy;
+		this.entries = new LinkedHashMap<CacheKey, CacheEntry>(16, 0.75f, true);
+	}
+
+	/**
+	 * Register tables whose writes invalidate cached results, case insensitive.
+	 */
+	public void registerTable(String... names) {
+		for (String name : names) {
+			tables.add(name.toLowerCase());
+		}
+		parsedSql.clear();
+	}
+
+	public long getDefaultTtl() {
+		return defaultTtl;
+	}
+
+	/**
+	 * @param defaultTtl milliseconds a result is cached when the query gives no TTL.
+	 */
+	public void setDefaultTtl(long defaultTtl) {
+		this.defaultTtl = defaultTtl;
+	}
+
+	public long getReplicaLag() {
+		return replicaLag;
+	}
+
+	/**
+	 * @param replicaLag milliseconds after a write to a table during which results depending on it are
+	 *                   returned but not cached, the replication lag of the replicas queries may read from.
+	 *                   0 by default, for queries served by the primary.
+	 */
+	public void setReplicaLag(long replicaLag) {
+		this.replicaLag = replicaLag;
+	}
+
+	@SuppressWarnings("unchecked")
+	<T> T query(String sql, Object[] params, long ttl, Loader<T> loader) throws SQLException {
+		CacheKey key = new CacheKey(sql, params);
+		Object value = get(key);
+		if (value != null) {
+			hits.incrementAndGet();
+			return (T) unmask(value);
+		}
+		misses.incrementAndGet();
+
+		CompletableFuture<Object> future = new CompletableFuture<Object>();
+		CompletableFuture<Object> running = loading.putIfAbsent(key, future);
+		if (running != null) {
+			return (T) unmask(await(running));
+		}
+
+		try {
+			value = get(key);
+			if (value == null) {
+				String[] deps = tablesOf(sql);
+				long[] versions = versionsOf(deps);
+				long loadTime = System.currentTimeMillis();
+				T result = loader.load();
+				value = mask(result);
+				put(key, new CacheEntry(value, System.currentTimeMillis() + ttl, deps), versions, loadTime);
+			}
+			future.complete(value);
+			return (T) unmask(value);
+		} catch (SQLException e) {
+			future.completeExceptionally(e);
+			throw e;
+		} catch (RuntimeException e) {
+			future.completeExceptionally(e);
+			throw e;
+		} catch (Error e) {
+			future.completeExceptionally(e);
+			throw e;
+		} finally {
+			loading.remove(key, future);
+		}
+	}
+
+	<T> T query(String sql, Object[] params, Loader<T> loader) throws SQLException {
+		return query(sql, params, defaultTtl, loader);
+	}
+
+	private Object get(CacheKey key) {
+		synchronized (entries) {
+			CacheEntry entry = entries.get(key);
+			if (entry == null) {
+				return null;
+			}
+			if (entry.expireTime <= System.currentTimeMillis()) {
+				entries.remove(key);
+				return null;
+			}
+			entry.hits++;
+			return entry.value;
+		}
+	}
+
+	private void put(CacheKey key, CacheEntry entry, long[] versions, long loadTime) {
+		long lag = replicaLag;
+		synchronized (entries) {
+			for (int i = 0; i < entry.tables.length; i++) {
+				if (versionOf(entry.tables[i]) != versions[i]) {
+					return;
+				}
+				if (lag > 0 && loadTime - writeTimeOf(entry.tables[i]) < lag) {//replica may not have the write yet
+					return;
+				}
+			}
+			entries.put(key, entry);
+			while (entries.size() > maxSize) {
+				evict();
+			}
+		}
+	}
+
+	private void evict() {
+		Iterator<CacheEntry> it = entries.values().iterator();
+		if (evictionPolicy == EvictionPolicy.LRU) {
+			it.next();
+			it.remove();
+		} else {
+			CacheEntry victim = null;
+			for (int i = 0; i < LFU_SAMPLE_SIZE && it.hasNext(); i++) {
+				CacheEntry entry = it.next();
+				if (victim == null || entry.hits < victim.hits) {
+					victim = entry;
+				}
+			}
+			entries.values().remove(victim);
+		}
+		evictions.incrementAndGet();
+	}
+
+	private long[] versionsOf(String[] deps) {
+		long[] versions = new long[deps.length];
+		synchronized (entries) {
+			for (int i = 0; i < deps.length; i++) {
+				versions[i] = versionOf(deps[i]);
+			}
+		}
+		return versions;
+	}
+
+	private long versionOf(String table) {
+		Long version = tableVersions.get(table);
+		return version == null ? 0 : version;
+	}
+
+	private long writeTimeOf(String table) {
+		Long time = tableWriteTimes.get(table);
+		return time == null ? 0 : time;
+	}
+
+	private static Object await(CompletableFuture<Object> running) throws SQLException {
+		try {
+			return running.join();
+		} catch (CompletionException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof SQLException) {
+				SQLException sqle = (SQLException) cause;
+				throw new SQLException(sqle.getMessage(), sqle.getSQLState(), sqle.getErrorCode(), sqle);
+			}
+			if (cause instanceof RuntimeException) {
+				throw (RuntimeException) cause;
+			}
+			if (cause instanceof Error) {
+				throw (Error) cause;
+			}
+			throw e;
+		}
+	}
+
+	private static Object mask(Object value) {
+		return value == null ? NULL_VALUE : value;
+	}
+
+	private static Object unmask(Object value) {
+		return value == NULL_VALUE ? null : value;
+	}
+
+	/**
+	 * Invalidate the results depending on the table, and keep the results being loaded from caching.
+	 */
+	public void invalidateTable(String table) {
+		String name = table.toLowerCase();
+		synchronized (entries) {
+			tableVersions.put(name, versionOf(name) + 1);
+			tableWriteTimes.put(name, System.currentTimeMillis());
+			for (Iterator<CacheEntry> it = entries.values().iterator(); it.hasNext();) {
+				if (Arrays.asList(it.next().tables).contains(name)) {
+					it.remove();
+					invalidations.incrementAndGet();
+				}
+			}
+		}
+	}
+
+	public void invalidateAll() {
+		synchronized (entries) {
+			long now = System.currentTimeMillis();
+			for (String table : tables) {
+				tableVersions.put(table, versionOf(table) + 1);
+				tableWriteTimes.put(table, now);
+			}
+			invalidations.addAndGet(entries.size());
+			entries.clear();
+		}
+	}
+
+	/**
+	 * @return registered tables the SQL mentions, lower case.
+	 */
+	String[] tablesOf(String sql) {
+		String[] deps = parsedSql.get(sql);
+		if (deps != null) {
+			return deps;
+		}
+		if (tables.isEmpty()) {
+			return NO_TABLES;
+		}
+
+		List<String> found = new ArrayList<String>(2);
+		for (String token : tokenize(sql)) {
+			if (tables.contains(token) && !found.contains(token)) {
+				found.add(token);
+			}
+		}
+		deps = found.isEmpty() ? NO_TABLES : found.toArray(new String[found.size()]);
+		if (parsedSql.size() >= MAX_PARSED_SQL) {
+			parsedSql.clear();
+		}
+		parsedSql.put(sql, deps);
+		return deps;
+	}
+
+	/**
+	 * Split SQL to lower case identifiers, string literals are skipped, qualified names are split by dot.
+	 */
+	static List<String> tokenize(String sql) {
+		List<String> tokens = new ArrayList<String>();
+		int len = sql.length();
+		int i = 0;
+		while (i < len) {
+			char c = sql.charAt(i);
+			if (c == '\'') {
+				i = sql.indexOf('\'', i + 1);
+				if (i < 0) break;
+				i++;
+			} else if (Character.isLetterOrDigit(c) || c == '_' || c == '$') {
+				int start = i;
+				while (i < len && (Character.isLetterOrDigit(sql.charAt(i)) || sql.charAt(i) == '_'
+						|| sql.charAt(i) == '$')) {
+					i++;
+				}
+				tokens.add(sql.substring(start, i).toLowerCase());
+			} else {
+				i++;
+			}
+		}
+		return tokens;
+	}
+
+	static boolean isWrite(String sql) {
+		List<String> tokens = tokenize(sql);
+		if (tokens.isEmpty()) {
+			return false;
+		}
+		String verb = tokens.get(0);
+		return !("select".equals(verb) || "with".equals(verb) || "show".equals(verb) || "explain".equals(verb)
+				|| "desc".equals(verb) || "describe".equals(verb));
+	}
+
+	/**
+	 * Wrap connection to invalidate the tables its write statements touch when it commits or closes.
+	 */
+	Connection trackWrites(Connection con) {
+		return con == null || tables.isEmpty() ? con : new TrackingConnection(con);
+	}
+
+	public int size() {
+		synchronized (entries) {
+			return entries.size();
+		}
+	}
+
+	public int getMaxSize() {
+		return maxSize;
+	}
+
+	public EvictionPolicy getEvictionPolicy() {
+		return evictionPolicy;
+	}
+
+	public long getHitCount() {
+		return hits.get();
+	}
+
+	public long getMissCount() {
+		return misses.get();
+	}
+
+	public long getEvictionCount() {
+		return evictions.get();
+	}
+
+	public long getInvalidationCount() {
+		return invalidations.get();
+	}
+
+	private static final class CacheKey {
+		private final String sql;
+		private final Object[] params;
+		private final int hash;
+
+		CacheKey(String sql, Object[] params) {
+			this.sql = sql;
+			this.params = params == null ? NO_PARAMS : params.clone();
+			this.hash = sql.hashCode() * 31 + Arrays.deepHashCode(this.params);
+		}
+
+		public int hashCode() {
+			return hash;
+		}
+
+		public boolean equals(Object obj) {
+			if (this == obj) return true;
+			if (!(obj instanceof CacheKey)) return false;
+			CacheKey key = (CacheKey) obj;
+			return hash == key.hash && sql.equals(key.sql) && Arrays.deepEquals(params, key.params);
+		}
+	}
+
+	private static final class CacheEntry {
+		final Object value;
+		final long expireTime;
+		final String[] tables;
+		// guarded by the entries lock
+		long hits = 0;
+
+		CacheEntry(Object value, long expireTime, String[] tables) {
+			this.value = value;
+			this.expireTime = expireTime;
+			this.tables = tables;
+		}
+	}
+
+	private class TrackingConnection extends DelegatingConnection {
+		private final Set<String> touched = new HashSet<String>();
+
+		TrackingConnection(Connection target) {
+			super(target);
+		}
+
+		void track(String sql) {
+			if (sql != null && isWrite(sql)) {
+				touched.addAll(Arrays.asList(tablesOf(sql)));
+			}
+		}
+
+		private void flush() {
+			if (!touched.isEmpty()) {
+				for (String table : touched) {
+					invalidateTable(table);
+				}
+				touched.clear();
+			}
+		}
+
+		public void commit() throws SQLException {
+			target.commit();
+			flush();
+		}
+
+		public void rollback() throws SQLException {
+			target.rollback();
+			touched.clear();
+		}
+
+		public void close() throws SQLException {
+			try {
+				target.close();
+			} finally {
+				flush();
+			}
+		}
+
+		public Statement createStatement() throws SQLException {
+			return new TrackingStatement(target.createStatement(), this);
+		}
+
+		public Statement createStatement(int resultSetType, int resultSetConcurrency) throws SQLException {
+			return new TrackingStatement(target.createStatement(resultSetType, resultSetConcurrency), this);
+		}
+
+		public Statement createStatement(int resultSetType, int resultSetConcurrency, int resultSetHoldability)
+				throws SQLException {
+			return new TrackingStatement(target.createStatement(resultSetType, resultSetConcurrency,
+					resultSetHoldability), this);
+		}
+
+		public PreparedStatement prepareStatement(String sql) throws SQLException {
+			track(sql);
+			return target.prepareStatement(sql);
+		}
+
+		public PreparedStatement prepareStatement(String sql, int autoGeneratedKeys) throws SQLException {
+			track(sql);
+			return target.prepareStatement(sql, autoGeneratedKeys);
+		}
+
+		public PreparedStatement prepareStatement(String sql, int[] columnIndexes) throws SQLException {
+			track(sql);
+			return target.prepareStatement(sql, columnIndexes);
+		}
+
+		public PreparedStatement prepareStatement(String sql, String[] columnNames) throws SQLException {
+			track(sql);
+			return target.prepareStatement(sql, columnNames);
+		}
+
+		public PreparedStatement prepareStatement(String sql, int resultSetType, int resultSetConcurrency)
+				throws SQLException {
+			track(sql);
+			return target.prepareStatement(sql, resultSetType, resultSetConcurrency);
+		}
+
+		public PreparedStatement prepareStatement(String sql, int resultSetType, int resultSetConcurrency,
+				int resultSetHoldability) throws SQLException {
+			track(sql);
+			return target.prepareStatement(sql, resultSetType, resultSetConcurrency, resultSetHoldability);
+		}
+
+		public CallableStatement prepareCall(String sql) throws SQLException {
+			track(sql);
+			return target.prepareCall(sql);
+		}
+
+		public CallableStatement prepareCall(String sql, int resultSetType, int resultSetConcurrency)
+				throws SQLException {
+			track(sql);
+			return target.prepareCall(sql, resultSetType, resultSetConcurrency);
+		}
+
+		public CallableStatement prepareCall(String sql, int resultSetType, int resultSetConcurrency,
+				int resultSetHoldability) throws SQLException {
+			track(sql);
+			return target.prepareCall(sql, resultSetType, resultSetConcurrency, resultSetHoldability);
+		}
+	}
+
+	private static class TrackingStatement extends DelegatingStatement {
+		private final TrackingConnection connection;
+
+		TrackingStatement(Statement target, TrackingConnection connection) {
+			super(target);
+			this.connection = connection;
+		}
+
+		public int executeUpdate(String sql) throws SQLException {
+			connection.track(sql);
+			return target.executeUpdate(sql);
+		}
+
+		public int executeUpdate(String sql, int autoGeneratedKeys) throws SQLException {
+			connection.track(sql);
+			return target.executeUpdate(sql, autoGeneratedKeys);
+		}
+
+		public int executeUpdate(String sql, int[] columnIndexes) throws SQLException {
+			connection.track(sql);
+			return target.executeUpdate(sql, columnIndexes);
+		}
+
+		public int executeUpdate(String sql, String[] columnNames) throws SQLException {
+			connection.track(sql);
+			return target.executeUpdate(sql, columnNames);
+		}
+
+		public boolean execute(String sql) throws SQLException {
+			connection.track(sql);
+			return target.execute(sql);
+		}
+
+		public boolean execute(String sql, int autoGeneratedKeys) throws SQLException {
+			connection.track(sql);
+			return target.execute(sql, autoGeneratedKeys);
+		}
+
+		public boolean execute(String sql, int[] columnIndexes) throws SQLException {
+			connection.track(sql);
+			return target.execute(sql, columnIndexes);
+		}
+
+		public boolean execute(String sql, String[] columnNames) throws SQLException {
+			connection.track(sql);
+			return target.execute(sql, columnNames);
+		}
+
+		public void addBatch(String sql) throws SQLException {
+			connection.track(sql);
+			target.addBatch(sql);
+		}
+
+		public Connection getConnection() throws SQLException {
+			return connection;
+		}
+	}
+}
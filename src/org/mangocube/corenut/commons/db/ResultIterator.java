@@ -0,0 +1,134 @@
+/**
+ * Copyright Mangocity Limited (c) 2010. All rights reserved.
+ * This software is proprietary to and embodies the confidential
+ * technology of Mangocity Limited.  Possession, use, or copying
+ * of this software and media is authorized only pursuant to a
+ * valid written license from Mangocity or an authorized sublicensor.
+ */
+package org.mangocube.corenut.commons.db;
+
+import java.io.Closeable;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Lazily pulled query result returned by <code>JdbcTemplate.queryForIterator</code>. Rows are fetched from
+ * the open cursor and mapped one by one, so only the driver fetch buffer is held in memory.
+ * The result set, statement and connection are released once the rows are exhausted, a row fails to be
+ * fetched or mapped, or <code>close()</code> is called. Always close it when stop iterating early:
+ * <pre>
+ * ResultIterator&lt;Order&gt; orders = template.queryForIterator(sql, 1000, orderMapper);
+ * try {
+ *     while (orders.hasNext()) {
+ *         export(orders.next());
+ *     }
+ * } finally {
+ *     orders.close();
+ * }
+ * </pre>
+ * It's not thread-safe.
+ *
+ * @since 1.0
+ */
+public class ResultIterator<T> implements Iterator<T>, Closeable {
+	private final JdbcTemplate template;
+	private final String sql;
+	private final Connection con;
+	private final Statement stmt;
+	private final ResultSet rs;
+	private final IRowMapper<T> rowMapper;
+
+	private int rowNum = 0;
+	private boolean fetched = false;
+	private boolean closed = false;
+
+	ResultIterator(JdbcTemplate template, String sql, Connection con, Statement stmt, ResultSet rs,
+				   IRowMapper<T> rowMapper) {
+		this.template = template;
+		this.sql = sql;
+		this.con = con;
+		this.stmt = stmt;
+		this.rs = rs;
+		this.rowMapper = rowMapper;
+	}
+
+	public boolean hasNext() {
+		if (closed) return false;
+		if (fetched) return true;
+
+		try {
+			if (rs.next()) {
+				fetched = true;
+			} else {
+				close();
+			}
+			return fetched;
+		} catch (SQLException e) {
+			close();
+			throw new DataAccessException(JdbcTemplate.JdbcError.FETCH_ROW_FAIL, e, rowNum, sql);
+		}
+	}
+
+	public T next() {
+		if (!hasNext()) {
+			throw new NoSuchElementException();
+		}
+
+		fetched = false;
+		try {
+			return rowMapper.mapRow(rs, rowNum++);
+		} catch (SQLException e) {
+			close();
+			throw new DataAccessException(JdbcTemplate.JdbcError.MAP_ROW_FAIL, e, rowNum - 1, sql);
+		}
+	}
+
+	public void remove() {
+		throw new UnsupportedOperationException("remove is not supported by query result");
+	}
+
+	/**
+	 * @return number of rows mapped so far.
+	 */
+	public int getRowCount() {
+		return rowNum;
+	}
+
+	public boolean isClosed() {
+		return closed;
+	}
+
+	/**
+	 * Release the result set, statement and connection, it's safe to call more than once.
+	 */
+	public void close() {
+		if (closed) return;
+
+		closed = true;
+		JdbcTemplate.closeResultSet(rs);
+		JdbcTemplate.closeStatement(stmt);
+		template.releaseConnection(con);
+	}
+
+	/**
+	 * Wrap this iterator as a sequential stream, closing the stream closes this iterator.
+	 *
+	 * @return stream of mapped rows.
+	 */
+	public Stream<T> stream() {
+		return StreamSupport.stream(Spliterators.spliteratorUnknownSize(this, Spliterator.ORDERED), false)
+				.onClose(new Runnable() {
+					public void run() {
+						close();
+					}
+				});
+	}
+}
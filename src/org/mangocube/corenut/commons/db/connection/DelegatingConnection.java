@@ -0,0 +1,269 @@
+/**
+ * Copyright Mangocity Limited (c) 2010. All rights reserved.
+ * This software is proprietary to and embodies the confidential
+ * technology of Mangocity Limited.  Possession, use, or copying
+ * of this software and media is authorized only pursuant to a
+ * valid written license from Mangocity or an authorized sublicensor.
+ */
+package org.mangocube.corenut.commons.db.connection;
+
+import java.sql.Array;
+import java.sql.Blob;
+import java.sql.CallableStatement;
+import java.sql.Clob;
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.NClob;
+import java.sql.PreparedStatement;
+import java.sql.SQLClientInfoException;
+import java.sql.SQLException;
+import java.sql.SQLWarning;
+import java.sql.SQLXML;
+import java.sql.Savepoint;
+import java.sql.Statement;
+import java.sql.Struct;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.Executor;
+
+/**
+ * Statically typed Connection wrapper which forwards every call to the target connection.
+ * Subclass it and override the methods to be intercepted, e.g. <code>close()</code> to hand
+ * the connection back to a pool instead of closing the physical one.
+ *
+ * @since 1.0
+ */
+public class DelegatingConnection implements Connection {
+	protected final Connection target;
+
+	public DelegatingConnection(Connection target) {
+		this.target = target;
+	}
+
+	/**
+	 * @return the wrapped connection.
+	 */
+	public Connection getTargetConnection() {
+		return target;
+	}
+
+	public void abort(Executor executor) throws SQLException {
+		target.abort(executor);
+	}
+
+	public void clearWarnings() throws SQLException {
+		target.clearWarnings();
+	}
+
+	public void close() throws SQLException {
+		target.close();
+	}
+
+	public void commit() throws SQLException {
+		target.commit();
+	}
+
+	public Array createArrayOf(String typeName, Object[] elements) throws SQLException {
+		return target.createArrayOf(typeName, elements);
+	}
+
+	public Blob createBlob() throws SQLException {
+		return target.createBlob();
+	}
+
+	public Clob createClob() throws SQLException {
+		return target.createClob();
+	}
+
+	public NClob createNClob() throws SQLException {
+		return target.createNClob();
+	}
+
+	public SQLXML createSQLXML() throws SQLException {
+		return target.createSQLXML();
+	}
+
+	public Statement createStatement() throws SQLException {
+		return target.createStatement();
+	}
+
+	public Statement createStatement(int resultSetType, int resultSetConcurrency) throws SQLException {
+		return target.createStatement(resultSetType, resultSetConcurrency);
+	}
+
+	public Statement createStatement(int resultSetType, int resultSetConcurrency, int resultSetHoldability) throws SQLException {
+		return target.createStatement(resultSetType, resultSetConcurrency, resultSetHoldability);
+	}
+
+	public Struct createStruct(String typeName, Object[] attributes) throws SQLException {
+		return target.createStruct(typeName, attributes);
+	}
+
+	public boolean getAutoCommit() throws SQLException {
+		return target.getAutoCommit();
+	}
+
+	public String getCatalog() throws SQLException {
+		return target.getCatalog();
+	}
+
+	public Properties getClientInfo() throws SQLException {
+		return target.getClientInfo();
+	}
+
+	public String getClientInfo(String name) throws SQLException {
+		return target.getClientInfo(name);
+	}
+
+	public int getHoldability() throws SQLException {
+		return target.getHoldability();
+	}
+
+	public DatabaseMetaData getMetaData() throws SQLException {
+		return target.getMetaData();
+	}
+
+	public int getNetworkTimeout() throws SQLException {
+		return target.getNetworkTimeout();
+	}
+
+	public String getSchema() throws SQLException {
+		return target.getSchema();
+	}
+
+	public int getTransactionIsolation() throws SQLException {
+		return target.getTransactionIsolation();
+	}
+
+	public Map<String, Class<?>> getTypeMap() throws SQLException {
+		return target.getTypeMap();
+	}
+
+	public SQLWarning getWarnings() throws SQLException {
+		return target.getWarnings();
+	}
+
+	public boolean isClosed() throws SQLException {
+		return target.isClosed();
+	}
+
+	public boolean isReadOnly() throws SQLException {
+		return target.isReadOnly();
+	}
+
+	public boolean isValid(int timeout) throws SQLException {
+		return target.isValid(timeout);
+	}
+
+	public boolean isWrapperFor(Class<?> iface) throws SQLException {
+		return target.isWrapperFor(iface);
+	}
+
+	public String nativeSQL(String sql) throws SQLException {
+		return target.nativeSQL(sql);
+	}
+
+	public CallableStatement prepareCall(String sql) throws SQLException {
+		return target.prepareCall(sql);
+	}
+
+	public CallableStatement prepareCall(String sql, int resultSetType, int resultSetConcurrency) throws SQLException {
+		return target.prepareCall(sql, resultSetType, resultSetConcurrency);
+	}
+
+	public CallableStatement prepareCall(String sql, int resultSetType, int resultSetConcurrency, int resultSetHoldability) throws SQLException {
+		return target.prepareCall(sql, resultSetType, resultSetConcurrency, resultSetHoldability);
+	}
+
+	public PreparedStatement prepareStatement(String sql) throws SQLException {
+		return target.prepareStatement(sql);
+	}
+
+	public PreparedStatement prepareStatement(String sql, int[] columnIndexes) throws SQLException {
+		return target.prepareStatement(sql, columnIndexes);
+	}
+
+	public PreparedStatement prepareStatement(String sql, String[] columnNames) throws SQLException {
+		return target.prepareStatement(sql, columnNames);
+	}
+
+	public PreparedStatement prepareStatement(String sql, int autoGeneratedKeys) throws SQLException {
+		return target.prepareStatement(sql, autoGeneratedKeys);
+	}
+
+	public PreparedStatement prepareStatement(String sql, int resultSetType, int resultSetConcurrency) throws SQLException {
+		return target.prepareStatement(sql, resultSetType, resultSetConcurrency);
+	}
+
+	public PreparedStatement prepareStatement(String sql, int resultSetType, int resultSetConcurrency, int resultSetHoldability) throws SQLException {
+		return target.prepareStatement(sql, resultSetType, resultSetConcurrency, resultSetHoldability);
+	}
+
+	public void releaseSavepoint(Savepoint savepoint) throws SQLException {
+		target.releaseSavepoint(savepoint);
+	}
+
+	public void rollback() throws SQLException {
+		target.rollback();
+	}
+
+	public void rollback(Savepoint savepoint) throws SQLException {
+		target.rollback(savepoint);
+	}
+
+	public void setAutoCommit(boolean autoCommit) throws SQLException {
+		target.setAutoCommit(autoCommit);
+	}
+
+	public void setCatalog(String catalog) throws SQLException {
+		target.setCatalog(catalog);
+	}
+
+	public void setClientInfo(Properties properties) throws SQLClientInfoException {
+		target.setClientInfo(properties);
+	}
+
+	public void setClientInfo(String name, String value) throws SQLClientInfoException {
+		target.setClientInfo(name, value);
+	}
+
+	public void setHoldability(int holdability) throws SQLException {
+		target.setHoldability(holdability);
+	}
+
+	public void setNetworkTimeout(Executor executor, int milliseconds) throws SQLException {
+		target.setNetworkTimeout(executor, milliseconds);
+	}
+
+	public void setReadOnly(boolean readOnly) throws SQLException {
+		target.setReadOnly(readOnly);
+	}
+
+	public Savepoint setSavepoint() throws SQLException {
+		return target.setSavepoint();
+	}
+
+	public Savepoint setSavepoint(String name) throws SQLException {
+		return target.setSavepoint(name);
+	}
+
+	public void setSchema(String schema) throws SQLException {
+		target.setSchema(schema);
+	}
+
+	public void setTransactionIsolation(int level) throws SQLException {
+		target.setTransactionIsolation(level);
+	}
+
+	public void setTypeMap(Map<String, Class<?>> map) throws SQLException {
+		target.setTypeMap(map);
+	}
+
+	public <T> T unwrap(Class<T> iface) throws SQLException {
+		return target.unwrap(iface);
+	}
+
+	public String toString() {
+		return getClass().getSimpleName() + "[" + target + "]";
+	}
+}
@@ -0,0 +1,452 @@
+/**
+ * Copyright Mangocity Limited (c) 2010. All rights reserved.
+ * This software is proprietary to and embodies the confidential
+ * technology of Mangocity Limited.  Possession, use, or copying
+ * of this software and media is authorized only pursuant to a
+ * valid written license from Mangocity or an authorized sublicensor.
+ */
+package org.mangocube.corenut.commons.db.connection;
+
+import java.io.InputStream;
+import java.io.Reader;
+import java.math.BigDecimal;
+import java.net.URL;
+import java.sql.Array;
+import java.sql.Blob;
+import java.sql.Clob;
+import java.sql.Connection;
+import java.sql.Date;
+import java.sql.NClob;
+import java.sql.ParameterMetaData;
+import java.sql.PreparedStatement;
+import java.sql.Ref;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.RowId;
+import java.sql.SQLException;
+import java.sql.SQLWarning;
+import java.sql.SQLXML;
+import java.sql.Time;
+import java.sql.Timestamp;
+import java.util.Calendar;
+
+/**
+ * Statically typed PreparedStatement wrapper which forwards every call to the target statement.
+ * Subclass it and override the methods to be intercepted.
+ *
+ * @since 1.0
+ */
+public class DelegatingPreparedStatement implements PreparedStatement {
+	protected final PreparedStatement target;
+
+	public DelegatingPreparedStatement(PreparedStatement target) {
+		this.target = target;
+	}
+
+	/**
+	 * @return the wrapped statement.
+	 */
+	public PreparedStatement getTargetStatement() {
+		return target;
+	}
+
+	public void addBatch() throws SQLException {
+		target.addBatch();
+	}
+
+	public void addBatch(String sql) throws SQLException {
+		target.addBatch(sql);
+	}
+
+	public void cancel() throws SQLException {
+		target.cancel();
+	}
+
+	public void clearBatch() throws SQLException {
+		target.clearBatch();
+	}
+
+	public void clearParameters() throws SQLException {
+		target.clearParameters();
+	}
+
+	public void clearWarnings() throws SQLException {
+		target.clearWarnings();
+	}
+
+	public void close() throws SQLException {
+		target.close();
+	}
+
+	public void closeOnCompletion() throws SQLException {
+		target.closeOnCompletion();
+	}
+
+	public boolean execute() throws SQLException {
+		return target.execute();
+	}
+
+	public boolean execute(String sql) throws SQLException {
+		return target.execute(sql);
+	}
+
+	public boolean execute(String sql, int[] columnIndexes) throws SQLException {
+		return target.execute(sql, columnIndexes);
+	}
+
+	public boolean execute(String sql, String[] columnNames) throws SQLException {
+		return target.execute(sql, columnNames);
+	}
+
+	public boolean execute(String sql, int autoGeneratedKeys) throws SQLException {
+		return target.execute(sql, autoGeneratedKeys);
+	}
+
+	public int[] executeBatch() throws SQLException {
+		return target.executeBatch();
+	}
+
+	public ResultSet executeQuery() throws SQLException {
+		return target.executeQuery();
+	}
+
+	public ResultSet executeQuery(String sql) throws SQLException {
+		return target.executeQuery(sql);
+	}
+
+	public int executeUpdate() throws SQLException {
+		return target.executeUpdate();
+	}
+
+	public int executeUpdate(String sql) throws SQLException {
+		return target.executeUpdate(sql);
+	}
+
+	public int executeUpdate(String sql, int[] columnIndexes) throws SQLException {
+		return target.executeUpdate(sql, columnIndexes);
+	}
+
+	public int executeUpdate(String sql, String[] columnNames) throws SQLException {
+		return target.executeUpdate(sql, columnNames);
+	}
+
+	public int executeUpdate(String sql, int autoGeneratedKeys) throws SQLException {
+		return target.executeUpdate(sql, autoGeneratedKeys);
+	}
+
+	public Connection getConnection() throws SQLException {
+		return target.getConnection();
+	}
+
+	public int getFetchDirection() throws SQLException {
+		return target.getFetchDirection();
+	}
+
+	public int getFetchSize() throws SQLException {
+		return target.getFetchSize();
+	}
+
+	public ResultSet getGeneratedKeys() throws SQLException {
+		return target.getGeneratedKeys();
+	}
+
+	public int getMaxFieldSize() throws SQLException {
+		return target.getMaxFieldSize();
+	}
+
+	public int getMaxRows() throws SQLException {
+		return target.getMaxRows();
+	}
+
+	public ResultSetMetaData getMetaData() throws SQLException {
+		return target.getMetaData();
+	}
+
+	public boolean getMoreResults() throws SQLException {
+		return target.getMoreResults();
+	}
+
+	public boolean getMoreResults(int current) throws SQLException {
+		return target.getMoreResults(current);
+	}
+
+	public ParameterMetaData getParameterMetaData() throws SQLException {
+		return target.getParameterMetaData();
+	}
+
+	public int getQueryTimeout() throws SQLException {
+		return target.getQueryTimeout();
+	}
+
+	public ResultSet getResultSet() throws SQLException {
+		return target.getResultSet();
+	}
+
+	public int getResultSetConcurrency() throws SQLException {
+		return target.getResultSetConcurrency();
+	}
+
+	public int getResultSetHoldability() throws SQLException {
+		return target.getResultSetHoldability();
+	}
+
+	public int getResultSetType() throws SQLException {
+		return target.getResultSetType();
+	}
+
+	public int getUpdateCount() throws SQLException {
+		return target.getUpdateCount();
+	}
+
+	public SQLWarning getWarnings() throws SQLException {
+		return target.getWarnings();
+	}
+
+	public boolean isCloseOnCompletion() throws SQLException {
+		return target.isCloseOnCompletion();
+	}
+
+	public boolean isClosed() throws SQLException {
+		return target.isClosed();
+	}
+
+	public boolean isPoolable() throws SQLException {
+		return target.isPoolable();
+	}
+
+	public boolean isWrapperFor(Class<?> iface) throws SQLException {
+		return target.isWrapperFor(iface);
+	}
+
+	public void setArray(int parameterIndex, Array x) throws SQLException {
+		target.setArray(parameterIndex, x);
+	}
+
+	public void setAsciiStream(int parameterIndex, InputStream x) throws SQLException {
+		target.setAsciiStream(parameterIndex, x);
+	}
+
+	public void setAsciiStream(int parameterIndex, InputStream x, int length) throws SQLException {
+		target.setAsciiStream(parameterIndex, x, length);
+	}
+
+	public void setAsciiStream(int parameterIndex, InputStream x, long length) throws SQLException {
+		target.setAsciiStream(parameterIndex, x, length);
+	}
+
+	public void setBigDecimal(int parameterIndex, BigDecimal x) throws SQLException {
+		target.setBigDecimal(parameterIndex, x);
+	}
+
+	public void setBinaryStream(int parameterIndex, InputStream x) throws SQLException {
+		target.setBinaryStream(parameterIndex, x);
+	}
+
+	public void setBinaryStream(int parameterIndex, InputStream x, int length) throws SQLException {
+		target.setBinaryStream(parameterIndex, x, length);
+	}
+
+	public void setBinaryStream(int parameterIndex, InputStream x, long length) throws SQLException {
+		target.setBinaryStream(parameterIndex, x, length);
+	}
+
+	public void setBlob(int parameterIndex, InputStream x) throws SQLException {
+		target.setBlob(parameterIndex, x);
+	}
+
+	public void setBlob(int parameterIndex, Blob x) throws SQLException {
+		target.setBlob(parameterIndex, x);
+	}
+
+	public void setBlob(int parameterIndex, InputStream x, long length) throws SQLException {
+		target.setBlob(parameterIndex, x, length);
+	}
+
+	public void setBoolean(int parameterIndex, boolean x) throws SQLException {
+		target.setBoolean(parameterIndex, x);
+	}
+
+	public void setByte(int parameterIndex, byte x) throws SQLException {
+		target.setByte(parameterIndex, x);
+	}
+
+	public void setBytes(int parameterIndex, byte[] x) throws SQLException {
+		target.setBytes(parameterIndex, x);
+	}
+
+	public void setCharacterStream(int parameterIndex, Reader x) throws SQLException {
+		target.setCharacterStream(parameterIndex, x);
+	}
+
+	public void setCharacterStream(int parameterIndex, Reader x, int length) throws SQLException {
+		target.setCharacterStream(parameterIndex, x, length);
+	}
+
+	public void setCharacterStream(int parameterIndex, Reader x, long length) throws SQLException {
+		target.setCharacterStream(parameterIndex, x, length);
+	}
+
+	public void setClob(int parameterIndex, Reader x) throws SQLException {
+		target.setClob(parameterIndex, x);
+	}
+
+	public void setClob(int parameterIndex, Clob x) throws SQLException {
+		target.setClob(parameterIndex, x);
+	}
+
+	public void setClob(int parameterIndex, Reader x, long length) throws SQLException {
+		target.setClob(parameterIndex, x, length);
+	}
+
+	public void setCursorName(String name) throws SQLException {
+		target.setCursorName(name);
+	}
+
+	public void setDate(int parameterIndex, Date x) throws SQLException {
+		target.setDate(parameterIndex, x);
+	}
+
+	public void setDate(int parameterIndex, Date x, Calendar cal) throws SQLException {
+		target.setDate(parameterIndex, x, cal);
+	}
+
+	public void setDouble(int parameterIndex, double x) throws SQLException {
+		target.setDouble(parameterIndex, x);
+	}
+
+	public void setEscapeProcessing(boolean enable) throws SQLException {
+		target.setEscapeProcessing(enable);
+	}
+
+	public void setFetchDirection(int direction) throws SQLException {
+		target.setFetchDirection(direction);
+	}
+
+	public void setFetchSize(int rows) throws SQLException {
+		target.setFetchSize(rows);
+	}
+
+	public void setFloat(int parameterIndex, float x) throws SQLException {
+		target.setFloat(parameterIndex, x);
+	}
+
+	public void setInt(int parameterIndex, int x) throws SQLException {
+		target.setInt(parameterIndex, x);
+	}
+
+	public void setLong(int parameterIndex, long x) throws SQLException {
+		target.setLong(parameterIndex, x);
+	}
+
+	public void setMaxFieldSize(int max) throws SQLException {
+		target.setMaxFieldSize(max);
+	}
+
+	public void setMaxRows(int max) throws SQLException {
+		target.setMaxRows(max);
+	}
+
+	public void setNCharacterStream(int parameterIndex, Reader x) throws SQLException {
+		target.setNCharacterStream(parameterIndex, x);
+	}
+
+	public void setNCharacterStream(int parameterIndex, Reader x, long length) throws SQLException {
+		target.setNCharacterStream(parameterIndex, x, length);
+	}
+
+	public void setNClob(int parameterIndex, Reader x) throws SQLException {
+		target.setNClob(parameterIndex, x);
+	}
+
+	public void setNClob(int parameterIndex, NClob x) throws SQLException {
+		target.setNClob(parameterIndex, x);
+	}
+
+	public void setNClob(int parameterIndex, Reader x, long length) throws SQLException {
+		target.setNClob(parameterIndex, x, length);
+	}
+
+	public void setNString(int parameterIndex, String x) throws SQLException {
+		target.setNString(parameterIndex, x);
+	}
+
+	public void setNull(int parameterIndex, int sqlType) throws SQLException {
+		target.setNull(parameterIndex, sqlType);
+	}
+
+	public void setNull(int parameterIndex, int sqlType, String typeName) throws SQLException {
+		target.setNull(parameterIndex, sqlType, typeName);
+	}
+
+	public void setObject(int parameterIndex, Object x) throws SQLException {
+		target.setObject(parameterIndex, x);
+	}
+
+	public void setObject(int parameterIndex, Object x, int targetSqlType) throws SQLException {
+		target.setObject(parameterIndex, x, targetSqlType);
+	}
+
+	public void setObject(int parameterIndex, Object x, int targetSqlType, int scaleOrLength) throws SQLException {
+		target.setObject(parameterIndex, x, targetSqlType, scaleOrLength);
+	}
+
+	public void setPoolable(boolean poolable) throws SQLException {
+		target.setPoolable(poolable);
+	}
+
+	public void setQueryTimeout(int seconds) throws SQLException {
+		target.setQueryTimeout(seconds);
+	}
+
+	public void setRef(int parameterIndex, Ref x) throws SQLException {
+		target.setRef(parameterIndex, x);
+	}
+
+	public void setRowId(int parameterIndex, RowId x) throws SQLException {
+		target.setRowId(parameterIndex, x);
+	}
+
+	public void setSQLXML(int parameterIndex, SQLXML x) throws SQLException {
+		target.setSQLXML(parameterIndex, x);
+	}
+
+	public void setShort(int parameterIndex, short x) throws SQLException {
+		target.setShort(parameterIndex, x);
+	}
+
+	public void setString(int parameterIndex, String x) throws SQLException {
+		target.setString(parameterIndex, x);
+	}
+
+	public void setTime(int parameterIndex, Time x) throws SQLException {
+		target.setTime(parameterIndex, x);
+	}
+
+	public void setTime(int parameterIndex, Time x, Calendar cal) throws SQLException {
+		target.setTime(parameterIndex, x, cal);
+	}
+
+	public void setTimestamp(int parameterIndex, Timestamp x) throws SQLException {
+		target.setTimestamp(parameterIndex, x);
+	}
+
+	public void setTimestamp(int parameterIndex, Timestamp x, Calendar cal) throws SQLException {
+		target.setTimestamp(parameterIndex, x, cal);
+	}
+
+	public void setURL(int parameterIndex, URL x) throws SQLException {
+		target.setURL(parameterIndex, x);
+	}
+
+	public void setUnicodeStream(int parameterIndex, InputStream x, int length) throws SQLException {
+		target.setUnicodeStream(parameterIndex, x, length);
+	}
+
+	public <T> T unwrap(Class<T> iface) throws SQLException {
+		return target.unwrap(iface);
+	}
+
+	public String toString() {
+		return getClass().getSimpleName() + "[" + target + "]";
+	}
+}
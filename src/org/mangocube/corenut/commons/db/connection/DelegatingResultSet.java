@@ -0,0 +1,819 @@
+/**
+ * Copyright Mangocity Limited (c) 2010. All rights reserved.
+ * This software is proprietary to and embodies the confidential
+ * technology of Mangocity Limited.  Possession, use, or copying
+ * of this software and media is authorized only pursuant to a
+ * valid written license from Mangocity or an authorized sublicensor.
+ */
+package org.mangocube.corenut.commons.db.connection;
+
+import java.io.InputStream;
+import java.io.Reader;
+import java.math.BigDecimal;
+import java.net.URL;
+import java.sql.Array;
+import java.sql.Blob;
+import java.sql.Clob;
+import java.sql.Date;
+import java.sql.NClob;
+import java.sql.Ref;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.RowId;
+import java.sql.SQLException;
+import java.sql.SQLWarning;
+import java.sql.SQLXML;
+import java.sql.Statement;
+import java.sql.Time;
+import java.sql.Timestamp;
+import java.util.Calendar;
+import java.util.Map;
+
+/**
+ * Statically typed ResultSet wrapper which forwards every call to the target result set.
+ * Subclass it and override the methods to be intercepted.
+ *
+ * @since 1.0
+ */
+public class DelegatingResultSet implements ResultSet {
+	protected final ResultSet target;
+
+	public DelegatingResultSet(ResultSet target) {
+		this.target = target;
+	}
+
+	/**
+	 * @return the wrapped result set.
+	 */
+	public ResultSet getTargetResultSet() {
+		return target;
+	}
+
+	public boolean absolute(int row) throws SQLException {
+		return target.absolute(row);
+	}
+
+	public void afterLast() throws SQLException {
+		target.afterLast();
+	}
+
+	public void beforeFirst() throws SQLException {
+		target.beforeFirst();
+	}
+
+	public void cancelRowUpdates() throws SQLException {
+		target.cancelRowUpdates();
+	}
+
+	public void clearWarnings() throws SQLException {
+		target.clearWarnings();
+	}
+
+	public void close() throws SQLException {
+		target.close();
+	}
+
+	public void deleteRow() throws SQLException {
+		target.deleteRow();
+	}
+
+	public int findColumn(String columnLabel) throws SQLException {
+		return target.findColumn(columnLabel);
+	}
+
+	public boolean first() throws SQLException {
+		return target.first();
+	}
+
+	public Array getArray(String columnLabel) throws SQLException {
+		return target.getArray(columnLabel);
+	}
+
+	public Array getArray(int columnIndex) throws SQLException {
+		return target.getArray(columnIndex);
+	}
+
+	public InputStream getAsciiStream(String columnLabel) throws SQLException {
+		return target.getAsciiStream(columnLabel);
+	}
+
+	public InputStream getAsciiStream(int columnIndex) throws SQLException {
+		return target.getAsciiStream(columnIndex);
+	}
+
+	public BigDecimal getBigDecimal(String columnLabel) throws SQLException {
+		return target.getBigDecimal(columnLabel);
+	}
+
+	public BigDecimal getBigDecimal(int columnIndex) throws SQLException {
+		return target.getBigDecimal(columnIndex);
+	}
+
+	public BigDecimal getBigDecimal(String columnLabel, int scale) throws SQLException {
+		return target.getBigDecimal(columnLabel, scale);
+	}
+
+	public BigDecimal getBigDecimal(int columnIndex, int scale) throws SQLException {
+		return target.getBigDecimal(columnIndex, scale);
+	}
+
+	public InputStream getBinaryStream(String columnLabel) throws SQLException {
+		return target.getBinaryStream(columnLabel);
+	}
+
+	public InputStream getBinaryStream(int columnIndex) throws SQLException {
+		return target.getBinaryStream(columnIndex);
+	}
+
+	public Blob getBlob(String columnLabel) throws SQLException {
+		return target.getBlob(columnLabel);
+	}
+
+	public Blob getBlob(int columnIndex) throws SQLException {
+		return target.getBlob(columnIndex);
+	}
+
+	public boolean getBoolean(String columnLabel) throws SQLException {
+		return target.getBoolean(columnLabel);
+	}
+
+	public boolean getBoolean(int columnIndex) throws SQLException {
+		return target.getBoolean(columnIndex);
+	}
+
+	public byte getByte(String columnLabel) throws SQLException {
+		return target.getByte(columnLabel);
+	}
+
+	public byte getByte(int columnIndex) throws SQLException {
+		return target.getByte(columnIndex);
+	}
+
+	public byte[] getBytes(String columnLabel) throws SQLException {
+		return target.getBytes(columnLabel);
+	}
+
+	public byte[] getBytes(int columnIndex) throws SQLException {
+		return target.getBytes(columnIndex);
+	}
+
+	public Reader getCharacterStream(String columnLabel) throws SQLException {
+		return target.getCharacterStream(columnLabel);
+	}
+
+	public Reader getCharacterStream(int columnIndex) throws SQLException {
+		return target.getCharacterStream(columnIndex);
+	}
+
+	public Clob getClob(String columnLabel) throws SQLException {
+		return target.getClob(columnLabel);
+	}
+
+	public Clob getClob(int columnIndex) throws SQLException {
+		return target.getClob(columnIndex);
+	}
+
+	public int getConcurrency() throws SQLException {
+		return target.getConcurrency();
+	}
+
+	public String getCursorName() throws SQLException {
+		return target.getCursorName();
+	}
+
+	public Date getDate(String columnLabel) throws SQLException {
+		return target.getDate(columnLabel);
+	}
+
+	public Date getDate(int columnIndex) throws SQLException {
+		return target.getDate(columnIndex);
+	}
+
+	public Date getDate(String columnLabel, Calendar cal) throws SQLException {
+		return target.getDate(columnLabel, cal);
+	}
+
+	public Date getDate(int columnIndex, Calendar cal) throws SQLException {
+		return target.getDate(columnIndex, cal);
+	}
+
+	public double getDouble(String columnLabel) throws SQLException {
+		return target.getDouble(columnLabel);
+	}
+
+	public double getDouble(int columnIndex) throws SQLException {
+		return target.getDouble(columnIndex);
+	}
+
+	public int getFetchDirection() throws SQLException {
+		return target.getFetchDirection();
+	}
+
+	public int getFetchSize() throws SQLException {
+		return target.getFetchSize();
+	}
+
+	public float getFloat(String columnLabel) throws SQLException {
+		return target.getFloat(columnLabel);
+	}
+
+	public float getFloat(int columnIndex) throws SQLException {
+		return target.getFloat(columnIndex);
+	}
+
+	public int getHoldability() throws SQLException {
+		return target.getHoldability();
+	}
+
+	public int getInt(String columnLabel) throws SQLException {
+		return target.getInt(columnLabel);
+	}
+
+	public int getInt(int columnIndex) throws SQLException {
+		return target.getInt(columnIndex);
+	}
+
+	public long getLong(String columnLabel) throws SQLException {
+		return target.getLong(columnLabel);
+	}
+
+	public long getLong(int columnIndex) throws SQLException {
+		return target.getLong(columnIndex);
+	}
+
+	public ResultSetMetaData getMetaData() throws SQLException {
+		return target.getMetaData();
+	}
+
+	public Reader getNCharacterStream(String columnLabel) throws SQLException {
+		return target.getNCharacterStream(columnLabel);
+	}
+
+	public Reader getNCharacterStream(int columnIndex) throws SQLException {
+		return target.getNCharacterStream(columnIndex);
+	}
+
+	public NClob getNClob(String columnLabel) throws SQLException {
+		return target.getNClob(columnLabel);
+	}
+
+	public NClob getNClob(int columnIndex) throws SQLException {
+		return target.getNClob(columnIndex);
+	}
+
+	public String getNString(String columnLabel) throws SQLException {
+		return target.getNString(columnLabel);
+	}
+
+	public String getNString(int columnIndex) throws SQLException {
+		return target.getNString(columnIndex);
+	}
+
+	public Object getObject(String columnLabel) throws SQLException {
+		return target.getObject(columnLabel);
+	}
+
+	public Object getObject(int columnIndex) throws SQLException {
+		return target.getObject(columnIndex);
+	}
+
+	public <T> T getObject(String columnLabel, Class<T> type) throws SQLException {
+		return target.getObject(columnLabel, type);
+	}
+
+	public Object getObject(String columnLabel, Map<String, Class<?>> map) throws SQLException {
+		return target.getObject(columnLabel, map);
+	}
+
+	public <T> T getObject(int columnIndex, Class<T> type) throws SQLException {
+		return target.getObject(columnIndex, type);
+	}
+
+	public Object getObject(int columnIndex, Map<String, Class<?>> map) throws SQLException {
+		return target.getObject(columnIndex, map);
+	}
+
+	public Ref getRef(String columnLabel) throws SQLException {
+		return target.getRef(columnLabel);
+	}
+
+	public Ref getRef(int columnIndex) throws SQLException {
+		return target.getRef(columnIndex);
+	}
+
+	public int getRow() throws SQLException {
+		return target.getRow();
+	}
+
+	public RowId getRowId(String columnLabel) throws SQLException {
+		return target.getRowId(columnLabel);
+	}
+
+	public RowId getRowId(int columnIndex) throws SQLException {
+		return target.getRowId(columnIndex);
+	}
+
+	public SQLXML getSQLXML(String columnLabel) throws SQLException {
+		return target.getSQLXML(columnLabel);
+	}
+
+	public SQLXML getSQLXML(int columnIndex) throws SQLException {
+		return target.getSQLXML(columnIndex);
+	}
+
+	public short getShort(String columnLabel) throws SQLException {
+		return target.getShort(columnLabel);
+	}
+
+	public short getShort(int columnIndex) throws SQLException {
+		return target.getShort(columnIndex);
+	}
+
+	public Statement getStatement() throws SQLException {
+		return target.getStatement();
+	}
+
+	public String getString(String columnLabel) throws SQLException {
+		return target.getString(columnLabel);
+	}
+
+	public String getString(int columnIndex) throws SQLException {
+		return target.getString(columnIndex);
+	}
+
+	public Time getTime(String columnLabel) throws SQLException {
+		return target.getTime(columnLabel);
+	}
+
+	public Time getTime(int columnIndex) throws SQLException {
+		return target.getTime(columnIndex);
+	}
+
+	public Time getTime(String columnLabel, Calendar cal) throws SQLException {
+		return target.getTime(columnLabel, cal);
+	}
+
+	public Time getTime(int columnIndex, Calendar cal) throws SQLException {
+		return target.getTime(columnIndex, cal);
+	}
+
+	public Timestamp getTimestamp(String columnLabel) throws SQLException {
+		return target.getTimestamp(columnLabel);
+	}
+
+	public Timestamp getTimestamp(int columnIndex) throws SQLException {
+		return target.getTimestamp(columnIndex);
+	}
+
+	public Timestamp getTimestamp(String columnLabel, Calendar cal) throws SQLException {
+		return target.getTimestamp(columnLabel, cal);
+	}
+
+	public Timestamp getTimestamp(int columnIndex, Calendar cal) throws SQLException {
+		return target.getTimestamp(columnIndex, cal);
+	}
+
+	public int getType() throws SQLException {
+		return target.getType();
+	}
+
+	public URL getURL(String columnLabel) throws SQLException {
+		return target.getURL(columnLabel);
+	}
+
+	public URL getURL(int columnIndex) throws SQLException {
+		return target.getURL(columnIndex);
+	}
+
+	public InputStream getUnicodeStream(String columnLabel) throws SQLException {
+		return target.getUnicodeStream(columnLabel);
+	}
+
+	public InputStream getUnicodeStream(int columnIndex) throws SQLException {
+		return target.getUnicodeStream(columnIndex);
+	}
+
+	public SQLWarning getWarnings() throws SQLException {
+		return target.getWarnings();
+	}
+
+	public void insertRow() throws SQLException {
+		target.insertRow();
+	}
+
+	public boolean isAfterLast() throws SQLException {
+		return target.isAfterLast();
+	}
+
+	public boolean isBeforeFirst() throws SQLException {
+		return target.isBeforeFirst();
+	}
+
+	public boolean isClosed() throws SQLException {
+		return target.isClosed();
+	}
+
+	public boolean isFirst() throws SQLException {
+		return target.isFirst();
+	}
+
+	public boolean isLast() throws SQLException {
+		return target.isLast();
+	}
+
+	public boolean isWrapperFor(Class<?> iface) throws SQLException {
+		return target.isWrapperFor(iface);
+	}
+
+	public boolean last() throws SQLException {
+		return target.last();
+	}
+
+	public void moveToCurrentRow() throws SQLException {
+		target.moveToCurrentRow();
+	}
+
+	public void moveToInsertRow() throws SQLException {
+		target.moveToInsertRow();
+	}
+
+	public boolean next() throws SQLException {
+		return target.next();
+	}
+
+	public boolean previous() throws SQLException {
+		return target.previous();
+	}
+
+	public void refreshRow() throws SQLException {
+		target.refreshRow();
+	}
+
+	public boolean relative(int rows) throws SQLException {
+		return target.relative(rows);
+	}
+
+	public boolean rowDeleted() throws SQLException {
+		return target.rowDeleted();
+	}
+
+	public boolean rowInserted() throws SQLException {
+		return target.rowInserted();
+	}
+
+	public boolean rowUpdated() throws SQLException {
+		return target.rowUpdated();
+	}
+
+	public void setFetchDirection(int direction) throws SQLException {
+		target.setFetchDirection(direction);
+	}
+
+	public void setFetchSize(int rows) throws SQLException {
+		target.setFetchSize(rows);
+	}
+
+	public <T> T unwrap(Class<T> iface) throws SQLException {
+		return target.unwrap(iface);
+	}
+
+	public void updateArray(String columnLabel, Array x) throws SQLException {
+		target.updateArray(columnLabel, x);
+	}
+
+	public void updateArray(int columnIndex, Array x) throws SQLException {
+		target.updateArray(columnIndex, x);
+	}
+
+	public void updateAsciiStream(String columnLabel, InputStream x) throws SQLException {
+		target.updateAsciiStream(columnLabel, x);
+	}
+
+	public void updateAsciiStream(int columnIndex, InputStream x) throws SQLException {
+		target.updateAsciiStream(columnIndex, x);
+	}
+
+	public void updateAsciiStream(String columnLabel, InputStream x, int length) throws SQLException {
+		target.updateAsciiStream(columnLabel, x, length);
+	}
+
+	public void updateAsciiStream(String columnLabel, InputStream x, long length) throws SQLException {
+		target.updateAsciiStream(columnLabel, x, length);
+	}
+
+	public void updateAsciiStream(int columnIndex, InputStream x, int length) throws SQLException {
+		target.updateAsciiStream(columnIndex, x, length);
+	}
+
+	public void updateAsciiStream(int columnIndex, InputStream x, long length) throws SQLException {
+		target.updateAsciiStream(columnIndex, x, length);
+	}
+
+	public void updateBigDecimal(String columnLabel, BigDecimal x) throws SQLException {
+		target.updateBigDecimal(columnLabel, x);
+	}
+
+	public void updateBigDecimal(int columnIndex, BigDecimal x) throws SQLException {
+		target.updateBigDecimal(columnIndex, x);
+	}
+
+	public void updateBinaryStream(String columnLabel, InputStream x) throws SQLException {
+		target.updateBinaryStream(columnLabel, x);
+	}
+
+	public void updateBinaryStream(int columnIndex, InputStream x) throws SQLException {
+		target.updateBinaryStream(columnIndex, x);
+	}
+
+	public void updateBinaryStream(String columnLabel, InputStream x, int length) throws SQLException {
+		target.updateBinaryStream(columnLabel, x, length);
+	}
+
+	public void updateBinaryStream(String columnLabel, InputStream x, long length) throws SQLException {
+		target.updateBinaryStream(columnLabel, x, length);
+	}
+
+	public void updateBinaryStream(int columnIndex, InputStream x, int length) throws SQLException {
+		target.updateBinaryStream(columnIndex, x, length);
+	}
+
+	public void updateBinaryStream(int columnIndex, InputStream x, long length) throws SQLException {
+		target.updateBinaryStream(columnIndex, x, length);
+	}
+
+	public void updateBlob(String columnLabel, InputStream x) throws SQLException {
+		target.updateBlob(columnLabel, x);
+	}
+
+	public void updateBlob(String columnLabel, Blob x) throws SQLException {
+		target.updateBlob(columnLabel, x);
+	}
+
+	public void updateBlob(int columnIndex, InputStream x) throws SQLException {
+		target.updateBlob(columnIndex, x);
+	}
+
+	public void updateBlob(int columnIndex, Blob x) throws SQLException {
+		target.updateBlob(columnIndex, x);
+	}
+
+	public void updateBlob(String columnLabel, InputStream x, long length) throws SQLException {
+		target.updateBlob(columnLabel, x, length);
+	}
+
+	public void updateBlob(int columnIndex, InputStream x, long length) throws SQLException {
+		target.updateBlob(columnIndex, x, length);
+	}
+
+	public void updateBoolean(String columnLabel, boolean x) throws SQLException {
+		target.updateBoolean(columnLabel, x);
+	}
+
+	public void updateBoolean(int columnIndex, boolean x) throws SQLException {
+		target.updateBoolean(columnIndex, x);
+	}
+
+	public void updateByte(String columnLabel, byte x) throws SQLException {
+		target.updateByte(columnLabel, x);
+	}
+
+	public void updateByte(int columnIndex, byte x) throws SQLException {
+		target.updateByte(columnIndex, x);
+	}
+
+	public void updateBytes(String columnLabel, byte[] x) throws SQLException {
+		target.updateBytes(columnLabel, x);
+	}
+
+	public void updateBytes(int columnIndex, byte[] x) throws SQLException {
+		target.updateBytes(columnIndex, x);
+	}
+
+	public void updateCharacterStream(String columnLabel, Reader x) throws SQLException {
+		target.updateCharacterStream(columnLabel, x);
+	}
+
+	public void updateCharacterStream(int columnIndex, Reader x) throws SQLException {
+		target.updateCharacterStream(columnIndex, x);
+	}
+
+	public void updateCharacterStream(String columnLabel, Reader x, int length) throws SQLException {
+		target.updateCharacterStream(columnLabel, x, length);
+	}
+
+	public void updateCharacterStream(String columnLabel, Reader x, long length) throws SQLException {
+		target.updateCharacterStream(columnLabel, x, length);
+	}
+
+	public void updateCharacterStream(int columnIndex, Reader x, int length) throws SQLException {
+		target.updateCharacterStream(columnIndex, x, length);
+	}
+
+	public void updateCharacterStream(int columnIndex, Reader x, long length) throws SQLException {
+		target.updateCharacterStream(columnIndex, x, length);
+	}
+
+	public void updateClob(String columnLabel, Reader x) throws SQLException {
+		target.updateClob(columnLabel, x);
+	}
+
+	public void updateClob(String columnLabel, Clob x) throws SQLException {
+		target.updateClob(columnLabel, x);
+	}
+
+	public void updateClob(int columnIndex, Reader x) throws SQLException {
+		target.updateClob(columnIndex, x);
+	}
+
+	public void updateClob(int columnIndex, Clob x) throws SQLException {
+		target.updateClob(columnIndex, x);
+	}
+
+	public void updateClob(String columnLabel, Reader x, long length) throws SQLException {
+		target.updateClob(columnLabel, x, length);
+	}
+
+	public void updateClob(int columnIndex, Reader x, long length) throws SQLException {
+		target.updateClob(columnIndex, x, length);
+	}
+
+	public void updateDate(String columnLabel, Date x) throws SQLException {
+		target.updateDate(columnLabel, x);
+	}
+
+	public void updateDate(int columnIndex, Date x) throws SQLException {
+		target.updateDate(columnIndex, x);
+	}
+
+	public void updateDouble(String columnLabel, double x) throws SQLException {
+		target.updateDouble(columnLabel, x);
+	}
+
+	public void updateDouble(int columnIndex, double x) throws SQLException {
+		target.updateDouble(columnIndex, x);
+	}
+
+	public void updateFloat(String columnLabel, float x) throws SQLException {
+		target.updateFloat(columnLabel, x);
+	}
+
+	public void updateFloat(int columnIndex, float x) throws SQLException {
+		target.updateFloat(columnIndex, x);
+	}
+
+	public void updateInt(String columnLabel, int x) throws SQLException {
+		target.updateInt(columnLabel, x);
+	}
+
+	public void updateInt(int columnIndex, int x) throws SQLException {
+		target.updateInt(columnIndex, x);
+	}
+
+	public void updateLong(String columnLabel, long x) throws SQLException {
+		target.updateLong(columnLabel, x);
+	}
+
+	public void updateLong(int columnIndex, long x) throws SQLException {
+		target.updateLong(columnIndex, x);
+	}
+
+	public void updateNCharacterStream(String columnLabel, Reader x) throws SQLException {
+		target.updateNCharacterStream(columnLabel, x);
+	}
+
+	public void updateNCharacterStream(int columnIndex, Reader x) throws SQLException {
+		target.updateNCharacterStream(columnIndex, x);
+	}
+
+	public void updateNCharacterStream(String columnLabel, Reader x, long length) throws SQLException {
+		target.updateNCharacterStream(columnLabel, x, length);
+	}
+
+	public void updateNCharacterStream(int columnIndex, Reader x, long length) throws SQLException {
+		target.updateNCharacterStream(columnIndex, x, length);
+	}
+
+	public void updateNClob(String columnLabel, Reader x) throws SQLException {
+		target.updateNClob(columnLabel, x);
+	}
+
+	public void updateNClob(String columnLabel, NClob x) throws SQLException {
+		target.updateNClob(columnLabel, x);
+	}
+
+	public void updateNClob(int columnIndex, Reader x) throws SQLException {
+		target.updateNClob(columnIndex, x);
+	}
+
+	public void updateNClob(int columnIndex, NClob x) throws SQLException {
+		target.updateNClob(columnIndex, x);
+	}
+
+	public void updateNClob(String columnLabel, Reader x, long length) throws SQLException {
+		target.updateNClob(columnLabel, x, length);
+	}
+
+	public void updateNClob(int columnIndex, Reader x, long length) throws SQLException {
+		target.updateNClob(columnIndex, x, length);
+	}
+
+	public void updateNString(String columnLabel, String x) throws SQLException {
+		target.updateNString(columnLabel, x);
+	}
+
+	public void updateNString(int columnIndex, String x) throws SQLException {
+		target.updateNString(columnIndex, x);
+	}
+
+	public void updateNull(String columnLabel) throws SQLException {
+		target.updateNull(columnLabel);
+	}
+
+	public void updateNull(int columnIndex) throws SQLException {
+		target.updateNull(columnIndex);
+	}
+
+	public void updateObject(String columnLabel, Object x) throws SQLException {
+		target.updateObject(columnLabel, x);
+	}
+
+	public void updateObject(int columnIndex, Object x) throws SQLException {
+		target.updateObject(columnIndex, x);
+	}
+
+	public void updateObject(String columnLabel, Object x, int scaleOrLength) throws SQLException {
+		target.updateObject(columnLabel, x, scaleOrLength);
+	}
+
+	public void updateObject(int columnIndex, Object x, int scaleOrLength) throws SQLException {
+		target.updateObject(columnIndex, x, scaleOrLength);
+	}
+
+	public void updateRef(String columnLabel, Ref x) throws SQLException {
+		target.updateRef(columnLabel, x);
+	}
+
+	public void updateRef(int columnIndex, Ref x) throws SQLException {
+		target.updateRef(columnIndex, x);
+	}
+
+	public void updateRow() throws SQLException {
+		target.updateRow();
+	}
+
+	public void updateRowId(String columnLabel, RowId x) throws SQLException {
+		target.updateRowId(columnLabel, x);
+	}
+
+	public void updateRowId(int columnIndex, RowId x) throws SQLException {
+		target.updateRowId(columnIndex, x);
+	}
+
+	public void updateSQLXML(String columnLabel, SQLXML x) throws SQLException {
+		target.updateSQLXML(columnLabel, x);
+	}
+
+	public void updateSQLXML(int columnIndex, SQLXML x) throws SQLException {
+		target.updateSQLXML(columnIndex, x);
+	}
+
+	public void updateShort(String columnLabel, short x) throws SQLException {
+		target.updateShort(columnLabel, x);
+	}
+
+	public void updateShort(int columnIndex, short x) throws SQLException {
+		target.updateShort(columnIndex, x);
+	}
+
+	public void updateString(String columnLabel, String x) throws SQLException {
+		target.updateString(columnLabel, x);
+	}
+
+	public void updateString(int columnIndex, String x) throws SQLException {
+		target.updateString(columnIndex, x);
+	}
+
+	public void updateTime(String columnLabel, Time x) throws SQLException {
+		target.updateTime(columnLabel, x);
+	}
+
+	public void updateTime(int columnIndex, Time x) throws SQLException {
+		target.updateTime(columnIndex, x);
+	}
+
+	public void updateTimestamp(String columnLabel, Timestamp x) throws SQLException {
+		target.updateTimestamp(columnLabel, x);
+	}
+
+	public void updateTimestamp(int columnIndex, Timestamp x) throws SQLException {
+		target.updateTimestamp(columnIndex, x);
+	}
+
+	public boolean wasNull() throws SQLException {
+		return target.wasNull();
+	}
+
+	public String toString() {
+		return getClass().getSimpleName() + "[" + target + "]";
+	}
+}
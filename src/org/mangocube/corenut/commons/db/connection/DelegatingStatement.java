@@ -0,0 +1,215 @@
+/**
+ * Copyright Mangocity Limited (c) 2010. All rights reserved.
+ * This software is proprietary to and embodies the confidential
+ * technology of Mangocity Limited.  Possession, use, or copying
+ * of this software and media is authorized only pursuant to a
+ * valid written license from Mangocity or an authorized sublicensor.
+ */
+package org.mangocube.corenut.commons.db.connection;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.SQLWarning;
+import java.sql.Statement;
+
+/**
+ * Statically typed Statement wrapper which forwards every call to the target statement.
+ * Subclass it and override the methods to be intercepted.
+ *
+ * @since 1.0
+ */
+public class DelegatingStatement implements Statement {
+	protected final Statement target;
+
+	public DelegatingStatement(Statement target) {
+		this.target = target;
+	}
+
+	/**
+	 * @return the wrapped statement.
+	 */
+	public Statement getTargetStatement() {
+		return target;
+	}
+
+	public void addBatch(String sql) throws SQLException {
+		target.addBatch(sql);
+	}
+
+	public void cancel() throws SQLException {
+		target.cancel();
+	}
+
+	public void clearBatch() throws SQLException {
+		target.clearBatch();
+	}
+
+	public void clearWarnings() throws SQLException {
+		target.clearWarnings();
+	}
+
+	public void close() throws SQLException {
+		target.close();
+	}
+
+	public void closeOnCompletion() throws SQLException {
+		target.closeOnCompletion();
+	}
+
+	public boolean execute(String sql) throws SQLException {
+		return target.execute(sql);
+	}
+
+	public boolean execute(String sql, int[] columnIndexes) throws SQLException {
+		return target.execute(sql, columnIndexes);
+	}
+
+	public boolean execute(String sql, String[] columnNames) throws SQLException {
+		return target.execute(sql, columnNames);
+	}
+
+	public boolean execute(String sql, int autoGeneratedKeys) throws SQLException {
+		return target.execute(sql, autoGeneratedKeys);
+	}
+
+	public int[] executeBatch() throws SQLException {
+		return target.executeBatch();
+	}
+
+	public ResultSet executeQuery(String sql) throws SQLException {
+		return target.executeQuery(sql);
+	}
+
+	public int executeUpdate(String sql) throws SQLException {
+		return target.executeUpdate(sql);
+	}
+
+	public int executeUpdate(String sql, int[] columnIndexes) throws SQLException {
+		return target.executeUpdate(sql, columnIndexes);
+	}
+
+	public int executeUpdate(String sql, String[] columnNames) throws SQLException {
+		return target.executeUpdate(sql, columnNames);
+	}
+
+	public int executeUpdate(String sql, int autoGeneratedKeys) throws SQLException {
+		return target.executeUpdate(sql, autoGeneratedKeys);
+	}
+
+	public Connection getConnection() throws SQLException {
+		return target.getConnection();
+	}
+
+	public int getFetchDirection() throws SQLException {
+		return target.getFetchDirection();
+	}
+
+	public int getFetchSize() throws SQLException {
+		return target.getFetchSize();
+	}
+
+	public ResultSet getGeneratedKeys() throws SQLException {
+		return target.getGeneratedKeys();
+	}
+
+	public int getMaxFieldSize() throws SQLException {
+		return target.getMaxFieldSize();
+	}
+
+	public int getMaxRows() throws SQLException {
+		return target.getMaxRows();
+	}
+
+	public boolean getMoreResults() throws SQLException {
+		return target.getMoreResults();
+	}
+
+	public boolean getMoreResults(int current) throws SQLException {
+		return target.getMoreResults(current);
+	}
+
+	public int getQueryTimeout() throws SQLException {
+		return target.getQueryTimeout();
+	}
+
+	public ResultSet getResultSet() throws SQLException {
+		return target.getResultSet();
+	}
+
+	public int getResultSetConcurrency() throws SQLException {
+		return target.getResultSetConcurrency();
+	}
+
+	public int getResultSetHoldability() throws SQLException {
+		return target.getResultSetHoldability();
+	}
+
+	public int getResultSetType() throws SQLException {
+		return target.getResultSetType();
+	}
+
+	public int getUpdateCount() throws SQLException {
+		return target.getUpdateCount();
+	}
+
+	public SQLWarning getWarnings() throws SQLException {
+		return target.getWarnings();
+	}
+
+	public boolean isCloseOnCompletion() throws SQLException {
+		return target.isCloseOnCompletion();
+	}
+
+	public boolean isClosed() throws SQLException {
+		return target.isClosed();
+	}
+
+	public boolean isPoolable() throws SQLException {
+		return target.isPoolable();
+	}
+
+	public boolean isWrapperFor(Class<?> iface) throws SQLException {
+		return target.isWrapperFor(iface);
+	}
+
+	public void setCursorName(String name) throws SQLException {
+		target.setCursorName(name);
+	}
+
+	public void setEscapeProcessing(boolean enable) throws SQLException {
+		target.setEscapeProcessing(enable);
+	}
+
+	public void setFetchDirection(int direction) throws SQLException {
+		target.setFetchDirection(direction);
+	}
+
+	public void setFetchSize(int rows) throws SQLException {
+		target.setFetchSize(rows);
+	}
+
+	public void setMaxFieldSize(int max) throws SQLException {
+		target.setMaxFieldSize(max);
+	}
+
+	public void setMaxRows(int max) throws SQLException {
+		target.setMaxRows(max);
+	}
+
+	public void setPoolable(boolean poolable) throws SQLException {
+		target.setPoolable(poolable);
+	}
+
+	public void setQueryTimeout(int seconds) throws SQLException {
+		target.setQueryTimeout(seconds);
+	}
+
+	public <T> T unwrap(Class<T> iface) throws SQLException {
+		return target.unwrap(iface);
+	}
+
+	public String toString() {
+		return getClass().getSimpleName() + "[" + target + "]";
+	}
+}
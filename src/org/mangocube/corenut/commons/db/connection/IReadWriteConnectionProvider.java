@@ -0,0 +1,22 @@
+/**
+ * Copyright Mangocity Limited (c) 2010. All rights reserved.
+ * This software is proprietary to and embodies the confidential
+ * technology of Mangocity Limited.  Possession, use, or copying
+ * of this software and media is authorized only pursuant to a
+ * valid written license from Mangocity or an authorized sublicensor.
+ */
+package org.mangocube.corenut.commons.db.connection;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+
+/**
+ * Connection provider separating reads from writes. <code>getConnection()</code> returns a connection
+ * to the primary database for writes, <code>getReadConnection()</code> a connection that may be served by
+ * a replica, JdbcTemplate uses it for read only queries.
+ *
+ * @since 1.0
+ */
+public interface IReadWriteConnectionProvider extends IConnectionProvider {
+	Connection getReadConnection() throws SQLException;
+}
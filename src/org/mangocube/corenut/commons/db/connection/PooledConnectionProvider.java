@@ -0,0 +1,1467 @@
+/**
+ * Copyright Mangocity Limited (c) 2010. All rights reserved.
+ * This software is proprietary to and embodies the confidential
+ * technology of Mangocity Limited.  Possession, use, or copying
+ * of this software and media is authorized only pursuant to a
+ * valid written license from Mangocity or an authorized sublicensor.
+ */
+package org.mangocube.corenut.commons.db.connection;
+
+import java.io.InputStream;
+import java.io.Reader;
+import java.math.BigDecimal;
+import java.net.URL;
+import java.sql.Array;
+import java.sql.Blob;
+import java.sql.CallableStatement;
+import java.sql.Clob;
+import java.sql.Connection;
+import java.sql.Date;
+import java.sql.DatabaseMetaData;
+import java.sql.NClob;
+import java.sql.ParameterMetaData;
+import java.sql.PreparedStatement;
+import java.sql.Ref;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.RowId;
+import java.sql.SQLClientInfoException;
+import java.sql.SQLException;
+import java.sql.SQLWarning;
+import java.sql.SQLXML;
+import java.sql.Savepoint;
+import java.sql.Statement;
+import java.sql.Struct;
+import java.sql.Time;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Timer;
+import java.util.TimerTask;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+/**
+ * Bounded connection pool on top of another connection provider, e.g. JdbcConnectionProvider.
+ * <p/>
+ * Idle connections are kept in a lock-free LIFO deque, so the most recently used (warm) connection is
+ * handed out first, and the number of borrowed connections is bounded by a semaphore of <code>maxSize</code>
+ * permits. A borrower waits at most <code>maxWait</code> milliseconds for a permit.
+ * <p/>
+ * The returned connection is a wrapper, calling <code>close()</code> on it hands the physical connection
+ * back to the pool. Statements left open are closed, and auto-commit, read-only and transaction isolation
+ * changed by the borrower are reset. The wrapper refuses any further call once closed. A background daemon evicts connections idle longer than <code>idleTimeout</code>
+ * and keeps at least <code>minSize</code> physical connections open.
+ * <p/>
+ * When <code>statementCacheSize</code> is positive, every physical connection keeps an LRU cache of
+ * prepared statements keyed by SQL text, result set type and concurrency. Closing a statement prepared by
+ * <code>prepareStatement(sql)</code> or <code>prepareStatement(sql, type, concurrency)</code> clears its
+ * parameters and batch and parks it in the cache, so preparing the same SQL again on that connection
+ * skips the parse and the server round-trip. Other statement settings, e.g. fetch size or max rows,
+ * are kept with the cached statement, callers that change them should always set them.
+ * <pre>
+ * PooledConnectionProvider pool = new PooledConnectionProvider(
+ *         new JdbcConnectionProvider(driverName, url, user, password), 2, 20);
+ * JdbcTemplate template = new JdbcTemplate(pool);
+ * ...
+ * pool.close();
+ * </pre>
+ *
+ * @since 1.0
+ */
+public class PooledConnectionProvider implements IConnectionProvider {
+	private static Log log = LogFactory.getLog(PooledConnectionProvider.class);
+
+	public static final long DEFAULT_MAX_WAIT = 30 * 1000L;
+	public static final long DEFAULT_IDLE_TIMEOUT = 10 * 60 * 1000L;
+	public static final long DEFAULT_EVICTION_INTERVAL = 30 * 1000L;
+	public static final long DEFAULT_VALIDATION_INTERVAL = 1000L;
+	public static final int DEFAULT_VALIDATION_TIMEOUT = 5;
+
+	private final IConnectionProvider targetProvider;
+	private final int minSize;
+	private final int maxSize;
+
+	private long maxWait = DEFAULT_MAX_WAIT;
+	private long idleTimeout = DEFAULT_IDLE_TIMEOUT;
+	private long evictionInterval = DEFAULT_EVICTION_INTERVAL;
+	private boolean testOnBorrow = true;
+	private long validationInterval = DEFAULT_VALIDATION_INTERVAL;
+	private int validationTimeout = DEFAULT_VALIDATION_TIMEOUT;
+	private boolean rollbackOnReturn = true;
+	private int statementCacheSize = 0;
+
+	private final ConcurrentLinkedDeque<PooledEntry> idleEntries = new ConcurrentLinkedDeque<PooledEntry>();
+	private final Semaphore permits;
+	private final AtomicInteger totalCount = new AtomicInteger(0);
+	private final AtomicBoolean evictorStarted = new AtomicBoolean(false);
+	private volatile boolean closed = false;
+	private volatile Timer evictor;
+
+	private final AtomicLong statementCacheHits = new AtomicLong(0);
+	private final AtomicLong statementCacheMisses = new AtomicLong(0);
+	private final AtomicLong statementCacheEvictions = new AtomicLong(0);
+
+	public PooledConnectionProvider(IConnectionProvider targetProvider, int minSize, int maxSize) {
+		if (targetProvider == null) {
+			throw new IllegalArgumentException("target connection provider is null");
+		}
+		if (maxSize <= 0 || minSize < 0 || minSize > maxSize) {
+			throw new IllegalArgumentException("invalid pool size: min=" + minSize + ", max=" + maxSize);
+		}
+		this.targetProvider = targetProvider;
+		this.minSize = minSize;
+		this.maxSize = maxSize;
+		this.permits = new Semaphore(maxSize);
+	}
+
+	public PooledConnectionProvider(String driverClassName, String url, String user, String password,
+									int minSize, int maxSize) {
+		this(new JdbcConnectionProvider(driverClassName, url, user, password), minSize, maxSize);
+	}
+
+	/**
+	 * Borrow a connection from pool. If no idle connection is available, a new physical connection is opened
+	 * as long as the pool is not exhausted, otherwise wait up to <code>maxWait</code> milliseconds.
+	 *
+	 * @return pooled connection, close it to return it to pool.
+	 * @throws SQLException pool is closed, timeout on waiting or fail to open physical connection.
+	 */
+	public Connection getConnection() throws SQLException {
+		if (closed) {
+			throw new SQLException("Connection pool is closed");
+		}
+		startEvictor();
+
+		try {
+			if (!permits.tryAcquire(maxWait, TimeUnit.MILLISECONDS)) {
+				throw new SQLException("Timeout after " + maxWait + "ms waiting for connection, pool max size: " + maxSize);
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new SQLException("Interrupted while waiting for connection", e);
+		}
+
+		try {
+			PooledEntry entry;
+			while ((entry = idleEntries.pollFirst()) != null) {
+				if (validate(entry)) {
+					return new PooledConnection(entry);
+				}
+				destroy(entry);
+			}
+			return new PooledConnection(createEntry());
+		} catch (SQLException e) {
+			permits.release();
+			throw e;
+		} catch (RuntimeException e) {
+			permits.release();
+			throw e;
+		}
+	}
+
+	/**
+	 * Close all idle connections and stop the evictor. Borrowed connections are closed physically
+	 * once they are returned.
+	 */
+	public void close() {
+		closed = true;
+		if (evictor != null) {
+			evictor.cancel();
+		}
+		drainIdle();
+	}
+
+	private void release(PooledEntry entry) {
+		try {
+			Connection con = entry.connection;
+			if (closed || con.isClosed()) {
+				destroy(entry);
+				return;
+			}
+			if (rollbackOnReturn && !con.getAutoCommit()) {
+				con.rollback();
+			}
+			if (entry.stateChanged) {
+				resetState(entry);
+			}
+			entry.lastUsed = System.currentTimeMillis();
+			idleEntries.offerFirst(entry);
+			if (closed) {
+				drainIdle();
+			}
+		} catch (SQLException e) {
+			log.warn("fail to return JDBC Connection to pool, discard it", e);
+			destroy(entry);
+		} finally {
+			permits.release();
+		}
+	}
+
+	private void resetState(PooledEntry entry) throws SQLException {
+		Connection con = entry.connection;
+		if (con.getAutoCommit() != entry.defaultAutoCommit) {
+			con.setAutoCommit(entry.defaultAutoCommit);
+		}
+		if (con.isReadOnly() != entry.defaultReadOnly) {
+			con.setReadOnly(entry.defaultReadOnly);
+		}
+		if (con.getTransactionIsolation() != entry.defaultTransactionIsolation) {
+			con.setTransactionIsolation(entry.defaultTransactionIsolation);
+		}
+		entry.stateChanged = false;
+	}
+
+	private boolean validate(PooledEntry entry) {
+		if (!testOnBorrow || System.currentTimeMillis() - entry.lastUsed < validationInterval) {
+			return true;
+		}
+		try {
+			return entry.connection.isValid(validationTimeout);
+		} catch (SQLException e) {
+			log.warn("fail to validate pooled JDBC Connection", e);
+			return false;
+		}
+	}
+
+	private PooledEntry createEntry() throws SQLException {
+		Connection con = targetProvider.getConnection();
+		if (con == null) {
+			throw new SQLException("target connection provider returns null connection");
+		}
+		PooledEntry entry;
+		try {
+			entry = new PooledEntry(con, statementCacheSize > 0 ? new StatementCache(statementCacheSize) : null);
+		} catch (SQLException e) {
+			try {
+				con.close();
+			} catch (SQLException ex) {
+				log.warn("fail to close JDBC Connection", ex);
+			}
+			throw e;
+		}
+		totalCount.incrementAndGet();
+		return entry;
+	}
+
+	private void destroy(PooledEntry entry) {
+		totalCount.decrementAndGet();
+		if (entry.statementCache != null) {
+			entry.statementCache.closeAll();
+		}
+		try {
+			entry.connection.close();
+		} catch (SQLException e) {
+			log.warn("fail to close pooled JDBC Connection", e);
+		} catch (Throwable ex) {
+			log.warn("Unexpected exception on closing pooled JDBC Connection", ex);
+		}
+	}
+
+	private void drainIdle() {
+		PooledEntry entry;
+		while ((entry = idleEntries.pollFirst()) != null) {
+			destroy(entry);
+		}
+	}
+
+	private void startEvictor() {
+		if (!evictorStarted.get() && evictorStarted.compareAndSet(false, true)) {
+			evictor = new Timer("PooledConnectionProvider-evictor", true);
+			evictor.schedule(new TimerTask() {
+				public void run() {
+					try {
+						evict();
+					} catch (RuntimeException e) {
+						log.error("Unexpected exception on evicting pooled JDBC Connection", e);
+					}
+				}
+			}, 0, evictionInterval);
+		}
+	}
+
+	void evict() {
+		if (closed) return;
+
+		//idle entries are pushed to head, so the longest idle ones are at tail.
+		long deadline = System.currentTimeMillis() - idleTimeout;
+		Iterator<PooledEntry> it = idleEntries.descendingIterator();
+		while (it.hasNext() && totalCount.get() > minSize) {
+			PooledEntry entry = it.next();
+			if (entry.lastUsed < deadline && idleEntries.removeFirstOccurrence(entry)) {
+				destroy(entry);
+			}
+		}
+
+		try {
+			while (!closed && totalCount.get() < minSize) {
+				PooledEntry entry = createEntry();
+				entry.lastUsed = System.currentTimeMillis();
+				idleEntries.offerLast(entry);
+			}
+		} catch (SQLException e) {
+			log.warn("fail to fill connection pool to min size " + minSize, e);
+		}
+	}
+
+	//*************************************** Pool metrics *******************************************************//
+
+	/**
+	 * @return number of connections currently borrowed.
+	 */
+	public int getActiveCount() {
+		return maxSize - permits.availablePermits();
+	}
+
+	/**
+	 * @return number of idle connections, it's computed by traversal, so don't call it on hot path.
+	 */
+	public int getIdleCount() {
+		return idleEntries.size();
+	}
+
+	/**
+	 * @return number of opened physical connections.
+	 */
+	public int getTotalCount() {
+		return totalCount.get();
+	}
+
+	/**
+	 * @return number of threads waiting for a connection.
+	 */
+	public int getWaitingCount() {
+		return permits.getQueueLength();
+	}
+
+	/**
+	 * @return number of prepared statements served from statement cache.
+	 */
+	public long getStatementCacheHits() {
+		return statementCacheHits.get();
+	}
+
+	/**
+	 * @return number of prepared statements not found in statement cache and prepared by the driver.
+	 */
+	public long getStatementCacheMisses() {
+		return statementCacheMisses.get();
+	}
+
+	/**
+	 * @return number of cached prepared statements closed to make room for others.
+	 */
+	public long getStatementCacheEvictions() {
+		return statementCacheEvictions.get();
+	}
+
+	//*************************************** Configuration ******************************************************//
+
+	public int getMinSize() {
+		return minSize;
+	}
+
+	public int getMaxSize() {
+		return maxSize;
+	}
+
+	public long getMaxWait() {
+		return maxWait;
+	}
+
+	/**
+	 * @param maxWait max milliseconds to wait for a connection when pool is exhausted.
+	 */
+	public void setMaxWait(long maxWait) {
+		this.maxWait = maxWait;
+	}
+
+	public long getIdleTimeout() {
+		return idleTimeout;
+	}
+
+	/**
+	 * @param idleTimeout milliseconds a connection may stay idle before evicted, pool keeps at least minSize ones.
+	 */
+	public void setIdleTimeout(long idleTimeout) {
+		this.idleTimeout = idleTimeout;
+	}
+
+	public long getEvictionInterval() {
+		return evictionInterval;
+	}
+
+	/**
+	 * @param evictionInterval milliseconds between eviction runs, takes effect before first connection borrowed.
+	 */
+	public void setEvictionInterval(long evictionInterval) {
+		this.evictionInterval = evictionInterval;
+	}
+
+	public boolean isTestOnBorrow() {
+		return testOnBorrow;
+	}
+
+	public void setTestOnBorrow(boolean testOnBorrow) {
+		this.testOnBorrow = testOnBorrow;
+	}
+
+	public long getValidationInterval() {
+		return validationInterval;
+	}
+
+	/**
+	 * @param validationInterval connection used within the given milliseconds is not validated again on borrow.
+	 */
+	public void setValidationInterval(long validationInterval) {
+		this.validationInterval = validationInterval;
+	}
+
+	public int getValidationTimeout() {
+		return validationTimeout;
+	}
+
+	/**
+	 * @param validationTimeout seconds to wait for <code>Connection.isValid</code>.
+	 */
+	public void setValidationTimeout(int validationTimeout) {
+		this.validationTimeout = validationTimeout;
+	}
+
+	public boolean isRollbackOnReturn() {
+		return rollbackOnReturn;
+	}
+
+	/**
+	 * @param rollbackOnReturn whether rollback uncommitted work of non auto-commit connection when returned.
+	 */
+	public void setRollbackOnReturn(boolean rollbackOnReturn) {
+		this.rollbackOnReturn = rollbackOnReturn;
+	}
+
+	public int getStatementCacheSize() {
+		return statementCacheSize;
+	}
+
+	/**
+	 * @param statementCacheSize max idle prepared statements cached per physical connection, 0 to disable.
+	 *                           Takes effect for connections opened afterwards.
+	 */
+	public void setStatementCacheSize(int statementCacheSize) {
+		this.statementCacheSize = statementCacheSize;
+	}
+
+	//************************************************************************************************************//
+
+	static class PooledEntry {
+		final Connection connection;
+		final StatementCache statementCache;
+		final boolean defaultAutoCommit;
+		final boolean defaultReadOnly;
+		final int defaultTransactionIsolation;
+		volatile long lastUsed;
+		/**
+		 * Set when the borrower changes auto-commit, read-only or isolation, they are reset on return.
+		 */
+		volatile boolean stateChanged;
+
+		PooledEntry(Connection connection, StatementCache statementCache) throws SQLException {
+			this.connection = connection;
+			this.statementCache = statementCache;
+			this.defaultAutoCommit = connection.getAutoCommit();
+			this.defaultReadOnly = connection.isReadOnly();
+			this.defaultTransactionIsolation = connection.getTransactionIsolation();
+			this.lastUsed = System.currentTimeMillis();
+		}
+	}
+
+	static final class StatementKey {
+		private final String sql;
+		private final int resultSetType;
+		private final int resultSetConcurrency;
+		private final int hash;
+
+		StatementKey(String sql, int resultSetType, int resultSetConcurrency) {
+			this.sql = sql;
+			this.resultSetType = resultSetType;
+			this.resultSetConcurrency = resultSetConcurrency;
+			this.hash = (sql.hashCode() * 31 + resultSetType) * 31 + resultSetConcurrency;
+		}
+
+		public int hashCode() {
+			return hash;
+		}
+
+		public boolean equals(Object obj) {
+			if (this == obj) return true;
+			if (!(obj instanceof StatementKey)) return false;
+			StatementKey key = (StatementKey) obj;
+			return resultSetType == key.resultSetType && resultSetConcurrency == key.resultSetConcurrency
+					&& sql.equals(key.sql);
+		}
+	}
+
+	/**
+	 * LRU cache of idle prepared statements of one physical connection. Statements in use are taken out of
+	 * the cache, so the same SQL prepared twice on one connection gets two statements.
+	 */
+	class StatementCache {
+		private final int maxSize;
+		private final LinkedHashMap<StatementKey, PreparedStatement> idleStatements;
+
+		StatementCache(int maxSize) {
+			this.maxSize = maxSize;
+			this.idleStatements = new LinkedHashMap<StatementKey, PreparedStatement>(maxSize * 4 / 3 + 1);
+		}
+
+		synchronized PreparedStatement take(StatementKey key) {
+			PreparedStatement stmt = idleStatements.remove(key);
+			if (stmt != null) {
+				statementCacheHits.incrementAndGet();
+			} else {
+				statementCacheMisses.incrementAndGet();
+			}
+			return stmt;
+		}
+
+		void put(StatementKey key, PreparedStatement stmt) {
+			try {
+				stmt.clearParameters();
+				stmt.clearBatch();
+			} catch (SQLException e) {
+				log.warn("fail to reset cached JDBC Statement, discard it", e);
+				closeStatement(stmt);
+				return;
+			}
+
+			PreparedStatement evicted;
+			synchronized (this) {
+				evicted = idleStatements.put(key, stmt);
+				if (evicted == null && idleStatements.size() > maxSize) {
+					Iterator<PreparedStatement> it = idleStatements.values().iterator();
+					evicted = it.next();
+					it.remove();
+				}
+			}
+			if (evicted != null) {
+				statementCacheEvictions.incrementAndGet();
+				closeStatement(evicted);
+			}
+		}
+
+		void closeAll() {
+			PreparedStatement[] stmts;
+			synchronized (this) {
+				stmts = idleStatements.values().toArray(new PreparedStatement[idleStatements.size()]);
+				idleStatements.clear();
+			}
+			for (PreparedStatement stmt : stmts) {
+				closeStatement(stmt);
+			}
+		}
+
+		private void closeStatement(PreparedStatement stmt) {
+			try {
+				stmt.close();
+			} catch (SQLException e) {
+				log.warn("fail to close cached JDBC Statement", e);
+			}
+		}
+	}
+
+	/**
+	 * Logical connection handed out to borrower, one instance per borrow. Once closed, the physical connection
+	 * may belong to another borrower, so every call but close/isClosed/isValid fails. Statements left open by
+	 * the borrower are closed before the physical connection is returned.
+	 */
+	class PooledConnection extends DelegatingConnection {
+		private final PooledEntry entry;
+		private final AtomicBoolean returned = new AtomicBoolean(false);
+		private final List<Statement> statements = new ArrayList<Statement>();
+		private int pruneThreshold = 16;
+
+		PooledConnection(PooledEntry entry) {
+			super(entry.connection);
+			this.entry = entry;
+		}
+
+		public void close() throws SQLException {
+			if (returned.compareAndSet(false, true)) {
+				closeStatements();
+				release(entry);
+			}
+		}
+
+		public boolean isClosed() throws SQLException {
+			return returned.get() || target.isClosed();
+		}
+
+		public boolean isValid(int timeout) throws SQLException {
+			return !returned.get() && target.isValid(timeout);
+		}
+
+		private void checkOpen() throws SQLException {
+			if (returned.get()) {
+				throw new SQLException("connection is closed");
+			}
+		}
+
+		private void checkOpenClientInfo() throws SQLClientInfoException {
+			if (returned.get()) {
+				throw new SQLClientInfoException("connection is closed", null);
+			}
+		}
+
+		private <S extends Statement> S track(S statement) {
+			synchronized (statements) {
+				if (statements.size() >= pruneThreshold) {
+					for (Iterator<Statement> it = statements.iterator(); it.hasNext();) {
+						if (isStatementClosed(it.next())) {
+							it.remove();
+						}
+					}
+					pruneThreshold = Math.max(16, statements.size() * 2);
+				}
+				statements.add(statement);
+			}
+			return statement;
+		}
+
+		private void closeStatements() {
+			Statement[] open;
+			synchronized (statements) {
+				open = statements.toArray(new Statement[statements.size()]);
+				statements.clear();
+			}
+			for (Statement stmt : open) {
+				if (!isStatementClosed(stmt)) {
+					try {
+						stmt.close();
+					} catch (SQLException e) {
+						log.warn("fail to close JDBC Statement left open on returned Connection", e);
+					}
+				}
+			}
+		}
+
+		private boolean isStatementClosed(Statement stmt) {
+			try {
+				return stmt.isClosed();
+			} catch (SQLException e) {
+				return false;
+			}
+		}
+
+		public PreparedStatement prepareStatement(String sql) throws SQLException {
+			checkOpen();
+			if (entry.statementCache == null) {
+				return track(target.prepareStatement(sql));
+			}
+			return prepareCachedStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+		}
+
+		public PreparedStatement prepareStatement(String sql, int resultSetType, int resultSetConcurrency)
+				throws SQLException {
+			checkOpen();
+			if (entry.statementCache == null) {
+				return track(target.prepareStatement(sql, resultSetType, resultSetConcurrency));
+			}
+			return prepareCachedStatement(sql, resultSetType, resultSetConcurrency);
+		}
+
+		private PreparedStatement prepareCachedStatement(String sql, int resultSetType, int resultSetConcurrency)
+				throws SQLException {
+			StatementKey key = new StatementKey(sql, resultSetType, resultSetConcurrency);
+			PreparedStatement stmt = entry.statementCache.take(key);
+			if (stmt == null) {
+				stmt = target.prepareStatement(sql, resultSetType, resultSetConcurrency);
+			}
+			return track(new CachedPreparedStatement(this, key, stmt));
+		}
+
+		public void abort(Executor executor) throws SQLException {
+			checkOpen();
+			target.abort(executor);
+		}
+
+		public void clearWarnings() throws SQLException {
+			checkOpen();
+			target.clearWarnings();
+		}
+
+		public void commit() throws SQLException {
+			checkOpen();
+			target.commit();
+		}
+
+		public Array createArrayOf(String typeName, Object[] elements) throws SQLException {
+			checkOpen();
+			return target.createArrayOf(typeName, elements);
+		}
+
+		public Blob createBlob() throws SQLException {
+			checkOpen();
+			return target.createBlob();
+		}
+
+		public Clob createClob() throws SQLException {
+			checkOpen();
+			return target.createClob();
+		}
+
+		public NClob createNClob() throws SQLException {
+			checkOpen();
+			return target.createNClob();
+		}
+
+		public SQLXML createSQLXML() throws SQLException {
+			checkOpen();
+			return target.createSQLXML();
+		}
+
+		public Statement createStatement() throws SQLException {
+			checkOpen();
+			return track(target.createStatement());
+		}
+
+		public Statement createStatement(int resultSetType, int resultSetConcurrency) throws SQLException {
+			checkOpen();
+			return track(target.createStatement(resultSetType, resultSetConcurrency));
+		}
+
+		public Statement createStatement(int resultSetType, int resultSetConcurrency, int resultSetHoldability) throws SQLException {
+			checkOpen();
+			return track(target.createStatement(resultSetType, resultSetConcurrency, resultSetHoldability));
+		}
+
+		public Struct createStruct(String typeName, Object[] attributes) throws SQLException {
+			checkOpen();
+			return target.createStruct(typeName, attributes);
+		}
+
+		public boolean getAutoCommit() throws SQLException {
+			checkOpen();
+			return target.getAutoCommit();
+		}
+
+		public String getCatalog() throws SQLException {
+			checkOpen();
+			return target.getCatalog();
+		}
+
+		public Properties getClientInfo() throws SQLException {
+			checkOpen();
+			return target.getClientInfo();
+		}
+
+		public String getClientInfo(String name) throws SQLException {
+			checkOpen();
+			return target.getClientInfo(name);
+		}
+
+		public int getHoldability() throws SQLException {
+			checkOpen();
+			return target.getHoldability();
+		}
+
+		public DatabaseMetaData getMetaData() throws SQLException {
+			checkOpen();
+			return target.getMetaData();
+		}
+
+		public int getNetworkTimeout() throws SQLException {
+			checkOpen();
+			return target.getNetworkTimeout();
+		}
+
+		public String getSchema() throws SQLException {
+			checkOpen();
+			return target.getSchema();
+		}
+
+		public int getTransactionIsolation() throws SQLException {
+			checkOpen();
+			return target.getTransactionIsolation();
+		}
+
+		public Map<String, Class<?>> getTypeMap() throws SQLException {
+			checkOpen();
+			return target.getTypeMap();
+		}
+
+		public SQLWarning getWarnings() throws SQLException {
+			checkOpen();
+			return target.getWarnings();
+		}
+
+		public boolean isReadOnly() throws SQLException {
+			checkOpen();
+			return target.isReadOnly();
+		}
+
+		public boolean isWrapperFor(Class<?> iface) throws SQLException {
+			checkOpen();
+			return target.isWrapperFor(iface);
+		}
+
+		public String nativeSQL(String sql) throws SQLException {
+			checkOpen();
+			return target.nativeSQL(sql);
+		}
+
+		public CallableStatement prepareCall(String sql) throws SQLException {
+			checkOpen();
+			return track(target.prepareCall(sql));
+		}
+
+		public CallableStatement prepareCall(String sql, int resultSetType, int resultSetConcurrency) throws SQLException {
+			checkOpen();
+			return track(target.prepareCall(sql, resultSetType, resultSetConcurrency));
+		}
+
+		public CallableStatement prepareCall(String sql, int resultSetType, int resultSetConcurrency, int resultSetHoldability) throws SQLException {
+			checkOpen();
+			return track(target.prepareCall(sql, resultSetType, resultSetConcurrency, resultSetHoldability));
+		}
+
+		public PreparedStatement prepareStatement(String sql, int[] columnIndexes) throws SQLException {
+			checkOpen();
+			return track(target.prepareStatement(sql, columnIndexes));
+		}
+
+		public PreparedStatement prepareStatement(String sql, String[] columnNames) throws SQLException {
+			checkOpen();
+			return track(target.prepareStatement(sql, columnNames));
+		}
+
+		public PreparedStatement prepareStatement(String sql, int autoGeneratedKeys) throws SQLException {
+			checkOpen();
+			return track(target.prepareStatement(sql, autoGeneratedKeys));
+		}
+
+		public PreparedStatement prepareStatement(String sql, int resultSetType, int resultSetConcurrency, int resultSetHoldability) throws SQLException {
+			checkOpen();
+			return track(target.prepareStatement(sql, resultSetType, resultSetConcurrency, resultSetHoldability));
+		}
+
+		public void releaseSavepoint(Savepoint savepoint) throws SQLException {
+			checkOpen();
+			target.releaseSavepoint(savepoint);
+		}
+
+		public void rollback() throws SQLException {
+			checkOpen();
+			target.rollback();
+		}
+
+		public void rollback(Savepoint savepoint) throws SQLException {
+			checkOpen();
+			target.rollback(savepoint);
+		}
+
+		public void setAutoCommit(boolean autoCommit) throws SQLException {
+			checkOpen();
+			entry.stateChanged = true;
+			target.setAutoCommit(autoCommit);
+		}
+
+		public void setCatalog(String catalog) throws SQLException {
+			checkOpen();
+			target.setCatalog(catalog);
+		}
+
+		public void setClientInfo(Properties properties) throws SQLClientInfoException {
+			checkOpenClientInfo();
+			target.setClientInfo(properties);
+		}
+
+		public void setClientInfo(String name, String value) throws SQLClientInfoException {
+			checkOpenClientInfo();
+			target.setClientInfo(name, value);
+		}
+
+		public void setHoldability(int holdability) throws SQLException {
+			checkOpen();
+			target.setHoldability(holdability);
+		}
+
+		public void setNetworkTimeout(Executor executor, int milliseconds) throws SQLException {
+			checkOpen();
+			target.setNetworkTimeout(executor, milliseconds);
+		}
+
+		public void setReadOnly(boolean readOnly) throws SQLException {
+			checkOpen();
+			entry.stateChanged = true;
+			target.setReadOnly(readOnly);
+		}
+
+		public Savepoint setSavepoint() throws SQLException {
+			checkOpen();
+			return target.setSavepoint();
+		}
+
+		public Savepoint setSavepoint(String name) throws SQLException {
+			checkOpen();
+			return target.setSavepoint(name);
+		}
+
+		public void setSchema(String schema) throws SQLException {
+			checkOpen();
+			target.setSchema(schema);
+		}
+
+		public void setTransactionIsolation(int level) throws SQLException {
+			checkOpen();
+			entry.stateChanged = true;
+			target.setTransactionIsolation(level);
+		}
+
+		public void setTypeMap(Map<String, Class<?>> map) throws SQLException {
+			checkOpen();
+			target.setTypeMap(map);
+		}
+
+		public <T> T unwrap(Class<T> iface) throws SQLException {
+			checkOpen();
+			return target.unwrap(iface);
+		}
+	}
+
+	/**
+	 * Prepared statement handed out from statement cache, parked in cache again on close.
+	 */
+	class CachedPreparedStatement extends DelegatingPreparedStatement {
+		private final PooledConnection connection;
+		private final StatementKey key;
+		private volatile boolean closed = false;
+
+		CachedPreparedStatement(PooledConnection connection, StatementKey key, PreparedStatement target) {
+			super(target);
+			this.connection = connection;
+			this.key = key;
+		}
+
+		public void close() throws SQLException {
+			if (closed) return;
+
+			closed = true;
+			if (connection.returned.get()) {
+				target.close();
+			} else {
+				connection.entry.statementCache.put(key, target);
+			}
+		}
+
+		public boolean isClosed() throws SQLException {
+			return closed || target.isClosed();
+		}
+
+		public Connection getConnection() throws SQLException {
+			checkOpen();
+			return connection;
+		}
+
+		/**
+		 * Once closed the physical statement is parked in the cache or handed to the next borrower.
+		 */
+		private void checkOpen() throws SQLException {
+			if (closed) {
+				throw new SQLException("statement is closed");
+			}
+		}
+
+		public void addBatch() throws SQLException {
+			checkOpen();
+			target.addBatch();
+		}
+
+		public void addBatch(String sql) throws SQLException {
+			checkOpen();
+			target.addBatch(sql);
+		}
+
+		public void cancel() throws SQLException {
+			checkOpen();
+			target.cancel();
+		}
+
+		public void clearBatch() throws SQLException {
+			checkOpen();
+			target.clearBatch();
+		}
+
+		public void clearParameters() throws SQLException {
+			checkOpen();
+			target.clearParameters();
+		}
+
+		public void clearWarnings() throws SQLException {
+			checkOpen();
+			target.clearWarnings();
+		}
+
+		public void closeOnCompletion() throws SQLException {
+			checkOpen();
+			target.closeOnCompletion();
+		}
+
+		public boolean execute() throws SQLException {
+			checkOpen();
+			return target.execute();
+		}
+
+		public boolean execute(String sql) throws SQLException {
+			checkOpen();
+			return target.execute(sql);
+		}
+
+		public boolean execute(String sql, int[] columnIndexes) throws SQLException {
+			checkOpen();
+			return target.execute(sql, columnIndexes);
+		}
+
+		public boolean execute(String sql, String[] columnNames) throws SQLException {
+			checkOpen();
+			return target.execute(sql, columnNames);
+		}
+
+		public boolean execute(String sql, int autoGeneratedKeys) throws SQLException {
+			checkOpen();
+			return target.execute(sql, autoGeneratedKeys);
+		}
+
+		public int[] executeBatch() throws SQLException {
+			checkOpen();
+			return target.executeBatch();
+		}
+
+		public ResultSet executeQuery() throws SQLException {
+			checkOpen();
+			return target.executeQuery();
+		}
+
+		public ResultSet executeQuery(String sql) throws SQLException {
+			checkOpen();
+			return target.executeQuery(sql);
+		}
+
+		public int executeUpdate() throws SQLException {
+			checkOpen();
+			return target.executeUpdate();
+		}
+
+		public int executeUpdate(String sql) throws SQLException {
+			checkOpen();
+			return target.executeUpdate(sql);
+		}
+
+		public int executeUpdate(String sql, int[] columnIndexes) throws SQLException {
+			checkOpen();
+			return target.executeUpdate(sql, columnIndexes);
+		}
+
+		public int executeUpdate(String sql, String[] columnNames) throws SQLException {
+			checkOpen();
+			return target.executeUpdate(sql, columnNames);
+		}
+
+		public int executeUpdate(String sql, int autoGeneratedKeys) throws SQLException {
+			checkOpen();
+			return target.executeUpdate(sql, autoGeneratedKeys);
+		}
+
+		public int getFetchDirection() throws SQLException {
+			checkOpen();
+			return target.getFetchDirection();
+		}
+
+		public int getFetchSize() throws SQLException {
+			checkOpen();
+			return target.getFetchSize();
+		}
+
+		public ResultSet getGeneratedKeys() throws SQLException {
+			checkOpen();
+			return target.getGeneratedKeys();
+		}
+
+		public int getMaxFieldSize() throws SQLException {
+			checkOpen();
+			return target.getMaxFieldSize();
+		}
+
+		public int getMaxRows() throws SQLException {
+			checkOpen();
+			return target.getMaxRows();
+		}
+
+		public ResultSetMetaData getMetaData() throws SQLException {
+			checkOpen();
+			return target.getMetaData();
+		}
+
+		public boolean getMoreResults() throws SQLException {
+			checkOpen();
+			return target.getMoreResults();
+		}
+
+		public boolean getMoreResults(int current) throws SQLException {
+			checkOpen();
+			return target.getMoreResults(current);
+		}
+
+		public ParameterMetaData getParameterMetaData() throws SQLException {
+			checkOpen();
+			return target.getParameterMetaData();
+		}
+
+		public int getQueryTimeout() throws SQLException {
+			checkOpen();
+			return target.getQueryTimeout();
+		}
+
+		public ResultSet getResultSet() throws SQLException {
+			checkOpen();
+			return target.getResultSet();
+		}
+
+		public int getResultSetConcurrency() throws SQLException {
+			checkOpen();
+			return target.getResultSetConcurrency();
+		}
+
+		public int getResultSetHoldability() throws SQLException {
+			checkOpen();
+			return target.getResultSetHoldability();
+		}
+
+		public int getResultSetType() throws SQLException {
+			checkOpen();
+			return target.getResultSetType();
+		}
+
+		public int getUpdateCount() throws SQLException {
+			checkOpen();
+			return target.getUpdateCount();
+		}
+
+		public SQLWarning getWarnings() throws SQLException {
+			checkOpen();
+			return target.getWarnings();
+		}
+
+		public boolean isCloseOnCompletion() throws SQLException {
+			checkOpen();
+			return target.isCloseOnCompletion();
+		}
+
+		public boolean isPoolable() throws SQLException {
+			checkOpen();
+			return target.isPoolable();
+		}
+
+		public boolean isWrapperFor(Class<?> iface) throws SQLException {
+			checkOpen();
+			return target.isWrapperFor(iface);
+		}
+
+		public void setArray(int parameterIndex, Array x) throws SQLException {
+			checkOpen();
+			target.setArray(parameterIndex, x);
+		}
+
+		public void setAsciiStream(int parameterIndex, InputStream x) throws SQLException {
+			checkOpen();
+			target.setAsciiStream(parameterIndex, x);
+		}
+
+		public void setAsciiStream(int parameterIndex, InputStream x, int length) throws SQLException {
+			checkOpen();
+			target.setAsciiStream(parameterIndex, x, length);
+		}
+
+		public void setAsciiStream(int parameterIndex, InputStream x, long length) throws SQLException {
+			checkOpen();
+			target.setAsciiStream(parameterIndex, x, length);
+		}
+
+		public void setBigDecimal(int parameterIndex, BigDecimal x) throws SQLException {
+			checkOpen();
+			target.setBigDecimal(parameterIndex, x);
+		}
+
+		public void setBinaryStream(int parameterIndex, InputStream x) throws SQLException {
+			checkOpen();
+			target.setBinaryStream(parameterIndex, x);
+		}
+
+		public void setBinaryStream(int parameterIndex, InputStream x, int length) throws SQLException {
+			checkOpen();
+			target.setBinaryStream(parameterIndex, x, length);
+		}
+
+		public void setBinaryStream(int parameterIndex, InputStream x, long length) throws SQLException {
+			checkOpen();
+			target.setBinaryStream(parameterIndex, x, length);
+		}
+
+		public void setBlob(int parameterIndex, InputStream x) throws SQLException {
+			checkOpen();
+			target.setBlob(parameterIndex, x);
+		}
+
+		public void setBlob(int parameterIndex, Blob x) throws SQLException {
+			checkOpen();
+			target.setBlob(parameterIndex, x);
+		}
+
+		public void setBlob(int parameterIndex, InputStream x, long length) throws SQLException {
+			checkOpen();
+			target.setBlob(parameterIndex, x, length);
+		}
+
+		public void setBoolean(int parameterIndex, boolean x) throws SQLException {
+			checkOpen();
+			target.setBoolean(parameterIndex, x);
+		}
+
+		public void setByte(int parameterIndex, byte x) throws SQLException {
+			checkOpen();
+			target.setByte(parameterIndex, x);
+		}
+
+		public void setBytes(int parameterIndex, byte[] x) throws SQLException {
+			checkOpen();
+			target.setBytes(parameterIndex, x);
+		}
+
+		public void setCharacterStream(int parameterIndex, Reader x) throws SQLException {
+			checkOpen();
+			target.setCharacterStream(parameterIndex, x);
+		}
+
+		public void setCharacterStream(int parameterIndex, Reader x, int length) throws SQLException {
+			checkOpen();
+			target.setCharacterStream(parameterIndex, x, length);
+		}
+
+		public void setCharacterStream(int parameterIndex, Reader x, long length) throws SQLException {
+			checkOpen();
+			target.setCharacterStream(parameterIndex, x, length);
+		}
+
+		public void setClob(int parameterIndex, Reader x) throws SQLException {
+			checkOpen();
+			target.setClob(parameterIndex, x);
+		}
+
+		public void setClob(int parameterIndex, Clob x) throws SQLException {
+			checkOpen();
+			target.setClob(parameterIndex, x);
+		}
+
+		public void setClob(int parameterIndex, Reader x, long length) throws SQLException {
+			checkOpen();
+			target.setClob(parameterIndex, x, length);
+		}
+
+		public void setCursorName(String name) throws SQLException {
+			checkOpen();
+			target.setCursorName(name);
+		}
+
+		public void setDate(int parameterIndex, Date x) throws SQLException {
+			checkOpen();
+			target.setDate(parameterIndex, x);
+		}
+
+		public void setDate(int parameterIndex, Date x, Calendar cal) throws SQLException {
+			checkOpen();
+			target.setDate(parameterIndex, x, cal);
+		}
+
+		public void setDouble(int parameterIndex, double x) throws SQLException {
+			checkOpen();
+			target.setDouble(parameterIndex, x);
+		}
+
+		public void setEscapeProcessing(boolean enable) throws SQLException {
+			checkOpen();
+			target.setEscapeProcessing(enable);
+		}
+
+		public void setFetchDirection(int direction) throws SQLException {
+			checkOpen();
+			target.setFetchDirection(direction);
+		}
+
+		public void setFetchSize(int rows) throws SQLException {
+			checkOpen();
+			target.setFetchSize(rows);
+		}
+
+		public void setFloat(int parameterIndex, float x) throws SQLException {
+			checkOpen();
+			target.setFloat(parameterIndex, x);
+		}
+
+		public void setInt(int parameterIndex, int x) throws SQLException {
+			checkOpen();
+			target.setInt(parameterIndex, x);
+		}
+
+		public void setLong(int parameterIndex, long x) throws SQLException {
+			checkOpen();
+			target.setLong(parameterIndex, x);
+		}
+
+		public void setMaxFieldSize(int max) throws SQLException {
+			checkOpen();
+			target.setMaxFieldSize(max);
+		}
+
+		public void setMaxRows(int max) throws SQLException {
+			checkOpen();
+			target.setMaxRows(max);
+		}
+
+		public void setNCharacterStream(int parameterIndex, Reader x) throws SQLException {
+			checkOpen();
+			target.setNCharacterStream(parameterIndex, x);
+		}
+
+		public void setNCharacterStream(int parameterIndex, Reader x, long length) throws SQLException {
+			checkOpen();
+			target.setNCharacterStream(parameterIndex, x, length);
+		}
+
+		public void setNClob(int parameterIndex, Reader x) throws SQLException {
+			checkOpen();
+			target.setNClob(parameterIndex, x);
+		}
+
+		public void setNClob(int parameterIndex, NClob x) throws SQLException {
+			checkOpen();
+			target.setNClob(parameterIndex, x);
+		}
+
+		public void setNClob(int parameterIndex, Reader x, long length) throws SQLException {
+			checkOpen();
+			target.setNClob(parameterIndex, x, length);
+		}
+
+		public void setNString(int parameterIndex, String x) throws SQLException {
+			checkOpen();
+			target.setNString(parameterIndex, x);
+		}
+
+		public void setNull(int parameterIndex, int sqlType) throws SQLException {
+			checkOpen();
+			target.setNull(parameterIndex, sqlType);
+		}
+
+		public void setNull(int parameterIndex, int sqlType, String typeName) throws SQLException {
+			checkOpen();
+			target.setNull(parameterIndex, sqlType, typeName);
+		}
+
+		public void setObject(int parameterIndex, Object x) throws SQLException {
+			checkOpen();
+			target.setObject(parameterIndex, x);
+		}
+
+		public void setObject(int parameterIndex, Object x, int targetSqlType) throws SQLException {
+			checkOpen();
+			target.setObject(parameterIndex, x, targetSqlType);
+		}
+
+		public void setObject(int parameterIndex, Object x, int targetSqlType, int scaleOrLength) throws SQLException {
+			checkOpen();
+			target.setObject(parameterIndex, x, targetSqlType, scaleOrLength);
+		}
+
+		public void setPoolable(boolean poolable) throws SQLException {
+			checkOpen();
+			target.setPoolable(poolable);
+		}
+
+		public void setQueryTimeout(int seconds) throws SQLException {
+			checkOpen();
+			target.setQueryTimeout(seconds);
+		}
+
+		public void setRef(int parameterIndex, Ref x) throws SQLException {
+			checkOpen();
+			target.setRef(parameterIndex, x);
+		}
+
+		public void setRowId(int parameterIndex, RowId x) throws SQLException {
+			checkOpen();
+			target.setRowId(parameterIndex, x);
+		}
+
+		public void setSQLXML(int parameterIndex, SQLXML x) throws SQLException {
+			checkOpen();
+			target.setSQLXML(parameterIndex, x);
+		}
+
+		public void setShort(int parameterIndex, short x) throws SQLException {
+			checkOpen();
+			target.setShort(parameterIndex, x);
+		}
+
+		public void setString(int parameterIndex, String x) throws SQLException {
+			checkOpen();
+			target.setString(parameterIndex, x);
+		}
+
+		public void setTime(int parameterIndex, Time x) throws SQLException {
+			checkOpen();
+			target.setTime(parameterIndex, x);
+		}
+
+		public void setTime(int parameterIndex, Time x, Calendar cal) throws SQLException {
+			checkOpen();
+			target.setTime(parameterIndex, x, cal);
+		}
+
+		public void setTimestamp(int parameterIndex, Timestamp x) throws SQLException {
+			checkOpen();
+			target.setTimestamp(parameterIndex, x);
+		}
+
+		public void setTimestamp(int parameterIndex, Timestamp x, Calendar cal) throws SQLException {
+			checkOpen();
+			target.setTimestamp(parameterIndex, x, cal);
+		}
+
+		public void setURL(int parameterIndex, URL x) throws SQLException {
+			checkOpen();
+			target.setURL(parameterIndex, x);
+		}
+
+		public void setUnicodeStream(int parameterIndex, InputStream x, int length) throws SQLException {
+			checkOpen();
+			target.setUnicodeStream(parameterIndex, x, length);
+		}
+
+		public <T> T unwrap(Class<T> iface) throws SQLException {
+			checkOpen();
+			return target.unwrap(iface);
+		}
+	}
+}
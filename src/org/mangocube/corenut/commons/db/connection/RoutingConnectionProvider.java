@@ -0,0 +1,233 @@
+/**
+ * Copyright Mangocity Limited (c) 2010. All rights reserved.
+ * This software is proprietary to and embodies the confidential
+ * technology of Mangocity Limited.  Possession, use, or copying
+ * of this software and media is authorized only pursuant to a
+ * valid written license from Mangocity or an authorized sublicensor.
+ */
+package org.mangocube.corenut.commons.db.connection;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.sql.DataSource;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+/**
+ * Read/write splitting connection provider. Writes go to the primary provider, reads are balanced over
+ * the replica providers, either round-robin or to the replica with the least outstanding connections.
+ * Each target is a pluggable provider, e.g. DataSourceConnectionProvider, JNDIConnectionProvider or
+ * PooledConnectionProvider.
+ * <p/>
+ * Replicas lag behind the primary, so a thread that just wrote may not see its own change on a replica.
+ * With a positive <code>readYourWritesWindow</code>, reads of a thread go to the primary for that many
+ * milliseconds after it released a primary connection. When a replica fails to give a connection, the
+ * next one is tried, and the primary is used when all fail.
+ * <pre>
+ * RoutingConnectionProvider provider = RoutingConnectionProvider.fromJndi("jdbc/primary",
+ *         "jdbc/replica1", "jdbc/replica2");
+ * provider.setReadYourWritesWindow(2000);
+ * JdbcTemplate template = new JdbcTemplate(provider);
+ * </pre>
+ *
+ * @since 1.0
+ */
+public class RoutingConnectionProvider implements IReadWriteConnectionProvider {
+	private static Log log = LogFactory.getLog(RoutingConnectionProvider.class);
+
+	public enum BalanceStrategy {
+		ROUND_ROBIN,
+		LEAST_OUTSTANDING
+	}
+
+	private final IConnectionProvider primary;
+	private final IConnectionProvider[] replicas;
+	private final AtomicInteger[] outstanding;
+	private final AtomicInteger cursor = new AtomicInteger(0);
+
+	private BalanceStrategy balanceStrategy = BalanceStrategy.LEAST_OUTSTANDING;
+	private long readYourWritesWindow = 0;
+	private final ThreadLocal<long[]> lastWriteTime = new ThreadLocal<long[]>() {
+		protected long[] initialValue() {
+			return new long[]{0L};
+		}
+	};
+
+	public RoutingConnectionProvider(IConnectionProvider primary, List<? extends IConnectionProvider> replicas) {
+		if (primary == null) {
+			throw new IllegalArgumentException("primary connection provider is required");
+		}
+		this.primary = primary;
+		this.replicas = replicas.toArray(new IConnectionProvider[replicas.size()]);
+		this.outstanding = new AtomicInteger[this.replicas.length];
+		for (int i = 0; i < outstanding.length; i++) {
+			outstanding[i] = new AtomicInteger(0);
+		}
+	}
+
+	public RoutingConnectionProvider(DataSource primary, DataSource... replicas) {
+		this(new DataSourceConnectionProvider(primary), toProviders(replicas));
+	}
+
+	public static RoutingConnectionProvider fromJndi(String primary, String... replicas) {
+		List<IConnectionProvider> providers = new ArrayList<IConnectionProvider>(replicas.length);
+		for (String replica : replicas) {
+			providers.add(new JNDIConnectionProvider(replica));
+		}
+		return new RoutingConnectionProvider(new JNDIConnectionProvider(primary), providers);
+	}
+
+	private static List<IConnectionProvider> toProviders(DataSource[] dataSources) {
+		List<IConnectionProvider> providers = new ArrayList<IConnectionProvider>(dataSources.length);
+		for (DataSource ds : dataSources) {
+			providers.add(new DataSourceConnectionProvider(ds));
+		}
+		return providers;
+	}
+
+	public BalanceStrategy getBalanceStrategy() {
+		return balanceStrategy;
+	}
+
+	public void setBalanceStrategy(BalanceStrategy balanceStrategy) {
+		this.balanceStrategy = balanceStrategy;
+	}
+
+	public long getReadYourWritesWindow() {
+		return readYourWritesWindow;
+	}
+
+	/**
+	 * @param readYourWritesWindow milliseconds a thread keeps reading from primary after a write, 0 to disable.
+	 */
+	public void setReadYourWritesWindow(long readYourWritesWindow) {
+		this.readYourWritesWindow = readYourWritesWindow;
+	}
+
+	/**
+	 * @return connection to primary, releasing it starts the read-your-writes window of current thread.
+	 */
+	public Connection getConnection() throws SQLException {
+		Connection con = primary.getConnection();
+		if (con == null || readYourWritesWindow <= 0) {
+			return con;
+		}
+		return new PrimaryConnection(con);
+	}
+
+	public Connection getReadConnection() throws SQLException {
+		if (replicas.length == 0 || isInWriteWindow()) {
+			return primary.getConnection();
+		}
+
+		int start = selectReplica();
+		for (int i = 0; i < replicas.length; i++) {
+			int index = (start + i) % replicas.length;
+			outstanding[index].incrementAndGet();
+			try {
+				Connection con = replicas[index].getConnection();
+				if (con != null) {
+					return new ReplicaConnection(con, outstanding[index]);
+				}
+				outstanding[index].decrementAndGet();
+			} catch (SQLException e) {
+				outstanding[index].decrementAndGet();
+				log.warn("fail to get JDBC Connection from replica " + index + ", try next", e);
+			} catch (RuntimeException e) {
+				outstanding[index].decrementAndGet();
+				log.warn("fail to get JDBC Connection from replica " + index + ", try next", e);
+			}
+		}
+
+		log.warn("no replica available, read from primary");
+		return primary.getConnection();
+	}
+
+	/**
+	 * Start the read-your-writes window of current thread, for writes not done by connections of this provider.
+	 */
+	public void markWrite() {
+		lastWriteTime.get()[0] = System.currentTimeMillis();
+	}
+
+	private boolean isInWriteWindow() {
+		long window = readYourWritesWindow;
+		return window > 0 && System.currentTimeMillis() - lastWriteTime.get()[0] < window;
+	}
+
+	private int selectReplica() {
+		int next = cursor.getAndIncrement() & Integer.MAX_VALUE;
+		int start = next % replicas.length;
+		if (balanceStrategy == BalanceStrategy.ROUND_ROBIN) {
+			return start;
+		}
+
+		// least outstanding, ties broken by the rotating start so equal replicas share the load
+		int best = start;
+		int min = outstanding[start].get();
+		for (int i = 1; i < replicas.length && min > 0; i++) {
+			int index = (start + i) % replicas.length;
+			int count = outstanding[index].get();
+			if (count < min) {
+				min = count;
+				best = index;
+			}
+		}
+		return best;
+	}
+
+	public int getReplicaCount() {
+		return replicas.length;
+	}
+
+	/**
+	 * @return connections borrowed from the replica and not yet closed.
+	 */
+	public int getOutstandingCount(int replicaIndex) {
+		return outstanding[replicaIndex].get();
+	}
+
+	private class PrimaryConnection extends DelegatingConnection {
+		PrimaryConnection(Connection target) {
+			super(target);
+		}
+
+		public void close() throws SQLException {
+			try {
+				target.close();
+			} finally {
+				markWrite();
+			}
+		}
+	}
+
+	private static class ReplicaConnection extends DelegatingConnection {
+		private final AtomicInteger outstanding;
+		private final AtomicBoolean closed = new AtomicBoolean(false);
+
+		ReplicaConnection(Connection target, AtomicInteger outstanding) {
+			super(target);
+			this.outstanding = outstanding;
+		}
+
+		public void close() throws SQLException {
+			if (closed.compareAndSet(false, true)) {
+				try {
+					target.close();
+				} finally {
+					outstanding.decrementAndGet();
+				}
+			}
+		}
+
+		public boolean isClosed() throws SQLException {
+			return closed.get() || target.isClosed();
+		}
+	}
+}
@@ -10,13 +10,29 @@ package org.mangocube.corenut.commons.db.log;
 import java.io.PrintWriter;
 import java.io.StringWriter;
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Timer;
+import java.util.TimerTask;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiFunction;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
 
 /**
- * TODO dengtailin: Change to the actual description of this class
+ * Connection leak detector. Counts opens and closes per physical connection of every data source,
+ * and reports connections held longer than <code>holdThreshold</code>.
+ * <p/>
+ * It's designed to be always on: entries live in a ConcurrentHashMap keyed by data source id and
+ * connection identity, the open stack trace is captured only for 1 of <code>sampleRate</code> opens
+ * and rendered lazily when the logging info is retrieved. A daemon reaper checks the entries every
+ * <code>reaperInterval</code> milliseconds, logs a warning with the current stack of the holder thread
+ * for every connection held past the threshold, and prunes balanced entries.
+ *
  * @version   Revision History
  * <pre>
  * Author     Version       Date        Changes
@@ -26,133 +42,236 @@ import java.util.concurrent.atomic.AtomicInteger;
  * @since 1.0
  */
 public class ConnectionLogger {
-    private static final Map<String, LogInfo> OPEN_CONN_CACHE = new HashMap<String, LogInfo>();
-    private static final Map<String, LogInfo> CLOSE_CONN_CACHE = new HashMap<String, LogInfo>();
-    private static final int DEFAULT_CACHE_SIZE = 100;
-    private static final int DEFAULT_MAX_CACHE_SIZE = 5000;
-    
-    private static volatile boolean turnOnLog = true;
-    private static int clearCount = 0;
-    
-    public static synchronized void turnOnLog(boolean isOn) {
-    	turnOnLog = isOn;
-    	OPEN_CONN_CACHE.clear();
-    	CLOSE_CONN_CACHE.clear();
-    }
-
-    private static class LogInfo {
-    	private AtomicInteger count = new AtomicInteger(0);
-    	String stackTrace;
-    	
-    	public void increase() {
-    		count.incrementAndGet();
-    	}
-    	
-    	public int getCount() {
-    		return count.get();
-    	}
-    }
-    
-    public static void openConnectionLog(Object conn, String id) {
-    	if (!turnOnLog) return;
-    	
-    	synchronized(ConnectionLogger.class) {
-	        //logging
-	        String key = "[" + id + "]" + conn.hashCode();
-	       
-	        LogInfo log = OPEN_CONN_CACHE.get(key);
-	        if (log == null) {
-	        	log = new LogInfo();
-	        	StringWriter sw = new StringWriter();
-	            PrintWriter pw = new PrintWriter(sw, true);
-	            new Throwable().printStackTrace(pw);
-	            log.stackTrace = sw.toString();
-	        }
-	        
-	        log.increase();  
-	        OPEN_CONN_CACHE.put(key, log);
-	        
-	        clearCount ++;
-	        if (clearCount % DEFAULT_CACHE_SIZE == 0) {
-	        	clearCount = 0;
-	        	clear();
-	        }
-    	}
-    }
-    
-    private static void clear() {
-    	List<String> rmKeys = new ArrayList<String>();
-    	for (Map.Entry<String, LogInfo> entry : OPEN_CONN_CACHE.entrySet()) {
-             String keyValue = (String) entry.getKey();
-             LogInfo openLog = entry.getValue();
-             LogInfo closeLog = CLOSE_CONN_CACHE.get(keyValue);
-             
-             if (closeLog != null && openLog.getCount() == closeLog.getCount()) {
-            	 rmKeys.add(keyValue);
-             }
-        }
-    	for (String key : rmKeys) {
-    		OPEN_CONN_CACHE.remove(key);
-    		CLOSE_CONN_CACHE.remove(key);
-    	}
-    	
-    	if (OPEN_CONN_CACHE.size() >= DEFAULT_MAX_CACHE_SIZE) {
-    		OPEN_CONN_CACHE.clear();
-    		CLOSE_CONN_CACHE.clear();
-    	}
-    }
-
-    public static void closeConnectionLog(Object conn, String id) {
-    	if (!turnOnLog) return;
-
-    	synchronized(ConnectionLogger.class) {
-	    	 //logging
-	        String key = "[" + id + "]" + conn.hashCode();
-	       
-	        LogInfo log = CLOSE_CONN_CACHE.get(key);
-	        if (log == null) {
-	        	log = new LogInfo();
-	        }
-	        
-	        log.increase();
-	        CLOSE_CONN_CACHE.put(key, log);
-    	}
-    }
-
-    public static List<String> retrieveLoggingInfo() {
-        List<String> infos = new ArrayList<String>();
-        for (Map.Entry<String, LogInfo> entry : OPEN_CONN_CACHE.entrySet()) {
-        	StringBuffer info = new StringBuffer();
-            String keyValue = (String) entry.getKey();
-            LogInfo openLog = entry.getValue();
-            LogInfo closeLog = CLOSE_CONN_CACHE.get(keyValue);
-            
-            info.append("Connection[").append(keyValue).append("]").append(" Opened:[").append(openLog.getCount()).append("]times");
-            info.append(" Closed:[").append(closeLog == null ? 0 : closeLog.getCount()).append("]times<br>");
-            if (closeLog == null || closeLog.getCount() != openLog.getCount()) {
-            	info.append("First Open StatckTrace:<br>" + openLog.stackTrace); 
-            }
-            
-            infos.add(info.toString());
-        }
-        return infos;
-    }
-    
-    public static List<String> retrieveAbnormalLoggingInfo() {
-    	List<String> infos = new ArrayList<String>();
-        for (Map.Entry<String, LogInfo> entry : OPEN_CONN_CACHE.entrySet()) {
-            StringBuffer info = new StringBuffer();
-            String keyValue = (String) entry.getKey();
-            LogInfo openLog = entry.getValue();
-            LogInfo closeLog = CLOSE_CONN_CACHE.get(keyValue);
-            
-            if (closeLog == null || openLog.getCount() != closeLog.getCount()) {                
-                info.append("Connection[").append(keyValue).append("]").append(" Opened:[").append(openLog.getCount()).append("]times");
-                info.append(" Closed:[").append(closeLog == null ? 0 : closeLog.getCount()).append("]times<br>");
-                info.append("First Open StatckTrace:<br>" + openLog.stackTrace); 
-                infos.add(info.toString());
-           }
-        }
-        return infos;
-    }
+	private static Log log = LogFactory.getLog(ConnectionLogger.class);
+
+	private static final ConcurrentHashMap<ConnKey, LogInfo> CONN_CACHE = new ConcurrentHashMap<ConnKey, LogInfo>();
+	private static final int DEFAULT_CACHE_SIZE = 100;
+	private static final int DEFAULT_MAX_CACHE_SIZE = 5000;
+	public static final int DEFAULT_SAMPLE_RATE = 100;
+	public static final long DEFAULT_HOLD_THRESHOLD = 60 * 1000L;
+	public static final long DEFAULT_REAPER_INTERVAL = 10 * 1000L;
+
+	private static volatile boolean turnOnLog = true;
+	private static volatile int sampleRate = DEFAULT_SAMPLE_RATE;
+	private static volatile long holdThreshold = DEFAULT_HOLD_THRESHOLD;
+	private static volatile long reaperInterval = DEFAULT_REAPER_INTERVAL;
+
+	private static final AtomicBoolean reaperStarted = new AtomicBoolean(false);
+
+	public static synchronized void turnOnLog(boolean isOn) {
+		turnOnLog = isOn;
+		CONN_CACHE.clear();
+	}
+
+	/**
+	 * @param rate capture open stack trace for 1 of <code>rate</code> opens, 1 to capture all, 0 to never capture.
+	 */
+	public static void setSampleRate(int rate) {
+		sampleRate = rate;
+	}
+
+	/**
+	 * @param threshold milliseconds a connection may be held before reported by reaper.
+	 */
+	public static void setHoldThreshold(long threshold) {
+		holdThreshold = threshold;
+	}
+
+	/**
+	 * @param interval milliseconds between reaper runs, takes effect before the first connection is logged.
+	 */
+	public static void setReaperInterval(long interval) {
+		reaperInterval = interval;
+	}
+
+	private static final class ConnKey {
+		private final String id;
+		private final int identity;
+
+		ConnKey(String id, Object conn) {
+			this.id = id;
+			this.identity = System.identityHashCode(conn);
+		}
+
+		public int hashCode() {
+			return identity * 31 + (id == null ? 0 : id.hashCode());
+		}
+
+		public boolean equals(Object obj) {
+			if (this == obj) return true;
+			if (!(obj instanceof ConnKey)) return false;
+			ConnKey key = (ConnKey) obj;
+			return identity == key.identity && (id == null ? key.id == null : id.equals(key.id));
+		}
+
+		public String toString() {
+			return "[" + id + "]" + Integer.toHexString(identity);
+		}
+	}
+
+	private static class LogInfo {
+		private final AtomicInteger openCount = new AtomicInteger(0);
+		private final AtomicInteger closeCount = new AtomicInteger(0);
+		volatile Throwable openTrace;
+		volatile long lastOpenTime;
+		volatile Thread holder;
+		volatile boolean reported;
+
+		void open(boolean sample) {
+			lastOpenTime = System.currentTimeMillis();
+			holder = Thread.currentThread();
+			reported = false;
+			if (sample && openTrace == null) {
+				openTrace = new Throwable("Connection opened by " + holder.getName());
+			}
+			openCount.incrementAndGet();
+		}
+
+		void close() {
+			holder = null;
+			closeCount.incrementAndGet();
+		}
+
+		int getOpenCount() {
+			return openCount.get();
+		}
+
+		int getCloseCount() {
+			return closeCount.get();
+		}
+
+		boolean isBalanced() {
+			return openCount.get() == closeCount.get();
+		}
+	}
+
+	public static void openConnectionLog(Object conn, String id) {
+		if (!turnOnLog) return;
+		startReaper();
+
+		int rate = sampleRate;
+		final boolean sample = rate > 0 && (rate == 1 || ThreadLocalRandom.current().nextInt(rate) == 0);
+		// counted inside compute so the reaper can't prune the entry between lookup and open
+		CONN_CACHE.compute(new ConnKey(id, conn), new BiFunction<ConnKey, LogInfo, LogInfo>() {
+			public LogInfo apply(ConnKey key, LogInfo info) {
+				if (info == null) {
+					info = new LogInfo();
+				}
+				info.open(sample);
+				return info;
+			}
+		});
+	}
+
+	public static void closeConnectionLog(Object conn, String id) {
+		if (!turnOnLog) return;
+
+		LogInfo info = CONN_CACHE.get(new ConnKey(id, conn));
+		if (info != null) {
+			info.close();
+		}
+	}
+
+	private static void startReaper() {
+		if (!reaperStarted.get() && reaperStarted.compareAndSet(false, true)) {
+			Timer reaper = new Timer("ConnectionLogger-reaper", true);
+			reaper.schedule(new TimerTask() {
+				public void run() {
+					try {
+						reap();
+					} catch (RuntimeException e) {
+						log.error("Unexpected exception on reaping connection log", e);
+					}
+				}
+			}, reaperInterval, reaperInterval);
+		}
+	}
+
+	/**
+	 * Drops the entry only while still balanced, an open racing with the reaper keeps it.
+	 */
+	private static final BiFunction<ConnKey, LogInfo, LogInfo> PRUNE_BALANCED =
+			new BiFunction<ConnKey, LogInfo, LogInfo>() {
+				public LogInfo apply(ConnKey key, LogInfo info) {
+					return info.isBalanced() ? null : info;
+				}
+			};
+
+	static void reap() {
+		if (!turnOnLog) return;
+
+		long deadline = System.currentTimeMillis() - holdThreshold;
+		boolean prune = CONN_CACHE.size() > DEFAULT_CACHE_SIZE;
+		for (Map.Entry<ConnKey, LogInfo> entry : CONN_CACHE.entrySet()) {
+			LogInfo info = entry.getValue();
+			if (info.isBalanced()) {
+				if (prune) CONN_CACHE.computeIfPresent(entry.getKey(), PRUNE_BALANCED);
+			} else if (!info.reported && info.lastOpenTime < deadline) {
+				info.reported = true;
+				log.warn(describeHeldConnection(entry.getKey(), info));
+			}
+		}
+
+		if (CONN_CACHE.size() >= DEFAULT_MAX_CACHE_SIZE) {
+			log.warn("Connection log exceeds " + DEFAULT_MAX_CACHE_SIZE + " entries, cleared");
+			CONN_CACHE.clear();
+		}
+	}
+
+	private static String describeHeldConnection(ConnKey key, LogInfo info) {
+		StringBuilder msg = new StringBuilder();
+		msg.append("Connection").append(key).append(" held for ")
+				.append(System.currentTimeMillis() - info.lastOpenTime).append("ms");
+		Thread holder = info.holder;
+		if (holder != null) {
+			msg.append(" by thread [").append(holder.getName()).append("], current stack:");
+			for (StackTraceElement element : holder.getStackTrace()) {
+				msg.append("\n\tat ").append(element);
+			}
+		}
+		if (info.openTrace != null) {
+			msg.append("\nFirst open stack trace:\n").append(renderStackTrace(info.openTrace));
+		}
+		return msg.toString();
+	}
+
+	private static String renderStackTrace(Throwable trace) {
+		if (trace == null) {
+			return "not sampled";
+		}
+		StringWriter sw = new StringWriter();
+		PrintWriter pw = new PrintWriter(sw, true);
+		trace.printStackTrace(pw);
+		return sw.toString();
+	}
+
+	public static List<String> retrieveLoggingInfo() {
+		List<String> infos = new ArrayList<String>();
+		for (Map.Entry<ConnKey, LogInfo> entry : CONN_CACHE.entrySet()) {
+			infos.add(describe(entry.getKey(), entry.getValue(), false));
+		}
+		return infos;
+	}
+
+	public static List<String> retrieveAbnormalLoggingInfo() {
+		List<String> infos = new ArrayList<String>();
+		for (Map.Entry<ConnKey, LogInfo> entry : CONN_CACHE.entrySet()) {
+			if (!entry.getValue().isBalanced()) {
+				infos.add(describe(entry.getKey(), entry.getValue(), true));
+			}
+		}
+		return infos;
+	}
+
+	private static String describe(ConnKey key, LogInfo info, boolean withTrace) {
+		int opened = info.getOpenCount();
+		int closed = info.getCloseCount();
+		StringBuilder desc = new StringBuilder();
+		desc.append("Connection").append(key).append(" Opened:[").append(opened).append("]times");
+		desc.append(" Closed:[").append(closed).append("]times<br>");
+		if (withTrace || opened != closed) {
+			desc.append("First Open StatckTrace:<br>").append(renderStackTrace(info.openTrace));
+		}
+		return desc.toString();
+	}
 }
@@ -8,16 +8,20 @@
 package org.mangocube.corenut.commons.db.log;
 
 import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
-import java.lang.reflect.Proxy;
 import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.Statement;
 
 import javax.sql.DataSource;
 
 import org.springframework.beans.factory.FactoryBean;
 
 /**
- * TODO dengtailin: Change to the actual description of this class
+ * Wraps the data source to log connection open and close, see {@link ConnectionLogger}, and statement
+ * execution, see {@link StatementLogger}. Connections, statements and result sets are wrapped by
+ * plain delegating classes, dispatching no call through reflection on the hot path.
  * @version   Revision History
  * <pre>
  * Author     Version       Date        Changes
@@ -26,11 +30,11 @@ import org.springframework.beans.factory.FactoryBean;
  * </pre>
  * @since 1.0
  */
-public class DataSourceWrapperFactoryBean implements FactoryBean, InvocationHandler {
+public class DataSourceWrapperFactoryBean implements FactoryBean {
 
 	private String dataSourceId;
 	private DataSource dataSource;
-	private Object proxy;
+	private DataSource wrapper;
 
 	public String getDataSourceId() {
 		return dataSourceId;
@@ -49,12 +53,10 @@ public class DataSourceWrapperFactoryBean implements FactoryBean, InvocationHand
 	}
 
 	public Object getObject() throws Exception {
-		if (proxy == null) {
-			proxy = Proxy.newProxyInstance(DataSourceWrapperFactoryBean.class.getClassLoader(), 
-						                   new Class[]{DataSource.class},
-						                   this);
+		if (wrapper == null) {
+			wrapper = new LoggingDataSource(dataSource, dataSourceId);
 		}
-		return proxy;
+		return wrapper;
 	}
 
 	@SuppressWarnings("rawtypes")
@@ -66,49 +68,69 @@ public class DataSourceWrapperFactoryBean implements FactoryBean, InvocationHand
 		return true;
 	}
 
-	public Object invoke(Object proxy, Method method, Object[] args)
-			throws Throwable {		
-		Object result = method.invoke(dataSource, args);
-
-		String methodName = method.getName();
-        if ("getConnection".equals(methodName)) {
-            if (result instanceof Connection) {
-            	//log on open
-    			ConnectionLogger.openConnectionLog(result, dataSourceId);
-    			
-    			//wrap connection
-    			result = Proxy.newProxyInstance(DataSourceWrapperFactoryBean.class.getClassLoader(), 
-		                   new Class[]{Connection.class},
-		                   new ConnectionWrapper((Connection) result, dataSourceId));
-    		}
+	static Object invokeTarget(Method method, Object target, Object[] args) throws Throwable {
+		try {
+			return method.invoke(target, args);
+		} catch (InvocationTargetException e) {
+			throw e.getTargetException();
 		}
-        
-        return result;
 	}
-	
-	static class ConnectionWrapper implements InvocationHandler {
-		
-		private Connection con;
-		private String dataSourceId;
-
-		public ConnectionWrapper(Connection con, String dataSourceId) {
-			this.con = con;
-			this.dataSourceId = dataSourceId;
+
+	/**
+	 * Times execute* calls of callable statement and counts batch size, typed statements are wrapped by
+	 * {@link LoggingStatement} and {@link LoggingPreparedStatement}.
+	 */
+	static class StatementWrapper implements InvocationHandler {
+
+		private final Statement stmt;
+		private final Connection connection;
+		private final StatementRecorder recorder;
+
+		public StatementWrapper(Statement stmt, Connection connection, String preparedSql) {
+			this.stmt = stmt;
+			this.connection = connection;
+			this.recorder = new StatementRecorder(preparedSql);
 		}
 
 		public Object invoke(Object proxy, Method method, Object[] args)
 				throws Throwable {
-			Object result = method.invoke(con, args);
-
 			String methodName = method.getName();
-			//log on open
-	        if ("close".equals(methodName)) {
-    			ConnectionLogger.closeConnectionLog(con, dataSourceId);
-			} 
-	        
-	        return result;
+			if (!methodName.startsWith("execute")) {
+				if ("addBatch".equals(methodName)) {
+					recorder.addBatch(args == null ? null : (String) args[0]);
+				} else if ("clearBatch".equals(methodName)) {
+					recorder.clearBatch();
+				} else if ("getConnection".equals(methodName)) {
+					return connection;
+				}
+
+				Object result = invokeTarget(method, stmt, args);
+				if (result instanceof ResultSet && "getResultSet".equals(methodName)) {
+					result = StatementRecorder.wrap((ResultSet) result, (Statement) proxy, recorder.lastStats());
+				}
+				return result;
+			}
+
+			boolean isBatch = "executeBatch".equals(methodName);
+			StatementStatistics stats = isBatch ? recorder.batchStats()
+					: recorder.statsFor(args == null ? null : (String) args[0]);
+			boolean failed = true;
+			long start = System.nanoTime();
+			try {
+				Object result = invokeTarget(method, stmt, args);
+				failed = false;
+				if (result instanceof ResultSet) {
+					result = StatementRecorder.wrap((ResultSet) result, (Statement) proxy, stats);
+				}
+				return result;
+			} finally {
+				if (isBatch) {
+					recorder.recordBatch(stats, start, failed);
+				} else {
+					StatementRecorder.recordExecution(stats, start, failed);
+				}
+			}
 		}
-		
 	}
 
 }
@@ -0,0 +1,110 @@
+/**
+ * Copyright Mangocity Limited (c) 2010. All rights reserved.
+ * This software is proprietary to and embodies the confidential
+ * technology of Mangocity Limited.  Possession, use, or copying
+ * of this software and media is authorized only pursuant to a
+ * valid written license from Mangocity or an authorized sublicensor.
+ */
+package org.mangocube.corenut.commons.db.log;
+
+import java.lang.reflect.Proxy;
+import java.sql.CallableStatement;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+import org.mangocube.corenut.commons.db.connection.DelegatingConnection;
+
+/**
+ * Logs close of the connection, and wraps statements to log their execution when
+ * {@link StatementLogger#isLogOn()}.
+ *
+ * @since 1.0
+ */
+class LoggingConnection extends DelegatingConnection {
+	private final String dataSourceId;
+
+	LoggingConnection(Connection target, String dataSourceId) {
+		super(target);
+		this.dataSourceId = dataSourceId;
+	}
+
+	public void close() throws SQLException {
+		target.close();
+		ConnectionLogger.closeConnectionLog(target, dataSourceId);
+	}
+
+	public Statement createStatement() throws SQLException {
+		return wrap(target.createStatement());
+	}
+
+	public Statement createStatement(int resultSetType, int resultSetConcurrency) throws SQLException {
+		return wrap(target.createStatement(resultSetType, resultSetConcurrency));
+	}
+
+	public Statement createStatement(int resultSetType, int resultSetConcurrency, int resultSetHoldability)
+			throws SQLException {
+		return wrap(target.createStatement(resultSetType, resultSetConcurrency, resultSetHoldability));
+	}
+
+	public PreparedStatement prepareStatement(String sql) throws SQLException {
+		return wrap(target.prepareStatement(sql), sql);
+	}
+
+	public PreparedStatement prepareStatement(String sql, int autoGeneratedKeys) throws SQLException {
+		return wrap(target.prepareStatement(sql, autoGeneratedKeys), sql);
+	}
+
+	public PreparedStatement prepareStatement(String sql, int[] columnIndexes) throws SQLException {
+		return wrap(target.prepareStatement(sql, columnIndexes), sql);
+	}
+
+	public PreparedStatement prepareStatement(String sql, String[] columnNames) throws SQLException {
+		return wrap(target.prepareStatement(sql, columnNames), sql);
+	}
+
+	public PreparedStatement prepareStatement(String sql, int resultSetType, int resultSetConcurrency)
+			throws SQLException {
+		return wrap(target.prepareStatement(sql, resultSetType, resultSetConcurrency), sql);
+	}
+
+	public PreparedStatement prepareStatement(String sql, int resultSetType, int resultSetConcurrency,
+			int resultSetHoldability) throws SQLException {
+		return wrap(target.prepareStatement(sql, resultSetType, resultSetConcurrency, resultSetHoldability), sql);
+	}
+
+	public CallableStatement prepareCall(String sql) throws SQLException {
+		return wrap(target.prepareCall(sql), sql);
+	}
+
+	public CallableStatement prepareCall(String sql, int resultSetType, int resultSetConcurrency)
+			throws SQLException {
+		return wrap(target.prepareCall(sql, resultSetType, resultSetConcurrency), sql);
+	}
+
+	public CallableStatement prepareCall(String sql, int resultSetType, int resultSetConcurrency,
+			int resultSetHoldability) throws SQLException {
+		return wrap(target.prepareCall(sql, resultSetType, resultSetConcurrency, resultSetHoldability), sql);
+	}
+
+	private Statement wrap(Statement stmt) {
+		return StatementLogger.isLogOn() ? new LoggingStatement(stmt, this) : stmt;
+	}
+
+	private PreparedStatement wrap(PreparedStatement stmt, String sql) {
+		return StatementLogger.isLogOn() ? new LoggingPreparedStatement(stmt, this, sql) : stmt;
+	}
+
+	/**
+	 * Callable statement is rarely used, so it's still wrapped by a dynamic proxy.
+	 */
+	private CallableStatement wrap(CallableStatement stmt, String sql) {
+		if (!StatementLogger.isLogOn()) {
+			return stmt;
+		}
+		return (CallableStatement) Proxy.newProxyInstance(LoggingConnection.class.getClassLoader(),
+				new Class[]{CallableStatement.class},
+				new DataSourceWrapperFactoryBean.StatementWrapper(stmt, this, sql));
+	}
+}
@@ -0,0 +1,82 @@
+/**
+ * Copyright Mangocity Limited (c) 2010. All rights reserved.
+ * This software is proprietary to and embodies the confidential
+ * technology of Mangocity Limited.  Possession, use, or copying
+ * of this software and media is authorized only pursuant to a
+ * valid written license from Mangocity or an authorized sublicensor.
+ */
+package org.mangocube.corenut.commons.db.log;
+
+import java.io.PrintWriter;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.util.logging.Logger;
+
+import javax.sql.DataSource;
+
+/**
+ * Logs open of every connection got from target data source, see {@link ConnectionLogger}.
+ *
+ * @since 1.0
+ */
+class LoggingDataSource implements DataSource {
+	private final DataSource target;
+	private final String dataSourceId;
+
+	LoggingDataSource(DataSource target, String dataSourceId) {
+		this.target = target;
+		this.dataSourceId = dataSourceId;
+	}
+
+	public Connection getConnection() throws SQLException {
+		return wrap(target.getConnection());
+	}
+
+	public Connection getConnection(String username, String password) throws SQLException {
+		return wrap(target.getConnection(username, password));
+	}
+
+	private Connection wrap(Connection con) {
+		if (con == null) {
+			return null;
+		}
+		ConnectionLogger.openConnectionLog(con, dataSourceId);
+		return new LoggingConnection(con, dataSourceId);
+	}
+
+	public PrintWriter getLogWriter() throws SQLException {
+		return target.getLogWriter();
+	}
+
+	public void setLogWriter(PrintWriter out) throws SQLException {
+		target.setLogWriter(out);
+	}
+
+	public void setLoginTimeout(int seconds) throws SQLException {
+		target.setLoginTimeout(seconds);
+	}
+
+	public int getLoginTimeout() throws SQLException {
+		return target.getLoginTimeout();
+	}
+
+	public Logger getParentLogger() throws SQLFeatureNotSupportedException {
+		return target.getParentLogger();
+	}
+
+	public <T> T unwrap(Class<T> iface) throws SQLException {
+		if (iface.isInstance(this)) {
+			return iface.cast(this);
+		}
+		return target.unwrap(iface);
+	}
+
+	public boolean isWrapperFor(Class<?> iface) throws SQLException {
+		return iface.isInstance(this) || target.isWrapperFor(iface);
+	}
+
+	public String toString() {
+		return "LoggingDataSource[" + dataSourceId + "]: " + target;
+	}
+}
@@ -0,0 +1,101 @@
+/**
+ * Copyright Mangocity Limited (c) 2010. All rights reserved.
+ * This software is proprietary to and embodies the confidential
+ * technology of Mangocity Limited.  Possession, use, or copying
+ * of this software and media is authorized only pursuant to a
+ * valid written license from Mangocity or an authorized sublicensor.
+ */
+package org.mangocube.corenut.commons.db.log;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+import org.mangocube.corenut.commons.db.connection.DelegatingPreparedStatement;
+
+/**
+ * Times the execute* calls of a prepared statement by its prepared SQL.
+ *
+ * @since 1.0
+ */
+class LoggingPreparedStatement extends DelegatingPreparedStatement {
+	private final Connection connection;
+	private final StatementRecorder recorder;
+
+	LoggingPreparedStatement(PreparedStatement target, Connection connection, String sql) {
+		super(target);
+		this.connection = connection;
+		this.recorder = new StatementRecorder(sql);
+	}
+
+	public ResultSet executeQuery() throws SQLException {
+		StatementStatistics stats = recorder.statsFor(null);
+		boolean failed = true;
+		long start = System.nanoTime();
+		try {
+			ResultSet rs = target.executeQuery();
+			failed = false;
+			return StatementRecorder.wrap(rs, this, stats);
+		} finally {
+			StatementRecorder.recordExecution(stats, start, failed);
+		}
+	}
+
+	public int executeUpdate() throws SQLException {
+		StatementStatistics stats = recorder.statsFor(null);
+		boolean failed = true;
+		long start = System.nanoTime();
+		try {
+			int count = target.executeUpdate();
+			failed = false;
+			return count;
+		} finally {
+			StatementRecorder.recordExecution(stats, start, failed);
+		}
+	}
+
+	public boolean execute() throws SQLException {
+		StatementStatistics stats = recorder.statsFor(null);
+		boolean failed = true;
+		long start = System.nanoTime();
+		try {
+			boolean hasResultSet = target.execute();
+			failed = false;
+			return hasResultSet;
+		} finally {
+			StatementRecorder.recordExecution(stats, start, failed);
+		}
+	}
+
+	public void addBatch() throws SQLException {
+		target.addBatch();
+		recorder.addBatch(null);
+	}
+
+	public void clearBatch() throws SQLException {
+		target.clearBatch();
+		recorder.clearBatch();
+	}
+
+	public int[] executeBatch() throws SQLException {
+		StatementStatistics stats = recorder.batchStats();
+		boolean failed = true;
+		long start = System.nanoTime();
+		try {
+			int[] counts = target.executeBatch();
+			failed = false;
+			return counts;
+		} finally {
+			recorder.recordBatch(stats, start, failed);
+		}
+	}
+
+	public ResultSet getResultSet() throws SQLException {
+		return StatementRecorder.wrap(target.getResultSet(), this, recorder.lastStats());
+	}
+
+	public Connection getConnection() throws SQLException {
+		return connection;
+	}
+}
@@ -0,0 +1,60 @@
+/**
+ * Copyright Mangocity Limited (c) 2010. All rights reserved.
+ * This software is proprietary to and embodies the confidential
+ * technology of Mangocity Limited.  Possession, use, or copying
+ * of this software and media is authorized only pursuant to a
+ * valid written license from Mangocity or an authorized sublicensor.
+ */
+package org.mangocube.corenut.commons.db.log;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+import org.mangocube.corenut.commons.db.connection.DelegatingResultSet;
+
+/**
+ * Counts rows fetched by <code>next()</code>, recorded once when result set is exhausted or closed.
+ *
+ * @since 1.0
+ */
+class LoggingResultSet extends DelegatingResultSet {
+	private final Statement owner;
+	private final StatementStatistics stats;
+	private long rows = 0;
+	private boolean recorded = false;
+
+	LoggingResultSet(ResultSet target, Statement owner, StatementStatistics stats) {
+		super(target);
+		this.owner = owner;
+		this.stats = stats;
+	}
+
+	public boolean next() throws SQLException {
+		if (target.next()) {
+			rows++;
+			return true;
+		}
+		record();
+		return false;
+	}
+
+	public void close() throws SQLException {
+		try {
+			target.close();
+		} finally {
+			record();
+		}
+	}
+
+	public Statement getStatement() throws SQLException {
+		return owner;
+	}
+
+	private void record() {
+		if (!recorded) {
+			recorded = true;
+			stats.recordFetchedRows(rows);
+		}
+	}
+}
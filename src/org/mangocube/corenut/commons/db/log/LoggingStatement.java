@@ -0,0 +1,178 @@
+/**
+ * Copyright Mangocity Limited (c) 2010. All rights reserved.
+ * This software is proprietary to and embodies the confidential
+ * technology of Mangocity Limited.  Possession, use, or copying
+ * of this software and media is authorized only pursuant to a
+ * valid written license from Mangocity or an authorized sublicensor.
+ */
+package org.mangocube.corenut.commons.db.log;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+import org.mangocube.corenut.commons.db.connection.DelegatingStatement;
+
+/**
+ * Times the execute* calls of a plain statement by the SQL passed in.
+ *
+ * @since 1.0
+ */
+class LoggingStatement extends DelegatingStatement {
+	private final Connection connection;
+	private final StatementRecorder recorder = new StatementRecorder(null);
+
+	LoggingStatement(Statement target, Connection connection) {
+		super(target);
+		this.connection = connection;
+	}
+
+	public ResultSet executeQuery(String sql) throws SQLException {
+		StatementStatistics stats = recorder.statsFor(sql);
+		boolean failed = true;
+		long start = System.nanoTime();
+		try {
+			ResultSet rs = target.executeQuery(sql);
+			failed = false;
+			return StatementRecorder.wrap(rs, this, stats);
+		} finally {
+			StatementRecorder.recordExecution(stats, start, failed);
+		}
+	}
+
+	public int executeUpdate(String sql) throws SQLException {
+		StatementStatistics stats = recorder.statsFor(sql);
+		boolean failed = true;
+		long start = System.nanoTime();
+		try {
+			int count = target.executeUpdate(sql);
+			failed = false;
+			return count;
+		} finally {
+			StatementRecorder.recordExecution(stats, start, failed);
+		}
+	}
+
+	public int executeUpdate(String sql, int autoGeneratedKeys) throws SQLException {
+		StatementStatistics stats = recorder.statsFor(sql);
+		boolean failed = true;
+		long start = System.nanoTime();
+		try {
+			int count = target.executeUpdate(sql, autoGeneratedKeys);
+			failed = false;
+			return count;
+		} finally {
+			StatementRecorder.recordExecution(stats, start, failed);
+		}
+	}
+
+	public int executeUpdate(String sql, int[] columnIndexes) throws SQLException {
+		StatementStatistics stats = recorder.statsFor(sql);
+		boolean failed = true;
+		long start = System.nanoTime();
+		try {
+			int count = target.executeUpdate(sql, columnIndexes);
+			failed = false;
+			return count;
+		} finally {
+			StatementRecorder.recordExecution(stats, start, failed);
+		}
+	}
+
+	public int executeUpdate(String sql, String[] columnNames) throws SQLException {
+		StatementStatistics stats = recorder.statsFor(sql);
+		boolean failed = true;
+		long start = System.nanoTime();
+		try {
+			int count = target.executeUpdate(sql, columnNames);
+			failed = false;
+			return count;
+		} finally {
+			StatementRecorder.recordExecution(stats, start, failed);
+		}
+	}
+
+	public boolean execute(String sql) throws SQLException {
+		StatementStatistics stats = recorder.statsFor(sql);
+		boolean failed = true;
+		long start = System.nanoTime();
+		try {
+			boolean hasResultSet = target.execute(sql);
+			failed = false;
+			return hasResultSet;
+		} finally {
+			StatementRecorder.recordExecution(stats, start, failed);
+		}
+	}
+
+	public boolean execute(String sql, int autoGeneratedKeys) throws SQLException {
+		StatementStatistics stats = recorder.statsFor(sql);
+		boolean failed = true;
+		long start = System.nanoTime();
+		try {
+			boolean hasResultSet = target.execute(sql, autoGeneratedKeys);
+			failed = false;
+			return hasResultSet;
+		} finally {
+			StatementRecorder.recordExecution(stats, start, failed);
+		}
+	}
+
+	public boolean execute(String sql, int[] columnIndexes) throws SQLException {
+		StatementStatistics stats = recorder.statsFor(sql);
+		boolean failed = true;
+		long start = System.nanoTime();
+		try {
+			boolean hasResultSet = target.execute(sql, columnIndexes);
+			failed = false;
+			return hasResultSet;
+		} finally {
+			StatementRecorder.recordExecution(stats, start, failed);
+		}
+	}
+
+	public boolean execute(String sql, String[] columnNames) throws SQLException {
+		StatementStatistics stats = recorder.statsFor(sql);
+		boolean failed = true;
+		long start = System.nanoTime();
+		try {
+			boolean hasResultSet = target.execute(sql, columnNames);
+			failed = false;
+			return hasResultSet;
+		} finally {
+			StatementRecorder.recordExecution(stats, start, failed);
+		}
+	}
+
+	public void addBatch(String sql) throws SQLException {
+		target.addBatch(sql);
+		recorder.addBatch(sql);
+	}
+
+	public void clearBatch() throws SQLException {
+		target.clearBatch();
+		recorder.clearBatch();
+	}
+
+	public int[] executeBatch() throws SQLException {
+		StatementStatistics stats = recorder.batchStats();
+		boolean failed = true;
+		long start = System.nanoTime();
+		try {
+			int[] counts = target.executeBatch();
+			failed = false;
+			return counts;
+		} finally {
+			recorder.recordBatch(stats, start, failed);
+		}
+	}
+
+	public ResultSet getResultSet() throws SQLException {
+		return StatementRecorder.wrap(target.getResultSet(), this, recorder.lastStats());
+	}
+
+	public Connection getConnection() throws SQLException {
+		return connection;
+	}
+}
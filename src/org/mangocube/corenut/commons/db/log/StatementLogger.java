@@ -0,0 +1,154 @@
+/**
+ * Copyright Mangocity Limited (c) 2010. All rights reserved.
+ * This software is proprietary to and embodies the confidential
+ * technology of Mangocity Limited.  Possession, use, or copying
+ * of this software and media is authorized only pursuant to a
+ * valid written license from Mangocity or an authorized sublicensor.
+ */
+package org.mangocube.corenut.commons.db.log;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Per statement latency logger, the statement counterpart of ConnectionLogger. Statements executed through
+ * connections of DataSourceWrapperFactoryBean are timed and counted by their normalized SQL text, that is
+ * string and number literals replaced by "?" and whitespace collapsed, so the same query with different
+ * literals shares one entry.
+ * <p/>
+ * At most <code>maxStatements</code> distinct texts are tracked, the others are accounted to "[other]".
+ *
+ * @since 1.0
+ */
+public class StatementLogger {
+	public static final int DEFAULT_MAX_STATEMENTS = 500;
+	private static final int MAX_SQL_LENGTH = 1000;
+	private static final String OTHER_SQL = "[other]";
+
+	private static final ConcurrentHashMap<String, StatementStatistics> STMT_CACHE =
+			new ConcurrentHashMap<String, StatementStatistics>();
+	private static final ConcurrentHashMap<String, String> NORMALIZED_CACHE = new ConcurrentHashMap<String, String>();
+
+	private static volatile boolean turnOnLog = true;
+	private static volatile int maxStatements = DEFAULT_MAX_STATEMENTS;
+
+	public static synchronized void turnOnLog(boolean isOn) {
+		turnOnLog = isOn;
+		STMT_CACHE.clear();
+		NORMALIZED_CACHE.clear();
+	}
+
+	public static boolean isLogOn() {
+		return turnOnLog;
+	}
+
+	public static void setMaxStatements(int max) {
+		maxStatements = max;
+	}
+
+	/**
+	 * Lookup statistics of the given SQL, create it if absent.
+	 *
+	 * @param sql raw SQL text.
+	 * @return statistics of the normalized SQL text.
+	 */
+	public static StatementStatistics getStatistics(String sql) {
+		String normalized = normalize(sql);
+		StatementStatistics stats = STMT_CACHE.get(normalized);
+		if (stats == null) {
+			if (STMT_CACHE.size() >= maxStatements) {
+				normalized = OTHER_SQL;
+			}
+			stats = new StatementStatistics(normalized);
+			StatementStatistics exists = STMT_CACHE.putIfAbsent(normalized, stats);
+			if (exists != null) {
+				stats = exists;
+			}
+		}
+		return stats;
+	}
+
+	public static String normalize(String sql) {
+		if (sql == null) return OTHER_SQL;
+
+		String normalized = NORMALIZED_CACHE.get(sql);
+		if (normalized == null) {
+			normalized = normalizeSql(sql);
+			if (NORMALIZED_CACHE.size() < maxStatements * 4) {
+				NORMALIZED_CACHE.put(sql, normalized);
+			}
+		}
+		return normalized;
+	}
+
+	static String normalizeSql(String sql) {
+		StringBuilder sb = new StringBuilder(Math.min(sql.length(), MAX_SQL_LENGTH));
+		int len = sql.length();
+		boolean space = false;
+		for (int i = 0; i < len && sb.length() < MAX_SQL_LENGTH; i++) {
+			char c = sql.charAt(i);
+			if (Character.isWhitespace(c)) {
+				space = sb.length() > 0;
+				continue;
+			}
+			if (space) {
+				sb.append(' ');
+				space = false;
+			}
+
+			if (c == '\'') {//string literal, '' is escaped quote.
+				i++;
+				while (i < len) {
+					if (sql.charAt(i) == '\'') {
+						if (i + 1 < len && sql.charAt(i + 1) == '\'') {
+							i++;
+						} else {
+							break;
+						}
+					}
+					i++;
+				}
+				sb.append('?');
+			} else if (Character.isDigit(c) && (sb.length() == 0 || !isIdentifierPart(sb.charAt(sb.length() - 1)))) {
+				while (i + 1 < len && (Character.isDigit(sql.charAt(i + 1)) || sql.charAt(i + 1) == '.')) {
+					i++;
+				}
+				sb.append('?');
+			} else {
+				sb.append(c);
+			}
+		}
+		return sb.toString();
+	}
+
+	private static boolean isIdentifierPart(char c) {
+		return Character.isLetterOrDigit(c) || c == '_' || c == '$' || c == '#';
+	}
+
+	/**
+	 * @return statistics of all tracked statements, keyed by normalized SQL text.
+	 */
+	public static Map<String, StatementStatistics> getStatementStatistics() {
+		return Collections.<String, StatementStatistics>unmodifiableMap(STMT_CACHE);
+	}
+
+	/**
+	 * @return one line per statement with snapshots of execution time in microseconds, fetched rows and batch size.
+	 */
+	public static List<String> retrieveLoggingInfo() {
+		List<String> infos = new ArrayList<String>();
+		for (StatementStatistics stats : STMT_CACHE.values()) {
+			StringBuilder info = new StringBuilder();
+			info.append("Statement[").append(stats.getSql()).append("]");
+			info.append(" Errors:[").append(stats.getErrorCount()).append("]<br>");
+			info.append(" Time(us): ").append(stats.getExecutionTime().snapshot()).append("<br>");
+			info.append(" Rows: ").append(stats.getFetchedRows().snapshot()).append("<br>");
+			info.append(" Batch: ").append(stats.getBatchSize().snapshot());
+			infos.add(info.toString());
+		}
+		return infos;
+	}
+}
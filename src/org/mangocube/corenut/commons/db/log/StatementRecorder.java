@@ -0,0 +1,76 @@
+/**
+ * Copyright Mangocity Limited (c) 2010. All rights reserved.
+ * This software is proprietary to and embodies the confidential
+ * technology of Mangocity Limited.  Possession, use, or copying
+ * of this software and media is authorized only pursuant to a
+ * valid written license from Mangocity or an authorized sublicensor.
+ */
+package org.mangocube.corenut.commons.db.log;
+
+import java.sql.ResultSet;
+import java.sql.Statement;
+
+/**
+ * Per statement state shared by the logging statement wrappers: the statistics of the prepared SQL
+ * and the pending batch.
+ *
+ * @since 1.0
+ */
+class StatementRecorder {
+	private final StatementStatistics preparedStats;
+	private int batchSize = 0;
+	private String batchSql;
+	private StatementStatistics lastStats;
+
+	StatementRecorder(String preparedSql) {
+		this.preparedStats = preparedSql == null ? null : StatementLogger.getStatistics(preparedSql);
+	}
+
+	/**
+	 * @param sql SQL passed to execute*, ignored for prepared statement.
+	 * @return statistics to record the execution.
+	 */
+	StatementStatistics statsFor(String sql) {
+		if (preparedStats != null) {
+			return preparedStats;
+		}
+		lastStats = StatementLogger.getStatistics(sql);
+		return lastStats;
+	}
+
+	/**
+	 * @return statistics of the last execution, to record rows of <code>getResultSet()</code>.
+	 */
+	StatementStatistics lastStats() {
+		return preparedStats != null ? preparedStats : lastStats;
+	}
+
+	StatementStatistics batchStats() {
+		return statsFor(batchSql);
+	}
+
+	void addBatch(String sql) {
+		batchSize++;
+		if (sql != null && batchSql == null) {
+			batchSql = sql;
+		}
+	}
+
+	void clearBatch() {
+		batchSize = 0;
+		batchSql = null;
+	}
+
+	void recordBatch(StatementStatistics stats, long start, boolean failed) {
+		stats.recordBatch(System.nanoTime() - start, batchSize, failed);
+		clearBatch();
+	}
+
+	static void recordExecution(StatementStatistics stats, long start, boolean failed) {
+		stats.recordExecution(System.nanoTime() - start, failed);
+	}
+
+	static ResultSet wrap(ResultSet rs, Statement owner, StatementStatistics stats) {
+		return rs == null || stats == null ? rs : new LoggingResultSet(rs, owner, stats);
+	}
+}
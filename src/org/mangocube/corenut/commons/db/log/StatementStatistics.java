@@ -0,0 +1,64 @@
+/**
+ * Copyright Mangocity Limited (c) 2010. All rights reserved.
+ * This software is proprietary to and embodies the confidential
+ * technology of Mangocity Limited.  Possession, use, or copying
+ * of this software and media is authorized only pursuant to a
+ * valid written license from Mangocity or an authorized sublicensor.
+ */
+package org.mangocube.corenut.commons.db.log;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Execution statistics of one normalized SQL text, collected by StatementLogger.
+ * Execution time is recorded in microseconds.
+ *
+ * @since 1.0
+ */
+public class StatementStatistics {
+	private final String sql;
+	private final ConcurrentHistogram executionTime = new ConcurrentHistogram();
+	private final ConcurrentHistogram fetchedRows = new ConcurrentHistogram();
+	private final ConcurrentHistogram batchSize = new ConcurrentHistogram();
+	private final AtomicLong errorCount = new AtomicLong(0);
+
+	StatementStatistics(String sql) {
+		this.sql = sql;
+	}
+
+	public void recordExecution(long nanos, boolean failed) {
+		executionTime.record(nanos / 1000);
+		if (failed) {
+			errorCount.incrementAndGet();
+		}
+	}
+
+	public void recordFetchedRows(long rows) {
+		fetchedRows.record(rows);
+	}
+
+	public void recordBatch(long nanos, int size, boolean failed) {
+		recordExecution(nanos, failed);
+		batchSize.record(size);
+	}
+
+	public String getSql() {
+		return sql;
+	}
+
+	public ConcurrentHistogram getExecutionTime() {
+		return executionTime;
+	}
+
+	public ConcurrentHistogram getFetchedRows() {
+		return fetchedRows;
+	}
+
+	public ConcurrentHistogram getBatchSize() {
+		return batchSize;
+	}
+
+	public long getErrorCount() {
+		return errorCount.get();
+	}
+}
@@ -536,14 +536,14 @@ public class ResourcePatternResolver {
             rootEntryPath = rootEntryPath + "/";
         }
         Set result = new LinkedHashSet(8);
+        AntPathMatcher.CompiledPattern compiledPattern = pathMatcher.compile(subPattern);
+        int rootEntryLength = rootEntryPath.length();
         for (Enumeration entries = jarFile.entries(); entries.hasMoreElements();) {
             JarEntry entry = (JarEntry) entries.nextElement();
             String entryPath = entry.getName();
-            if (entryPath.startsWith(rootEntryPath)) {
-                String relativePath = entryPath.substring(rootEntryPath.length());
-                if (pathMatcher.match(subPattern, relativePath)) {
-                    result.add(rootDirResource.createRelative(relativePath));
-                }
+            if (entryPath.startsWith(rootEntryPath)
+                    && compiledPattern.match(entryPath, rootEntryLength, entryPath.length())) {
+                result.add(rootDirResource.createRelative(entryPath.substring(rootEntryLength)));
             }
         }
         return result;
@@ -641,14 +641,16 @@ public class ResourcePatternResolver {
             throw new IOException("Could not retrieve contents of directory [" + dir.getAbsolutePath() + "]");
         }
         boolean dirDepthNotFixed = (fullPattern.indexOf("**") != -1);
+        int patternDepth = StringUtils4Resource.countOccurrencesOf(fullPattern, "/");
+        AntPathMatcher.CompiledPattern compiledPattern = pathMatcher.compile(fullPattern);
         for (File dirContent : dirContents) {
             String currPath = StringUtils4Resource.replace(dirContent.getAbsolutePath(), File.separator, "/");
             if (dirContent.isDirectory() &&
                     (dirDepthNotFixed ||
-                            StringUtils4Resource.countOccurrencesOf(currPath, "/") < StringUtils4Resource.countOccurrencesOf(fullPattern, "/"))) {
+                            StringUtils4Resource.countOccurrencesOf(currPath, "/") < patternDepth)) {
                 doRetrieveMatchingFiles(fullPattern, dirContent, result);
             }
-            if (pathMatcher.match(fullPattern, currPath)) {
+            if (compiledPattern.match(currPath)) {
                 result.add(dirContent);
             }
         }
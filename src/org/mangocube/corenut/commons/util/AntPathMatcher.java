@@ -4,6 +4,7 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
 import java.util.StringTokenizer;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * PathMatcher implementation for Ant-style path patterns.
@@ -35,6 +36,9 @@ import java.util.StringTokenizer;
  * <code>org/servlet/bla.jsp</code></li>
  * </ul>
  *
+ * <p>Patterns matched many times, e.g. against every entry of a jar file, should be compiled once by
+ * {@link #compile(String)}.
+ *
  * @since 1.0
  */
 @SuppressWarnings("unchecked")
@@ -44,8 +48,13 @@ public class AntPathMatcher {
 	
 	public static final String CLASS_PATH_SEPARATOR = ".";
 
+	private static final int MAX_COMPILED_PATTERNS = 1000;
+
 	private String pathSeparator = DEFAULT_PATH_SEPARATOR;
 
+	private final ConcurrentHashMap<String, CompiledPattern> compiledPatterns =
+			new ConcurrentHashMap<String, CompiledPattern>();
+
     public AntPathMatcher() {
     }
     
@@ -64,6 +73,7 @@ public class AntPathMatcher {
 	 */
 	public void setPathSeparator(String pathSeparator) {
 		this.pathSeparator = (pathSeparator != null ? pathSeparator : DEFAULT_PATH_SEPARATOR);
+		this.compiledPatterns.clear();
 	}
 
 
@@ -72,268 +82,335 @@ public class AntPathMatcher {
 	}
 
 	public boolean match(String pattern, String str) {
-		if (str.startsWith(this.pathSeparator) != pattern.startsWith(this.pathSeparator)) {
-			return false;
-		}
-
-		String[] patDirs = tokenizeToStringArray(pattern, this.pathSeparator);
-		String[] strDirs = tokenizeToStringArray(str, this.pathSeparator);
-
-		int patIdxStart = 0;
-		int patIdxEnd = patDirs.length - 1;
-		int strIdxStart = 0;
-		int strIdxEnd = strDirs.length - 1;
+		return compile(pattern).match(str);
+	}
 
-		// Match all elements up to the first **
-		while (patIdxStart <= patIdxEnd && strIdxStart <= strIdxEnd) {
-			String patDir = (String) patDirs[patIdxStart];
-			if (patDir.equals("**")) {
-				break;
+	/**
+	 * Parse the pattern once, the compiled pattern matches any number of paths with the path separator of this
+	 * matcher. Compiled patterns are cached by the pattern text.
+	 *
+	 * @param pattern the Ant-style pattern, must not be <code>null</code>.
+	 * @return compiled pattern, immutable and thread-safe.
+	 */
+	public CompiledPattern compile(String pattern) {
+		CompiledPattern compiled = compiledPatterns.get(pattern);
+		if (compiled == null) {
+			compiled = new CompiledPattern(pattern, this.pathSeparator,
+					tokenizeToStringArray(pattern, this.pathSeparator));
+			if (compiledPatterns.size() >= MAX_COMPILED_PATTERNS) {
+				compiledPatterns.clear();
 			}
-			if (!matchStrings(patDir, (String) strDirs[strIdxStart])) {
-				return false;
+			CompiledPattern exists = compiledPatterns.putIfAbsent(pattern, compiled);
+			if (exists != null) {
+				compiled = exists;
 			}
-			patIdxStart++;
-			strIdxStart++;
 		}
+		return compiled;
+	}
 
-		if (strIdxStart > strIdxEnd) {
-			// String is exhausted, only match if rest of pattern is * or **'s
-			if (patIdxStart == patIdxEnd && patDirs[patIdxStart].equals("*") &&
-					str.endsWith(this.pathSeparator)) {
-				return true;
+	/**
+	 * Ant-style pattern parsed by {@link AntPathMatcher#compile(String)}, matches the same paths as
+	 * {@link AntPathMatcher#match(String, String)}.
+	 * <p>The pattern is split at its '**' segments: the head is matched from the start of the path, the tail
+	 * from the end, and every block in between at the leftmost place left. Segments are read from the path by
+	 * offsets, so matching allocates nothing.
+	 */
+	public static final class CompiledPattern {
+		private final String pattern;
+		private final String separator;
+		private final char[] separators;
+		private final boolean absolute;
+		private final boolean doubleStar;
+		private final SegmentPattern[] head;
+		private final SegmentPattern[][] blocks;
+		private final SegmentPattern[] tail;
+
+		CompiledPattern(String pattern, String separator, String[] patDirs) {
+			this.pattern = pattern;
+			this.separator = separator;
+			this.separators = separator.toCharArray();
+			this.absolute = pattern.startsWith(separator);
+
+			int first = -1;
+			int last = -1;
+			for (int i = 0; i < patDirs.length; i++) {
+				if (patDirs[i].equals("**")) {
+					if (first == -1) first = i;
+					last = i;
+				}
 			}
-			for (int i = patIdxStart; i <= patIdxEnd; i++) {
-				if (!patDirs[i].equals("**")) {
-					return false;
+			this.doubleStar = first != -1;
+			if (!doubleStar) {
+				head = compileSegments(patDirs, 0, patDirs.length);
+				blocks = new SegmentPattern[0][];
+				tail = new SegmentPattern[0];
+				return;
+			}
+			head = compileSegments(patDirs, 0, first);
+			tail = compileSegments(patDirs, last + 1, patDirs.length);
+			List<SegmentPattern[]> between = new ArrayList<SegmentPattern[]>();
+			int blockStart = first + 1;
+			for (int i = blockStart; i <= last; i++) {
+				if (patDirs[i].equals("**")) {
+					if (i > blockStart) { // '**/**' is a single '**'
+						between.add(compileSegments(patDirs, blockStart, i));
+					}
+					blockStart = i + 1;
 				}
 			}
-			return true;
+			blocks = between.toArray(new SegmentPattern[between.size()][]);
 		}
-		else {
-			if (patIdxStart > patIdxEnd) {
-				// String not exhausted, but pattern is. Failure.
-				return false;
+
+		private static SegmentPattern[] compileSegments(String[] patDirs, int from, int to) {
+			SegmentPattern[] segments = new SegmentPattern[to - from];
+			for (int i = from; i < to; i++) {
+				segments[i - from] = new SegmentPattern(patDirs[i]);
 			}
+			return segments;
 		}
 
-		// up to last '**'
-		while (patIdxStart <= patIdxEnd && strIdxStart <= strIdxEnd) {
-			String patDir = (String) patDirs[patIdxEnd];
-			if (patDir.equals("**")) {
-				break;
-			}
-			if (!matchStrings(patDir, (String) strDirs[strIdxEnd])) {
+		public String getPattern() {
+			return pattern;
+		}
+
+		public boolean match(CharSequence path) {
+			return match(path, 0, path.length());
+		}
+
+		/**
+		 * Match the region [start, end) of the path, e.g. an entry name below a root entry path.
+		 */
+		public boolean match(CharSequence path, int start, int end) {
+			if (regionStartsWith(separator, path, start, end) != absolute) {
 				return false;
 			}
-			patIdxEnd--;
-			strIdxEnd--;
-		}
-		if (strIdxStart > strIdxEnd) {
-			// String is exhausted
-			for (int i = patIdxStart; i <= patIdxEnd; i++) {
-				if (!patDirs[i].equals("**")) {
+
+			int pos = start;
+			for (int i = 0; i < head.length; i++) {
+				int segStart = segmentStart(separators, path, pos, end);
+				if (segStart < 0) {
+					// path is exhausted, a single trailing '*' still matches a directory path
+					return !doubleStar && i == head.length - 1 && head[i].singleStar
+							&& regionEndsWith(separator, path, start, end);
+				}
+				int segEnd = segmentEnd(separators, path, segStart, end);
+				if (!head[i].match(path, segStart, segEnd)) {
 					return false;
 				}
+				pos = segEnd;
+			}
+			if (!doubleStar) {
+				return segmentStart(separators, path, pos, end) < 0;
 			}
-			return true;
-		}
 
-		while (patIdxStart != patIdxEnd && strIdxStart <= strIdxEnd) {
-			int patIdxTmp = -1;
-			for (int i = patIdxStart + 1; i <= patIdxEnd; i++) {
-				if (patDirs[i].equals("**")) {
-					patIdxTmp = i;
-					break;
+			int limit = end;
+			for (int i = tail.length - 1; i >= 0; i--) {
+				int segEnd = lastSegmentEnd(separators, path, pos, limit);
+				if (segEnd < 0) {
+					return false;
 				}
-			}
-			if (patIdxTmp == patIdxStart + 1) {
-				// '**/**' situation, so skip one
-				patIdxStart++;
-				continue;
-			}
-			// Find the pattern between padIdxStart & padIdxTmp in str between
-			// strIdxStart & strIdxEnd
-			int patLength = (patIdxTmp - patIdxStart - 1);
-			int strLength = (strIdxEnd - strIdxStart + 1);
-			int foundIdx = -1;
-			strLoop:
-			    for (int i = 0; i <= strLength - patLength; i++) {
-				    for (int j = 0; j < patLength; j++) {
-					    String subPat = (String) patDirs[patIdxStart + j + 1];
-					    String subStr = (String) strDirs[strIdxStart + i + j];
-					    if (!matchStrings(subPat, subStr)) {
-						    continue strLoop;
-					    }
-				    }
-
-				    foundIdx = strIdxStart + i;
-				    break;
-			    }
-
-			if (foundIdx == -1) {
-				return false;
+				int segStart = lastSegmentStart(separators, path, pos, segEnd);
+				if (!tail[i].match(path, segStart, segEnd)) {
+					return false;
+				}
+				limit = segStart;
 			}
 
-			patIdxStart = patIdxTmp;
-			strIdxStart = foundIdx + patLength;
+			for (SegmentPattern[] block : blocks) {
+				pos = findBlock(block, path, pos, limit);
+				if (pos < 0) {
+					return false;
+				}
+			}
+			return true;
 		}
 
-		for (int i = patIdxStart; i <= patIdxEnd; i++) {
-			if (!patDirs[i].equals("**")) {
-				return false;
+		/**
+		 * @return end of the leftmost run of path segments in [from, limit) matching the block, -1 if none.
+		 */
+		private int findBlock(SegmentPattern[] block, CharSequence path, int from, int limit) {
+			int candidate = segmentStart(separators, path, from, limit);
+			while (candidate >= 0) {
+				int candidateEnd = segmentEnd(separators, path, candidate, limit);
+				int segStart = candidate;
+				int segEnd = candidateEnd;
+				int i = 0;
+				while (block[i].match(path, segStart, segEnd)) {
+					if (++i == block.length) {
+						return segEnd;
+					}
+					segStart = segmentStart(separators, path, segEnd, limit);
+					if (segStart < 0) {
+						return -1; // less segments left than the block
+					}
+					segEnd = segmentEnd(separators, path, segStart, limit);
+				}
+				candidate = segmentStart(separators, path, candidateEnd, limit);
 			}
+			return -1;
 		}
 
-		return true;
+		public String toString() {
+			return pattern;
+		}
 	}
 
 	/**
-	 * Tests whether or not a string matches against a pattern.
-	 * The pattern may contain two special characters:<br>
-	 * '*' means zero or more characters<br>
-	 * '?' means one and only one character
-	 * @param pattern pattern to match against.
-	 * Must not be <code>null</code>.
-	 * @param str string which must be matched against the pattern.
-	 * Must not be <code>null</code>.
-	 * @return <code>true</code> if the string matches against the
-	 * pattern, or <code>false</code> otherwise.
+	 * One path segment of a pattern, '?' matches one char and '*' zero or more chars. The literal parts before the
+	 * first and after the last '*' are checked at both ends of the segment, the parts in between are searched
+	 * left to right.
 	 */
-	private boolean matchStrings(String pattern, String str) {
-		char[] patArr = pattern.toCharArray();
-		char[] strArr = str.toCharArray();
-		int patIdxStart = 0;
-		int patIdxEnd = patArr.length - 1;
-		int strIdxStart = 0;
-		int strIdxEnd = strArr.length - 1;
-		char ch;
-
-		boolean containsStar = false;
-		for (int i = 0; i < patArr.length; i++) {
-			if (patArr[i] == '*') {
-				containsStar = true;
-				break;
+	static final class SegmentPattern {
+		final boolean singleStar;
+		private final boolean star;
+		private final char[] prefix;
+		private final char[] suffix;
+		private final char[][] infixes;
+		private final int minLength;
+
+		SegmentPattern(String segment) {
+			singleStar = segment.equals("*");
+			int firstStar = segment.indexOf('*');
+			star = firstStar != -1;
+			if (!star) {
+				prefix = segment.toCharArray();
+				suffix = new char[0];
+				infixes = new char[0][];
+				minLength = prefix.length;
+				return;
 			}
-		}
-
-		if (!containsStar) {
-			// No '*'s, so we make a shortcut
-			if (patIdxEnd != strIdxEnd) {
-				return false; // Pattern and string do not have the same size
-			}
-			for (int i = 0; i <= patIdxEnd; i++) {
-				ch = patArr[i];
-				if (ch != '?') {
-					if (ch != strArr[i]) {
-						return false;// Character mismatch
+			int lastStar = segment.lastIndexOf('*');
+			prefix = segment.substring(0, firstStar).toCharArray();
+			suffix = segment.substring(lastStar + 1).toCharArray();
+			List<char[]> parts = new ArrayList<char[]>();
+			int length = prefix.length + suffix.length;
+			int partStart = firstStar + 1;
+			for (int i = partStart; i <= lastStar; i++) {
+				if (segment.charAt(i) == '*') {
+					if (i > partStart) {
+						parts.add(segment.substring(partStart, i).toCharArray());
+						length += i - partStart;
 					}
+					partStart = i + 1;
 				}
 			}
-			return true; // String matches against pattern
-		}
-
-
-		if (patIdxEnd == 0) {
-			return true; // Pattern contains only '*', which matches anything
+			infixes = parts.toArray(new char[parts.size()][]);
+			minLength = length;
 		}
 
-		// Process characters before first star
-		while ((ch = patArr[patIdxStart]) != '*' && strIdxStart <= strIdxEnd) {
-			if (ch != '?') {
-				if (ch != strArr[strIdxStart]) {
-					return false;// Character mismatch
-				}
+		boolean match(CharSequence path, int start, int end) {
+			if (!star) {
+				return end - start == prefix.length && matchAt(prefix, path, start);
 			}
-			patIdxStart++;
-			strIdxStart++;
-		}
-		if (strIdxStart > strIdxEnd) {
-			// All characters in the string are used. Check if only '*'s are
-			// left in the pattern. If so, we succeeded. Otherwise failure.
-			for (int i = patIdxStart; i <= patIdxEnd; i++) {
-				if (patArr[i] != '*') {
+			if (end - start < minLength || !matchAt(prefix, path, start)
+					|| !matchAt(suffix, path, end - suffix.length)) {
+				return false;
+			}
+			int pos = start + prefix.length;
+			int limit = end - suffix.length;
+			for (char[] infix : infixes) {
+				pos = indexOf(infix, path, pos, limit);
+				if (pos < 0) {
 					return false;
 				}
+				pos += infix.length;
 			}
 			return true;
 		}
 
-		// Process characters after last star
-		while ((ch = patArr[patIdxEnd]) != '*' && strIdxStart <= strIdxEnd) {
-			if (ch != '?') {
-				if (ch != strArr[strIdxEnd]) {
-					return false;// Character mismatch
-				}
-			}
-			patIdxEnd--;
-			strIdxEnd--;
-		}
-		if (strIdxStart > strIdxEnd) {
-			// All characters in the string are used. Check if only '*'s are
-			// left in the pattern. If so, we succeeded. Otherwise failure.
-			for (int i = patIdxStart; i <= patIdxEnd; i++) {
-				if (patArr[i] != '*') {
+		private static boolean matchAt(char[] part, CharSequence path, int offset) {
+			for (int i = 0; i < part.length; i++) {
+				char ch = part[i];
+				if (ch != '?' && ch != path.charAt(offset + i)) {
 					return false;
 				}
 			}
 			return true;
 		}
 
-		// process pattern between stars. padIdxStart and patIdxEnd point
-		// always to a '*'.
-		while (patIdxStart != patIdxEnd && strIdxStart <= strIdxEnd) {
-			int patIdxTmp = -1;
-			for (int i = patIdxStart + 1; i <= patIdxEnd; i++) {
-				if (patArr[i] == '*') {
-					patIdxTmp = i;
-					break;
+		private static int indexOf(char[] part, CharSequence path, int from, int limit) {
+			for (int i = from; i <= limit - part.length; i++) {
+				if (matchAt(part, path, i)) {
+					return i;
 				}
 			}
-			if (patIdxTmp == patIdxStart + 1) {
-				// Two stars next to each other, skip the first one.
-				patIdxStart++;
-				continue;
+			return -1;
+		}
+	}
+
+	static boolean isSeparator(char[] separators, char c) {
+		for (char separator : separators) {
+			if (c == separator) {
+				return true;
 			}
-			// Find the pattern between padIdxStart & padIdxTmp in str between
-			// strIdxStart & strIdxEnd
-			int patLength = (patIdxTmp - patIdxStart - 1);
-			int strLength = (strIdxEnd - strIdxStart + 1);
-			int foundIdx = -1;
-			strLoop:
-			for (int i = 0; i <= strLength - patLength; i++) {
-				for (int j = 0; j < patLength; j++) {
-					ch = patArr[patIdxStart + j + 1];
-					if (ch != '?') {
-						if (ch != strArr[strIdxStart + i + j]) {
-							continue strLoop;
-						}
-					}
-				}
+		}
+		return false;
+	}
+
+	/*
+	 * A path segment is a token between separator chars, trimmed, empty segments are skipped.
+	 */
 
-				foundIdx = strIdxStart + i;
-				break;
+	static int segmentStart(char[] separators, CharSequence path, int from, int limit) {
+		for (int i = from; i < limit; i++) {
+			char c = path.charAt(i);
+			if (c > ' ' && !isSeparator(separators, c)) {
+				return i;
 			}
+		}
+		return -1;
+	}
 
-			if (foundIdx == -1) {
-				return false;
+	static int segmentEnd(char[] separators, CharSequence path, int segStart, int limit) {
+		int i = segStart;
+		while (i < limit && !isSeparator(separators, path.charAt(i))) {
+			i++;
+		}
+		while (path.charAt(i - 1) <= ' ') {
+			i--;
+		}
+		return i;
+	}
+
+	static int lastSegmentEnd(char[] separators, CharSequence path, int floor, int limit) {
+		for (int i = limit - 1; i >= floor; i--) {
+			char c = path.charAt(i);
+			if (c > ' ' && !isSeparator(separators, c)) {
+				return i + 1;
 			}
+		}
+		return -1;
+	}
 
-			patIdxStart = patIdxTmp;
-			strIdxStart = foundIdx + patLength;
+	static int lastSegmentStart(char[] separators, CharSequence path, int floor, int segEnd) {
+		int i = segEnd;
+		while (i > floor && !isSeparator(separators, path.charAt(i - 1))) {
+			i--;
+		}
+		while (path.charAt(i) <= ' ') {
+			i++;
 		}
+		return i;
+	}
 
-		// All characters in the string are used. Check if only '*'s are left
-		// in the pattern. If so, we succeeded. Otherwise failure.
-		for (int i = patIdxStart; i <= patIdxEnd; i++) {
-			if (patArr[i] != '*') {
+	static boolean regionStartsWith(String separator, CharSequence path, int start, int end) {
+		int length = separator.length();
+		if (end - start < length) {
+			return false;
+		}
+		for (int i = 0; i < length; i++) {
+			if (path.charAt(start + i) != separator.charAt(i)) {
 				return false;
 			}
 		}
-
 		return true;
 	}
 
+	static boolean regionEndsWith(String separator, CharSequence path, int start, int end) {
+		int length = separator.length();
+		return end - start >= length && regionStartsWith(separator, path, end - length, end);
+	}
+
 	/**
 	 * Given a pattern and a full path, determine the pattern-mapped part.
 	 * <p>For example:
@@ -380,12 +457,12 @@ public class AntPathMatcher {
 		return buffer.toString();
 	}
 	
-	private String[] tokenizeToStringArray(String str, String delimiters) {
+	static String[] tokenizeToStringArray(String str, String delimiters) {
 		return tokenizeToStringArray(str, delimiters, true, true);
 	}
 
 
-	private String[] tokenizeToStringArray(String str, String delimiters,
+	private static String[] tokenizeToStringArray(String str, String delimiters,
 			boolean trimTokens, boolean ignoreEmptyTokens) {
 		if (str == null) {
 			return null;
@@ -401,7 +478,7 @@ public class AntPathMatcher {
 				tokens.add(token);
 			}
 		}
-		return toStringArray(tokens);
+		return (String[]) tokens.toArray(new String[tokens.size()]);
 	}
 
 
@@ -4,10 +4,19 @@ import java.util.List;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
 import java.lang.reflect.Constructor;
 import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Modifier;
 
 import org.apache.commons.beanutils.ConvertUtils;
+import org.apache.commons.beanutils.Converter;
 
 /**
  * This util defines some useful method to obtain the information about the given class.
@@ -92,67 +101,189 @@ public abstract class ClassUtils {
         return cls;
     }
 
-    private static final Class[] EMPTY_CLASS_ARRAY = {};
-    private static final Object[] EMPTY_OBJECT_ARRAY = {};
+    private static final MethodHandles.Lookup LOOKUP = MethodHandles.lookup();
+    private static final MethodType INVOKER_TYPE = MethodType.methodType(Object.class, Object[].class);
+    private static final Object MISMATCH = new Object();
+
+    private static final ClassValue<ConstructorCache> CONSTRUCTORS = new ClassValue<ConstructorCache>() {
+        protected ConstructorCache computeValue(Class<?> type) {
+            return new ConstructorCache(type);
+        }
+    };
 
+    /**
+     * Create instance by the public constructor whose parameter count is the same as the given parameters, and whose
+     * parameter types can be converted from them by ConvertUtils, or by name for enum. Constructors are tried in the
+     * order of <code>Class.getConstructors()</code>.
+     * <p/>
+     * Candidate constructors of every class and parameter count are resolved once, each with a MethodHandle and the
+     * converters of its parameter types, so the converters registered to ConvertUtils afterwards for these types
+     * are not used.
+     *
+     * @param clazz  class to create instance.
+     * @param params parameter values in string, trimmed before conversion.
+     * @return new instance.
+     * @throws InvocationTargetException the constructor throws an exception.
+     * @throws NoSuchMethodException     no constructor matches the parameters.
+     */
     public static <T> T createInstance(Class<T> clazz, String... params) throws IllegalAccessException,
             InstantiationException, InvocationTargetException, NoSuchMethodException {
+        ConstructorCache cache = CONSTRUCTORS.get(clazz);
         if (params == null || params.length == 0) {//no parameterms, use default constructor
-            Constructor constructor = clazz.getConstructor(EMPTY_CLASS_ARRAY);
-            try {
-                if (!constructor.isAccessible()) {
-                    constructor.setAccessible(true);
+            return clazz.cast(cache.defaultConstructor().newInstance(EMPTY_OBJECT_ARRAY));
+        }
+
+        //Iterates constructors and find one that matches the given parameters quantity & type
+        for (ConstructorInvoker constructor : cache.constructors(params.length)) {
+            Object[] arguments = constructor.convert(params);
+            if (arguments != null) {
+                return clazz.cast(constructor.newInstance(arguments));
+            }
+        }
+        throw new NoSuchMethodException("No such constructor of " + clazz + " " + Arrays.toString(params));
+    }
+
+    private static final Object[] EMPTY_OBJECT_ARRAY = {};
+    private static final ConstructorInvoker[] NO_CONSTRUCTORS = {};
+
+    /**
+     * Public constructors of one class by parameter count.
+     */
+    private static final class ConstructorCache {
+        private final Class<?> type;
+        private final ConcurrentMap<Integer, ConstructorInvoker[]> byCount =
+                new ConcurrentHashMap<Integer, ConstructorInvoker[]>(4);
+        private volatile ConstructorInvoker defaultConstructor;
+
+        ConstructorCache(Class<?> type) {
+            this.type = type;
+        }
+
+        ConstructorInvoker defaultConstructor() throws NoSuchMethodException, IllegalAccessException {
+            ConstructorInvoker invoker = defaultConstructor;
+            if (invoker == null) {
+                invoker = new ConstructorInvoker(type.getConstructor());
+                defaultConstructor = invoker;
+            }
+            return invoker;
+        }
+
+        ConstructorInvoker[] constructors(int count) throws IllegalAccessException {
+            ConstructorInvoker[] invokers = byCount.get(count);
+            if (invokers == null) {
+                List<ConstructorInvoker> list = new ArrayList<ConstructorInvoker>();
+                for (Constructor constructor : type.getConstructors()) {
+                    if (constructor.getParameterTypes().length == count) {
+                        list.add(new ConstructorInvoker(constructor));
+                    }
                 }
-                return (T) constructor.newInstance(EMPTY_OBJECT_ARRAY);
-            } catch (Exception e) {
-                return clazz.newInstance();
+                invokers = list.isEmpty() ? NO_CONSTRUCTORS : list.toArray(new ConstructorInvoker[list.size()]);
+                byCount.put(count, invokers);
             }
+            return invokers;
         }
+    }
 
-        //Gets all the constructors of this class.
-        Constructor[] constructors = clazz.getConstructors();
-        //Iterates constructors and find one that matches the given parameters quantity & type
-        for (Constructor constructor : constructors) {
-            if (constructor.getParameterTypes().length == params.length) {
-                Object[] arguments = convert2ParameterType(params, constructor);
-                if (arguments == null) continue;
-                if (!constructor.isAccessible()) {
-                    constructor.setAccessible(true);
+    /**
+     * Constructor bound to a MethodHandle taking the arguments in an array, with the converters of its parameters.
+     */
+    private static final class ConstructorInvoker {
+        private final Class<?> type;
+        private final MethodHandle handle;
+        private final Class<?>[] parameterTypes;
+        private final ParameterConverter[] converters;
+
+        ConstructorInvoker(Constructor<?> constructor) throws IllegalAccessException {
+            if (!constructor.isAccessible()) {
+                constructor.setAccessible(true);
+            }
+            type = constructor.getDeclaringClass();
+            parameterTypes = constructor.getParameterTypes();
+            handle = LOOKUP.unreflectConstructor(constructor)
+                    .asSpreader(Object[].class, parameterTypes.length).asType(INVOKER_TYPE);
+            converters = new ParameterConverter[parameterTypes.length];
+            for (int i = 0; i < parameterTypes.length; i++) {
+                converters[i] = ParameterConverter.of(parameterTypes[i]);
+            }
+        }
+
+        /**
+         * Converts the string parameters to the actual type of parameters used in the constructor.
+         *
+         * @return parameters with the correct type, null if any parameter can't be converted.
+         */
+        Object[] convert(String[] params) {
+            Object[] arguments = new Object[params.length];
+            for (int i = 0; i < params.length; i++) {
+                if (params[i] != null) {
+                    Object argument = converters[i].convert(params[i].trim());
+                    //if conversion fails, means the parameters somehow mismatch the contructor, skip!
+                    if (argument == MISMATCH) return null;
+                    arguments[i] = argument;
                 }
-                return (T) constructor.newInstance(arguments);
+            }
+            return arguments;
+        }
+
+        Object newInstance(Object[] arguments) throws InstantiationException, InvocationTargetException {
+            if (Modifier.isAbstract(type.getModifiers())) {
+                throw new InstantiationException(type.getName());
+            }
+            for (int i = 0; i < arguments.length; i++) {
+                if (arguments[i] == null && parameterTypes[i].isPrimitive()) {
+                    throw new IllegalArgumentException("Null argument " + i + " of primitive type " + parameterTypes[i]);
+                }
+            }
+            try {
+                return handle.invokeExact(arguments);
+            } catch (Throwable e) {
+                throw new InvocationTargetException(e);
             }
         }
-        throw new NoSuchMethodException("No such constructor of " + clazz + " " + Arrays.toString(params));
     }
 
     /**
-     * Converts the string parameters to the actual type of parameters used in the constructor.
-     *
-     * @param params      parameter values in the type of String
-     * @param constructor instance of constructor object
-     * @return parameters with the correct type
+     * Converter of string parameter to one parameter type, resolved once.
      */
-    private static Object[] convert2ParameterType(String[] params, Constructor constructor) {
-        Object[] arguments = new Object[params.length];
-        for (int i = 0; i < params.length; i++) {
-            String para_val = params[i];
+    private abstract static class ParameterConverter {
+        /**
+         * @return converted value, MISMATCH if the value can't be converted.
+         */
+        abstract Object convert(String value);
 
-            if (para_val == null) {
-                arguments[i] = null;
-            } else {
-                para_val = para_val.trim();
-                try {
-                    Class para_type = constructor.getParameterTypes()[i];
-                    if (Enum.class.isAssignableFrom(para_type)) {
-                        arguments[i] = Enum.valueOf(para_type, para_val);
-                    } else {
-                        arguments[i] = ConvertUtils.convert(para_val, para_type);
+        static ParameterConverter of(final Class<?> type) {
+            if (type == String.class) {
+                return new ParameterConverter() {
+                    Object convert(String value) {
+                        return value;
+                    }
+                };
+            }
+            if (Enum.class.isAssignableFrom(type)) {
+                final Map<String, Object> constants = new HashMap<String, Object>();
+                if (type.getEnumConstants() != null) {//not Enum itself
+                    for (Object constant : type.getEnumConstants()) {
+                        constants.put(((Enum) constant).name(), constant);
                     }
-                } catch (Exception e) {
-                    return null;//if conversion fails, means the parameters somehow mismatch the contructor, skip!
                 }
+                return new ParameterConverter() {
+                    Object convert(String value) {
+                        Object constant = constants.get(value);
+                        return constant != null ? constant : MISMATCH;
+                    }
+                };
             }
+
+            final Converter converter = ConvertUtils.lookup(type);
+            return new ParameterConverter() {
+                Object convert(String value) {
+                    try {
+                        return converter != null ? converter.convert(type, value) : ConvertUtils.convert(value, type);
+                    } catch (Exception e) {
+                        return MISMATCH;
+                    }
+                }
+            };
         }
-        return arguments;
     }
 }
@@ -0,0 +1,400 @@
+package org.mangocube.corenut.commons.util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedList;
+import java.util.List;
+
+/**
+ * Replaces many literal strings of a replacement table, compiled once by {@link #compile(String[])} and reused for
+ * any number of texts. The table is a flat array of pairs: find1, replacement1, find2, replacement2, ...
+ * <p/>
+ * By default all the finds are merged into one Aho-Corasick automaton and the text is replaced in a single pass
+ * from left to right: at every position the longest find starting there is replaced, and replaced text is never
+ * searched again. A find listed twice is replaced by its first replacement.
+ * <p/>
+ * Compiled in pair order, the pairs are applied one after another, each from the end of the text to its start, so
+ * the text replaced by a pair is searched by the pairs after it. This is how
+ * {@link StringUtils#replaceAll(String, String[])} replaced before the single pass.
+ * <p/>
+ * Empty finds are ignored, a null replacement removes the find. It's immutable and thread-safe.
+ *
+ * @since 1.0
+ */
+public final class LiteralReplacer {
+    private static final int ROOT = 0;
+    private static final int ASCII = 128;
+
+    private final String[] finds;
+    private final String[] replacements;
+    private final boolean inPairOrder;
+
+    /*
+     * Automaton of the finds: node 0 is the root, the children of a node are sorted by char, the root also has a
+     * table of its ASCII children.
+     */
+    private final int[] rootAscii;
+    private final char[][] childChars;
+    private final int[][] children;
+    private final int[] fail;
+    private final int[] depth;
+    private final int[] output;
+    private final int[] outputLink;
+    private final int maxGrowth;
+
+    private LiteralReplacer(String[] finds, String[] replacements, boolean inPairOrder) {
+        this.finds = finds;
+        this.replacements = replacements;
+        this.inPairOrder = inPairOrder;
+        if (inPairOrder) {
+            rootAscii = null;
+            childChars = null;
+            children = null;
+            fail = null;
+            depth = null;
+            output = null;
+            outputLink = null;
+            maxGrowth = 0;
+            return;
+        }
+
+        int capacity = 1;
+        for (String find : finds) {
+            capacity += find.length();
+        }
+        childChars = new char[capacity][];
+        children = new int[capacity][];
+        fail = new int[capacity];
+        depth = new int[capacity];
+        output = new int[capacity];
+        outputLink = new int[capacity];
+        Arrays.fill(output, -1);
+        Arrays.fill(outputLink, -1);
+        childChars[ROOT] = new char[0];
+        children[ROOT] = new int[0];
+        rootAscii = new int[ASCII];
+        Arrays.fill(rootAscii, -1);
+
+        // trie of the finds
+        int count = 1;
+        int growth = 0;
+        for (int f = 0; f < finds.length; f++) {
+            String find = finds[f];
+            int node = ROOT;
+            for (int i = 0; i < find.length(); i++) {
+                char c = find.charAt(i);
+                int child = child(node, c);
+                if (child < 0) {
+                    child = count++;
+                    childChars[child] = new char[0];
+                    children[child] = new int[0];
+                    depth[child] = depth[node] + 1;
+                    addChild(node, c, child);
+                }
+                node = child;
+            }
+            if (output[node] < 0) { // the first pair of a duplicated find wins
+                output[node] = f;
+            }
+            growth = Math.max(growth, replacements[f].length() - find.length());
+        }
+
+        maxGrowth = growth;
+
+        // failure and output links, breadth first
+        LinkedList<Integer> queue = new LinkedList<Integer>();
+        for (int child : children[ROOT]) {
+            fail[child] = ROOT;
+            queue.add(child);
+        }
+        while (!queue.isEmpty()) {
+            int node = queue.removeFirst();
+            char[] chars = childChars[node];
+            for (int i = 0; i < chars.length; i++) {
+                int child = children[node][i];
+                int target = fail[node];
+                int link;
+                while ((link = child(target, chars[i])) < 0 && target != ROOT) {
+                    target = fail[target];
+                }
+                fail[child] = link >= 0 ? link : ROOT;
+                outputLink[child] = output[fail[child]] >= 0 ? fail[child] : outputLink[fail[child]];
+                queue.add(child);
+            }
+        }
+    }
+
+    /**
+     * Compile the replacement table for single pass replacing.
+     *
+     * @param replacements pairs of find and replacement.
+     * @return compiled replacer.
+     * @throws IllegalArgumentException the length of replacements is odd, or a find is null.
+     */
+    public static LiteralReplacer compile(String[] replacements) {
+        return compile(replacements, false);
+    }
+
+    /**
+     * @param replacements pairs of find and replacement.
+     * @param inPairOrder  apply the pairs one after another instead of in a single pass.
+     * @return compiled replacer.
+     * @throws IllegalArgumentException the length of replacements is odd, or a find is null.
+     */
+    public static LiteralReplacer compile(String[] replacements, boolean inPairOrder) {
+        if (replacements == null) {
+            replacements = new String[0];
+        }
+        if (replacements.length % 2 != 0) {
+            throw new IllegalArgumentException(
+                    "invalid replacements: the length of replacements should be even");
+        }
+
+        List<String> finds = new ArrayList<String>();
+        List<String> values = new ArrayList<String>();
+        for (int i = 0; i < replacements.length; i += 2) {
+            String find = replacements[i];
+            if (find == null) {
+                throw new IllegalArgumentException("invalid replacements: find of pair " + i / 2 + " is null");
+            }
+            if (find.length() != 0) {
+                finds.add(find);
+                values.add(replacements[i + 1] == null ? "" : replacements[i + 1]);
+            }
+        }
+
+        return new LiteralReplacer(finds.toArray(new String[finds.size()]),
+                values.toArray(new String[values.size()]), inPairOrder);
+    }
+
+    /**
+     * @param original the text to replace.
+     * @return the replaced text, original itself if nothing is replaced.
+     */
+    public String replace(String original) {
+        if (original == null || original.length() == 0) {
+            return original;
+        }
+        if (finds.length == 0) {
+            return original;
+        }
+        if (inPairOrder) {
+            String replaced = original;
+            for (int i = 0; i < finds.length; i++) {
+                replaced = replaceBackward(replaced, finds[i], replacements[i]);
+            }
+            return replaced;
+        }
+
+        StringBuilder buffer = null;
+        int length = original.length();
+        int copied = 0;
+        int from = 0;
+        while (from < length) {
+            long match = findNext(original, from);
+            if (match < 0) {
+                break;
+            }
+            int start = (int) (match >>> 32);
+            int node = (int) match;
+            if (buffer == null) {
+                buffer = new StringBuilder(length + Math.max(16, Math.min(maxGrowth, length >> 3)));
+            }
+            buffer.append(original, copied, start).append(replacements[output[node]]);
+            copied = start + depth[node];
+            from = copied;
+        }
+        if (buffer == null) {
+            return original;
+        }
+        return buffer.append(original, copied, length).toString();
+    }
+
+    /**
+     * Replace the find from the end of the text to its start. The search goes on right before the last replaced
+     * find, so a find made up of text and the replacement after it is replaced too. The replaced tail is kept as
+     * pieces of the text and the replacement instead of shifted on every replacing.
+     */
+    private static String replaceBackward(String text, String find, String replacement) {
+        int findLength = find.length();
+        // the text is text[0, head) + tail
+        Tail tail = null;
+        int head = text.length();
+        int idx = head;
+        while (idx > 0) {
+            int tailLength = tail == null ? 0 : tail.length;
+            int match = -1;
+            int j = Math.min(idx - 1, head + tailLength - findLength);
+            for (; j >= 0 && j > head - findLength; j--) { // the find would end in the tail
+                if (matchAt(find, text, head, tail, j)) {
+                    match = j;
+                    break;
+                }
+            }
+            if (match < 0 && j >= 0) {
+                match = text.lastIndexOf(find, j);
+            }
+            if (match < 0) {
+                break;
+            }
+            if (tail == null) {
+                tail = new Tail();
+            }
+            if (match + findLength < head) {
+                tail.push(text, match + findLength, head);
+            } else {
+                tail.removeFront(match + findLength - head); // part of the find is in the tail already
+            }
+            tail.push(replacement, 0, replacement.length());
+            head = match;
+            idx = match;
+        }
+        if (tail == null) {
+            return text;
+        }
+        StringBuilder replaced = new StringBuilder(head + tail.length);
+        replaced.append(text, 0, head);
+        for (int i = tail.size - 1; i >= 0; i--) {
+            replaced.append(tail.sources[i], tail.starts[i], tail.ends[i]);
+        }
+        return replaced.toString();
+    }
+
+    private static boolean matchAt(String find, String text, int head, Tail tail, int offset) {
+        for (int i = 0; i < find.length(); i++) {
+            int k = offset + i;
+            char c = k < head ? text.charAt(k) : tail.charAt(k - head);
+            if (c != find.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Stack of text pieces, the top is the front of the tail.
+     */
+    private static final class Tail {
+        String[] sources = new String[16];
+        int[] starts = new int[16];
+        int[] ends = new int[16];
+        int size;
+        int length;
+
+        void push(String source, int start, int end) {
+            if (start == end) {
+                return;
+            }
+            if (size == sources.length) {
+                sources = Arrays.copyOf(sources, size * 2);
+                starts = Arrays.copyOf(starts, size * 2);
+                ends = Arrays.copyOf(ends, size * 2);
+            }
+            sources[size] = source;
+            starts[size] = start;
+            ends[size] = end;
+            size++;
+            length += end - start;
+        }
+
+        void removeFront(int count) {
+            length -= count;
+            while (count > 0) {
+                int pieceLength = ends[size - 1] - starts[size - 1];
+                if (pieceLength > count) {
+                    starts[size - 1] += count;
+                    return;
+                }
+                count -= pieceLength;
+                sources[--size] = null;
+            }
+        }
+
+        char charAt(int index) {
+            for (int i = size - 1; ; i--) {
+                int pieceLength = ends[i] - starts[i];
+                if (index < pieceLength) {
+                    return sources[i].charAt(starts[i] + index);
+                }
+                index -= pieceLength;
+            }
+        }
+    }
+
+    /**
+     * Scan from the root of the automaton for the leftmost longest find starting at from or after. The scan goes
+     * on past a match only while a longer match at the same start or an earlier start is still possible, so at
+     * most the length of the longest find is scanned again from the end of the match.
+     *
+     * @return start of the match in the high int and its find node in the low int, -1 if none.
+     */
+    private long findNext(String text, int from) {
+        int state = ROOT;
+        int bestStart = -1;
+        int bestNode = -1;
+        for (int i = from, length = text.length(); i < length; i++) {
+            state = next(state, text.charAt(i));
+            int end = i + 1;
+            for (int node = output[state] >= 0 ? state : outputLink[state]; node > ROOT; node = outputLink[node]) {
+                int start = end - depth[node];
+                if (bestNode < 0 || start < bestStart || (start == bestStart && depth[node] > depth[bestNode])) {
+                    bestStart = start;
+                    bestNode = node;
+                }
+            }
+            if (bestNode >= 0 && end - depth[state] > bestStart) {
+                break;
+            }
+        }
+        return bestNode < 0 ? -1 : ((long) bestStart << 32) | bestNode;
+    }
+
+    private int next(int state, char c) {
+        while (true) {
+            int child = child(state, c);
+            if (child >= 0) {
+                return child;
+            }
+            if (state == ROOT) {
+                return ROOT;
+            }
+            state = fail[state];
+        }
+    }
+
+    private int child(int state, char c) {
+        if (state == ROOT && c < ASCII) {
+            return rootAscii[c];
+        }
+        char[] chars = childChars[state];
+        int i = chars.length < 8 ? linearSearch(chars, c) : Arrays.binarySearch(chars, c);
+        return i >= 0 ? children[state][i] : -1;
+    }
+
+    private static int linearSearch(char[] chars, char c) {
+        for (int i = 0; i < chars.length; i++) {
+            if (chars[i] == c) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private void addChild(int node, char c, int child) {
+        char[] chars = childChars[node];
+        int at = -(Arrays.binarySearch(chars, c) + 1);
+        char[] newChars = new char[chars.length + 1];
+        int[] newChildren = new int[chars.length + 1];
+        System.arraycopy(chars, 0, newChars, 0, at);
+        System.arraycopy(children[node], 0, newChildren, 0, at);
+        newChars[at] = c;
+        newChildren[at] = child;
+        System.arraycopy(chars, at, newChars, at + 1, chars.length - at);
+        System.arraycopy(children[node], at, newChildren, at + 1, chars.length - at);
+        childChars[node] = newChars;
+        children[node] = newChildren;
+        if (node == ROOT && c < ASCII) {
+            rootAscii[c] = child;
+        }
+    }
+}
@@ -0,0 +1,317 @@
+package org.mangocube.corenut.commons.util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+
+/**
+ * A set of Ant-style path patterns matched together, every pattern matches the same paths as
+ * {@link AntPathMatcher#match(String, String)} with the same path separator.
+ * <p/>
+ * The patterns are merged into a trie of their segments, a literal segment is looked up by hash, a wildcard
+ * segment is matched by its compiled pattern, and a '**' node stays active for any number of path segments. A path
+ * is matched in one pass over its segments whatever the number of patterns sharing a prefix.
+ * <pre>
+ * PatternSet rules = new PatternSet();
+ * int admin = rules.add("/admin/**");
+ * int pages = rules.add("/**&#47;*.jsp");
+ * int[] ids = rules.matchAll("/admin/users/list.jsp"); // {admin, pages}
+ * </pre>
+ * Patterns must be added before the set is shared, matching is thread-safe.
+ *
+ * @since 1.0
+ */
+public class PatternSet {
+    private final String pathSeparator;
+    private final char[] separators;
+    private final List<String> patterns = new ArrayList<String>();
+    private final Node absoluteRoot;
+    private final Node relativeRoot;
+    private int nodeCount;
+
+    public PatternSet() {
+        this(AntPathMatcher.DEFAULT_PATH_SEPARATOR);
+    }
+
+    /**
+     * @param pathSeparator the path separator to use for pattern parsing. Default is "/", as in Ant.
+     */
+    public PatternSet(String pathSeparator) {
+        this.pathSeparator = pathSeparator != null ? pathSeparator : AntPathMatcher.DEFAULT_PATH_SEPARATOR;
+        this.separators = this.pathSeparator.toCharArray();
+        this.absoluteRoot = newNode(false);
+        this.relativeRoot = newNode(false);
+    }
+
+    /**
+     * @param pattern the Ant-style pattern, must not be <code>null</code>.
+     * @return id of the pattern, the ids are numbered from 0 in the order of adding.
+     */
+    public int add(String pattern) {
+        int id = patterns.size();
+        String[] patDirs = AntPathMatcher.tokenizeToStringArray(pattern, pathSeparator);
+        Node node = pattern.startsWith(pathSeparator) ? absoluteRoot : relativeRoot;
+        boolean doubleStar = false;
+        for (String patDir : patDirs) {
+            if (patDir.equals("**")) {
+                doubleStar = true;
+                if (!node.doubleStar) { // '**/**' is a single '**'
+                    if (node.anyDirs == null) {
+                        node.anyDirs = newNode(true);
+                    }
+                    node = node.anyDirs;
+                }
+            } else {
+                node = node.child(patDir, this);
+            }
+        }
+        node.ids = append(node.ids, id);
+
+        // without '**', a single trailing '*' also matches the directory path ending with the separator
+        if (!doubleStar && patDirs.length > 0 && patDirs[patDirs.length - 1].equals("*")) {
+            Node parent = pattern.startsWith(pathSeparator) ? absoluteRoot : relativeRoot;
+            for (int i = 0; i < patDirs.length - 1; i++) {
+                parent = parent.child(patDirs[i], this);
+            }
+            parent.directoryIds = append(parent.directoryIds, id);
+        }
+        patterns.add(pattern);
+        return id;
+    }
+
+    public String getPattern(int id) {
+        return patterns.get(id);
+    }
+
+    public int size() {
+        return patterns.size();
+    }
+
+    /**
+     * @return the least id of the patterns matching the path, -1 if none.
+     */
+    public int matchAny(CharSequence path) {
+        BitSet matched = match(path);
+        return matched.nextSetBit(0);
+    }
+
+    /**
+     * @return ids of all the patterns matching the path in ascending order, an empty array if none.
+     */
+    public int[] matchAll(CharSequence path) {
+        BitSet matched = match(path);
+        int[] ids = new int[matched.cardinality()];
+        for (int i = 0, id = matched.nextSetBit(0); id >= 0; id = matched.nextSetBit(id + 1)) {
+            ids[i++] = id;
+        }
+        return ids;
+    }
+
+    private BitSet match(CharSequence path) {
+        BitSet matched = new BitSet(patterns.size());
+        int end = path.length();
+        Node root = AntPathMatcher.regionStartsWith(pathSeparator, path, 0, end) ? absoluteRoot : relativeRoot;
+
+        // the active nodes of the current and next segment, marks keep a node once in a list
+        Node[] current = new Node[nodeCount];
+        Node[] next = new Node[nodeCount];
+        int[] marks = new int[nodeCount];
+        int step = 1;
+        int size = activate(root, current, 0, marks, step);
+
+        int segStart = AntPathMatcher.segmentStart(separators, path, 0, end);
+        while (segStart >= 0 && size > 0) {
+            int segEnd = AntPathMatcher.segmentEnd(separators, path, segStart, end);
+            int hash = hash(path, segStart, segEnd);
+            step++;
+            int nextSize = 0;
+            for (int i = 0; i < size; i++) {
+                Node node = current[i];
+                if (node.doubleStar) {
+                    nextSize = activate(node, next, nextSize, marks, step);
+                }
+                Node literal = node.literal(path, segStart, segEnd, hash);
+                if (literal != null) {
+                    nextSize = activate(literal, next, nextSize, marks, step);
+                }
+                for (int j = 0; j < node.wildcardCount; j++) {
+                    if (node.wildcards[j].match(path, segStart, segEnd)) {
+                        nextSize = activate(node.wildcardNodes[j], next, nextSize, marks, step);
+                    }
+                }
+            }
+            Node[] swap = current;
+            current = next;
+            next = swap;
+            size = nextSize;
+            segStart = AntPathMatcher.segmentStart(separators, path, segEnd, end);
+        }
+        if (segStart >= 0) {
+            return matched; // no pattern is left for the rest of the path
+        }
+
+        boolean directory = AntPathMatcher.regionEndsWith(pathSeparator, path, 0, end);
+        for (int i = 0; i < size; i++) {
+            Node node = current[i];
+            set(matched, node.ids);
+            if (directory) {
+                set(matched, node.directoryIds);
+            }
+        }
+        return matched;
+    }
+
+    /**
+     * Add the node and the '**' below it, which also matches zero segments.
+     */
+    private static int activate(Node node, Node[] active, int size, int[] marks, int step) {
+        if (marks[node.index] != step) {
+            marks[node.index] = step;
+            active[size++] = node;
+        }
+        Node anyDirs = node.anyDirs;
+        if (anyDirs != null && marks[anyDirs.index] != step) {
+            marks[anyDirs.index] = step;
+            active[size++] = anyDirs;
+        }
+        return size;
+    }
+
+    private static void set(BitSet matched, int[] ids) {
+        if (ids != null) {
+            for (int id : ids) {
+                matched.set(id);
+            }
+        }
+    }
+
+    private static int[] append(int[] ids, int id) {
+        if (ids == null) {
+            return new int[]{id};
+        }
+        int[] appended = Arrays.copyOf(ids, ids.length + 1);
+        appended[ids.length] = id;
+        return appended;
+    }
+
+    private static int hash(CharSequence path, int start, int end) {
+        int hash = 0;
+        for (int i = start; i < end; i++) {
+            hash = 31 * hash + path.charAt(i);
+        }
+        return hash;
+    }
+
+    private Node newNode(boolean doubleStar) {
+        return new Node(nodeCount++, doubleStar);
+    }
+
+    private static final class Node {
+        final int index;
+        final boolean doubleStar;
+        Node anyDirs;
+        int[] ids;
+        int[] directoryIds;
+
+        /**
+         * Literal children in an open addressing table, probed by the hash of the path segment.
+         */
+        String[] literalKeys = new String[0];
+        Node[] literalNodes = new Node[0];
+        int literalCount;
+
+        String[] wildcardKeys = new String[0];
+        AntPathMatcher.SegmentPattern[] wildcards = new AntPathMatcher.SegmentPattern[0];
+        Node[] wildcardNodes = new Node[0];
+        int wildcardCount;
+
+        Node(int index, boolean doubleStar) {
+            this.index = index;
+            this.doubleStar = doubleStar;
+        }
+
+        Node child(String segment, PatternSet set) {
+            if (segment.indexOf('*') == -1 && segment.indexOf('?') == -1) {
+                Node child = literal(segment, 0, segment.length(), segment.hashCode());
+                if (child == null) {
+                    child = set.newNode(false);
+                    putLiteral(segment, child);
+                }
+                return child;
+            }
+            for (int i = 0; i < wildcardCount; i++) {
+                if (wildcardKeys[i].equals(segment)) {
+                    return wildcardNodes[i];
+                }
+            }
+            if (wildcardCount == wildcards.length) {
+                int capacity = Math.max(2, wildcardCount * 2);
+                wildcardKeys = Arrays.copyOf(wildcardKeys, capacity);
+                wildcards = Arrays.copyOf(wildcards, capacity);
+                wildcardNodes = Arrays.copyOf(wildcardNodes, capacity);
+            }
+            Node child = set.newNode(false);
+            wildcardKeys[wildcardCount] = segment;
+            wildcards[wildcardCount] = new AntPathMatcher.SegmentPattern(segment);
+            wildcardNodes[wildcardCount] = child;
+            wildcardCount++;
+            return child;
+        }
+
+        Node literal(CharSequence path, int start, int end, int hash) {
+            if (literalCount == 0) {
+                return null;
+            }
+            int mask = literalKeys.length - 1;
+            for (int i = hash & mask; ; i = (i + 1) & mask) {
+                String key = literalKeys[i];
+                if (key == null) {
+                    return null;
+                }
+                if (key.hashCode() == hash && regionEquals(key, path, start, end)) {
+                    return literalNodes[i];
+                }
+            }
+        }
+
+        private void putLiteral(String key, Node node) {
+            if ((literalCount + 1) * 2 > literalKeys.length) {
+                String[] keys = literalKeys;
+                Node[] nodes = literalNodes;
+                int capacity = Math.max(4, keys.length * 2);
+                literalKeys = new String[capacity];
+                literalNodes = new Node[capacity];
+                for (int i = 0; i < keys.length; i++) {
+                    if (keys[i] != null) {
+                        insertLiteral(keys[i], nodes[i]);
+                    }
+                }
+            }
+            insertLiteral(key, node);
+            literalCount++;
+        }
+
+        private void insertLiteral(String key, Node node) {
+            int mask = literalKeys.length - 1;
+            int i = key.hashCode() & mask;
+            while (literalKeys[i] != null) {
+                i = (i + 1) & mask;
+            }
+            literalKeys[i] = key;
+            literalNodes[i] = node;
+        }
+
+        private static boolean regionEquals(String key, CharSequence path, int start, int end) {
+            if (key.length() != end - start) {
+                return false;
+            }
+            for (int i = 0; i < key.length(); i++) {
+                if (key.charAt(i) != path.charAt(start + i)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+}
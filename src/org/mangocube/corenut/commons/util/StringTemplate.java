@@ -1,19 +1,23 @@
 package org.mangocube.corenut.commons.util;
 
 import org.mangocube.corenut.commons.bean.BeanPropertyUtil;
+import org.mangocube.corenut.commons.bean.CompiledPropertyPath;
 import org.mangocube.corenut.commons.exception.ErrorCode;
 import org.mangocube.corenut.commons.exception.UncheckedException;
 import org.mangocube.corenut.commons.io.resource.ResourcePatternResolver;
 import org.apache.commons.jexl.Expression;
 import org.apache.commons.jexl.ExpressionFactory;
 import org.apache.commons.jexl.JexlContext;
-import org.apache.commons.jexl.JexlHelper;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 
 import java.io.*;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * This class use replace the parameter define in the template string.
@@ -24,6 +28,10 @@ import java.util.Map;
  * the ${exp} will be replace by the exp evla value
  * if the template define teh parameter use ${propertyeName}.the propertyName will be property in a javaBean,will find
  * the property value in the parameter and replace the ${propertyName}
+ * <p>A template is parsed once by {@link #compile(String)} into literal and expression segments, expressions keep
+ * their parsed index, JEXL expression and bean property path, so rendering doesn't scan the template again. The
+ * static generate methods compile through a bounded cache keyed by the template text. A compiled template also
+ * renders straight into a Writer, an OutputStream or a reusable CharBuffer, see {@link #render(Object, Appendable)}.
  * @since 1.0
  */
 public class StringTemplate {
@@ -47,11 +55,42 @@ public class StringTemplate {
     private static final char SEPARATOR = '$';
     private static final BeanPropertyUtil beanUtil = new BeanPropertyUtil();
     private static final ResourcePatternResolver resourceLoader = ResourcePatternResolver.getInstance();
+    private static final int MAX_COMPILED_TEMPLATES = 1000;
+    private static final ConcurrentHashMap<String, StringTemplate> compiledTemplates =
+            new ConcurrentHashMap<String, StringTemplate>();
 
-    String template;
+    final String template;
+    private final Segment[] segments;
 
     private StringTemplate(String resource) {
-        this.template = getTemplateFromResource(resource);
+        this(getTemplateFromResource(resource), true);
+    }
+
+    private StringTemplate(String template, boolean parse) {
+        this.template = template;
+        this.segments = parse(template);
+    }
+
+    /**
+     * Parse the template once, the compiled template renders with any parameters by the generate methods. Compiled
+     * templates are cached by the template text.
+     *
+     * @param template the string template.
+     * @return compiled template, immutable and thread-safe.
+     */
+    public static StringTemplate compile(String template) {
+        StringTemplate compiled = compiledTemplates.get(template);
+        if (compiled == null) {
+            compiled = new StringTemplate(template, true);
+            if (compiledTemplates.size() >= MAX_COMPILED_TEMPLATES) {
+                compiledTemplates.clear();
+            }
+            StringTemplate exists = compiledTemplates.putIfAbsent(template, compiled);
+            if (exists != null) {
+                compiled = exists;
+            }
+        }
+        return compiled;
     }
 
     /**
@@ -62,7 +101,7 @@ public class StringTemplate {
      * @return the result string paraser.
      */
     public static String generate(String template, Object... parameters) {
-        return parserTemplate(template, parameters);
+        return parameters == null ? template : compile(template).render(parameters);
     }
 
     /**
@@ -73,7 +112,7 @@ public class StringTemplate {
      * @return the result string paraser.
      */
     public static String generate(String template, List parameters) {
-        return parserTemplate(template, parameters);
+        return parameters == null ? template : compile(template).render(parameters);
     }
 
     /**
@@ -86,7 +125,7 @@ public class StringTemplate {
      * @return the result string paraser.
      */
     public static String generate(String template, Map parameters) {
-        return parserTemplate(template, parameters);
+        return parameters == null ? template : compile(template).render(parameters);
     }
 
     /**
@@ -98,15 +137,7 @@ public class StringTemplate {
      * @return the result string paraser
      */
     public static String generate(String template, Object paramster) {
-        String ret = "";
-        if (paramster instanceof Map) {
-            ret = generate(template, (Map) paramster);
-        } else if (paramster instanceof List) {
-            ret = generate(template, (List) paramster);
-        } else {
-            ret = parserTemplate(template, paramster);
-        }
-        return ret;
+        return paramster == null ? template : compile(template).render(paramster);
     }
 
     /**
@@ -126,7 +157,7 @@ public class StringTemplate {
      * @return the result string paraser.
      */
     public String generate(Object... parameters) {
-        return parserTemplate(this.template, parameters);
+        return render(parameters);
     }
 
     /**
@@ -137,7 +168,7 @@ public class StringTemplate {
      * @return the result string paraser.
      */
     public String generate(List parameters) {
-        return parserTemplate(this.template, parameters);
+        return render(parameters);
     }
 
     /**
@@ -150,7 +181,7 @@ public class StringTemplate {
      * @return the result string paraser.
      */
     public String generate(Map parameters) {
-        return parserTemplate(this.template, parameters);
+        return render(parameters);
     }
 
     /**
@@ -162,28 +193,76 @@ public class StringTemplate {
      * @return the result string paraser
      */
     public String generate(Object paramster) {
-        String ret = "";
-        if (paramster instanceof Map) {
-            ret = this.generate((Map) paramster);
-        } else if (paramster instanceof List) {
-            ret = this.generate((List) paramster);
+        return render(paramster);
+    }
+
+    /**
+     * Render the template into out, e.g. a Writer of a servlet response or a file, without building the result in
+     * memory. The parameters are taken the same way as {@link #generate(Object)}, an array is taken as indexed
+     * parameters.
+     *
+     * @param parameters the parameters of the template, null to write the template as is.
+     * @param out        destination of the result.
+     * @throws IOException fail to append to out.
+     */
+    public void render(Object parameters, Appendable out) throws IOException {
+        if (parameters == null) {
+            out.append(template);
+        } else if (parameters instanceof Map) {
+            //one context for all expressions, backed by the parameters without copying.
+            JexlContext context = new MapContext((Map) parameters);
+            for (Segment segment : segments) {
+                segment.appendForMap(out, context);
+            }
+        } else if (parameters instanceof Object[]) {
+            Object[] parameter = (Object[]) parameters;
+            for (Segment segment : segments) {
+                segment.appendForVariational(out, parameter);
+            }
+        } else if (parameters instanceof List) {
+            List parameter = (List) parameters;
+            for (Segment segment : segments) {
+                segment.appendForList(out, parameter);
+            }
         } else {
-            ret = parserTemplate(this.template, paramster);
+            for (Segment segment : segments) {
+                segment.appendForBean(out, parameters);
+            }
+        }
+    }
+
+    /**
+     * Render the template encoded with the charset into out, see {@link #render(Object, Appendable)}. The stream
+     * is flushed but not closed.
+     */
+    public void render(Object parameters, OutputStream out, Charset charset) throws IOException {
+        Writer writer = new OutputStreamWriter(out, charset);
+        render(parameters, writer);
+        writer.flush();
+    }
+
+    /**
+     * Render the template into a reusable buffer, see {@link #render(Object, Appendable)}. The buffer is cleared
+     * first, when the result doesn't fit, a buffer of enough capacity is allocated instead.
+     *
+     * @param buffer the buffer to reuse, may be null.
+     * @return the buffer holding the result, flipped for reading. Pass it to the next call to reuse it.
+     */
+    public CharBuffer render(Object parameters, CharBuffer buffer) {
+        GrowingCharBuffer out = new GrowingCharBuffer(buffer, template.length() + 16 * segments.length);
+        try {
+            render(parameters, out);
+        } catch (IOException e) {
+            // the buffer grows instead of throwing
         }
-        return ret;
+        return out.flip();
     }
 
     private static String getTemplateFromResource(String resource) {
-        StringBuilder ret = new StringBuilder();        
-        BufferedReader reader = null;
+        Reader reader = null;
         try {
-           InputStream template  = resourceLoader.getResource(resource).getInputStream();
-           InputStreamReader streamReader = new InputStreamReader(template);
-            reader = new BufferedReader(streamReader);
-            String line;
-            while ((line = reader.readLine()) != null) {
-                ret.append(line).append("\n");
-            }
+            reader = new InputStreamReader(resourceLoader.getResource(resource).getInputStream());
+            return readLines(reader);
         } catch (IOException e) {
             throw new UncheckedException(StringTempletError.CAN_ONT_READ_FROM_RESOURCE, e, resource);
         } finally {
@@ -195,80 +274,222 @@ public class StringTemplate {
                 }
             }
         }
+    }
+
+    /**
+     * Read all in blocks, every line is ended by "\n" as when read by lines, a line may be terminated by "\n",
+     * "\r" or "\r\n".
+     */
+    private static String readLines(Reader reader) throws IOException {
+        StringBuilder ret = new StringBuilder(8192);
+        char[] block = new char[8192];
+        boolean cr = false;
+        int read;
+        while ((read = reader.read(block)) != -1) {
+            int from = 0;
+            for (int i = 0; i < read; i++) {
+                char c = block[i];
+                if (c == '\r') {
+                    ret.append(block, from, i - from).append('\n');
+                    from = i + 1;
+                    cr = true;
+                } else {
+                    if (c == '\n' && cr) {
+                        ret.append(block, from, i - from);
+                        from = i + 1;
+                    }
+                    cr = false;
+                }
+            }
+            ret.append(block, from, read - from);
+        }
+        if (ret.length() > 0 && ret.charAt(ret.length() - 1) != '\n') {
+            ret.append('\n');
+        }
         return ret.toString();
     }
 
-    private static String parserTemplate(String template, Object parameters) {
-        StringBuilder builder = new StringBuilder();
+    private String render(Object parameters) {
         if (parameters == null) {
             return template;
         }
-        for (int i = 0; i < template.length(); i++) {
+        StringBuilder builder = new StringBuilder(template.length() + 16 * segments.length);
+        try {
+            render(parameters, builder);
+        } catch (IOException e) {
+            // StringBuilder never throws
+        }
+        return builder.toString();
+    }
+
+    private static Segment[] parse(String template) {
+        List<Segment> segments = new ArrayList<Segment>();
+        int literal = 0;
+        for (int i = 0; i < template.length() - 1; i++) {
             if (SEPARATOR == template.charAt(i) && PREFIX == template.charAt(i + 1)) {
                 int start = i + 1;
                 int end = template.indexOf(POSTFIX, start);
                 if (end == -1) throw new UncheckedException(StringTempletError.INVALID_EXPRESSION_FORMAT);
-                String expression = template.substring(start + 1, end).trim();
-
-                String result = null;
-                if (parameters instanceof Map) {
-                    Map parameter = (Map) parameters;
-                    result = evalParameterForMap(expression, parameter);
-                } else if (parameters instanceof Object[]) {
-                    Object[] parameter = (Object[]) parameters;
-                    result = evalParameterForVariational(expression, parameter);
-                } else if (parameters instanceof List) {
-                    List parameter = (List) parameters;
-                    result = evalParameterForList(expression, parameter);
-                } else {
-                    result = evalParmaterForBean(expression, parameters);
+                if (literal < i) {
+                    segments.add(new Segment(template.substring(literal, i), false));
                 }
-                builder.append(result != null ? result : "");
+                segments.add(new Segment(template.substring(start + 1, end).trim(), true));
                 i = end;
-            } else {
-                builder.append(template.charAt(i));
+                literal = end + 1;
             }
         }
-        return builder.toString();
+        if (literal < template.length()) {
+            segments.add(new Segment(template.substring(literal), false));
+        }
+        return segments.toArray(new Segment[segments.size()]);
     }
 
-    private static String evalParameterForMap(String exp, Map parameters) {
-        try {
-            Expression expression = ExpressionFactory.createExpression(exp);
-            JexlContext evaluateContext = JexlHelper.createContext();
-            addParameters(evaluateContext, parameters);
-            Object ret = expression.evaluate(evaluateContext);
-            return ret == null ? "" : ret.toString();
-        } catch (Exception e) {
-            throw new UncheckedException(StringTempletError.EVALUATE_FAIL, e, exp);
+    /**
+     * Literal text, or an expression with its index, JEXL expression and bean property path parsed on first use by
+     * the kind of parameters.
+     */
+    private static final class Segment {
+        private final String text;
+        private final boolean expression;
+        private final Integer index;
+        private volatile Expression jexlExpression;
+        private volatile CompiledPropertyPath propertyPath;
+
+        Segment(String text, boolean expression) {
+            this.text = text;
+            this.expression = expression;
+            this.index = expression ? parseIndex(text) : null;
         }
-    }
 
-    @SuppressWarnings("unchecked")
-    private static void addParameters(JexlContext evaluateContext, Map parameters) {
-        for (Object e : parameters.entrySet()) {
-            Map.Entry entry = (Map.Entry) e;
-            evaluateContext.getVars().put(entry.getKey(), entry.getValue());
+        private static Integer parseIndex(String exp) {
+            try {
+                return Integer.valueOf(exp) - 1;
+            } catch (NumberFormatException e) {
+                return null;
+            }
+        }
+
+        void appendForMap(Appendable out, JexlContext context) throws IOException {
+            if (!expression) {
+                out.append(text);
+                return;
+            }
+            Object ret;
+            try {
+                Expression exp = jexlExpression;
+                if (exp == null) {
+                    exp = ExpressionFactory.createExpression(text);
+                    jexlExpression = exp;
+                }
+                ret = exp.evaluate(context);
+            } catch (Exception e) {
+                throw new UncheckedException(StringTempletError.EVALUATE_FAIL, e, text);
+            }
+            if (ret != null) {
+                out.append(ret.toString());
+            }
+        }
+
+        void appendForVariational(Appendable out, Object[] parameters) throws IOException {
+            if (!expression) {
+                out.append(text);
+                return;
+            }
+            int i = index();
+            out.append(i < parameters.length && i >= 0 ? parameters[i].toString() : text);
+        }
+
+        void appendForList(Appendable out, List parameters) throws IOException {
+            if (!expression) {
+                out.append(text);
+                return;
+            }
+            int i = index();
+            out.append(i < parameters.size() && i >= 0 ? parameters.get(i).toString() : text);
+        }
+
+        void appendForBean(Appendable out, Object bean) throws IOException {
+            if (!expression) {
+                out.append(text);
+                return;
+            }
+            CompiledPropertyPath path = propertyPath;
+            if (path == null) {
+                path = beanUtil.compile(text);
+                propertyPath = path;
+            }
+            out.append(path.getValue(bean).toString());
         }
-    }
 
-    private static String evalParameterForVariational(String exp, Object... parameters) {
-        int index = Integer.valueOf(exp) - 1;
-        if (parameters != null && index < parameters.length && index >= 0) {
-            return parameters[index].toString();
+        private int index() {
+            if (index == null) {
+                throw new NumberFormatException("For input string: \"" + text + "\"");
+            }
+            return index;
         }
-        return exp;
     }
 
-    private static String evalParameterForList(String exp, List parameters) {
-        int index = Integer.parseInt(exp) - 1; 
-        if (parameters != null && index < parameters.size() && index >= 0) { 
-            return parameters.get(index).toString();
+    /**
+     * JEXL context over the caller's parameters map, variables set by expressions go to the map.
+     */
+    private static final class MapContext implements JexlContext {
+        private Map vars;
+
+        MapContext(Map vars) {
+            this.vars = vars;
+        }
+
+        public void setVars(Map vars) {
+            this.vars = vars;
+        }
+
+        public Map getVars() {
+            return vars;
         }
-        return exp;
     }
 
-    private static String evalParmaterForBean(String exp, Object bean) {
-        return beanUtil.getPropertyValue(bean, exp).toString();
+    /**
+     * Appends to a char buffer, moving to a buffer of double capacity when full.
+     */
+    private static final class GrowingCharBuffer implements Appendable {
+        private CharBuffer buffer;
+
+        GrowingCharBuffer(CharBuffer buffer, int initialCapacity) {
+            if (buffer == null) {
+                buffer = CharBuffer.allocate(initialCapacity);
+            }
+            buffer.clear();
+            this.buffer = buffer;
+        }
+
+        public Appendable append(CharSequence csq) {
+            return append(csq, 0, csq.length());
+        }
+
+        public Appendable append(CharSequence csq, int start, int end) {
+            ensureRemaining(end - start);
+            buffer.append(csq, start, end);
+            return this;
+        }
+
+        public Appendable append(char c) {
+            ensureRemaining(1);
+            buffer.put(c);
+            return this;
+        }
+
+        private void ensureRemaining(int length) {
+            if (buffer.remaining() < length) {
+                CharBuffer grown = CharBuffer.allocate(Math.max(buffer.capacity() * 2, buffer.position() + length));
+                buffer.flip();
+                grown.put(buffer);
+                buffer = grown;
+            }
+        }
+
+        CharBuffer flip() {
+            buffer.flip();
+            return buffer;
+        }
     }
 }
@@ -12,6 +12,10 @@ import jregex.Replacer;
 import jregex.Substitution;
 import jregex.TextBuffer;
 
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
 /**
  * TODO dengtailin: Change to the actual description of this class
  * @version   Revision History
@@ -24,7 +28,25 @@ import jregex.TextBuffer;
  */
 
 public class StringUtils {
+	private static final int MAX_COMPILED_REPLACERS = 1000;
+	private static final ConcurrentHashMap<List<String>, LiteralReplacer> compiledReplacers =
+			new ConcurrentHashMap<List<String>, LiteralReplacer>();
+	private static final ConcurrentHashMap<List<String>, LiteralReplacer> compiledOrderedReplacers =
+			new ConcurrentHashMap<List<String>, LiteralReplacer>();
+
+	/**
+	 * Replace all the finds of the replacement pairs {find1, replacement1, find2, replacement2, ...} in a single
+	 * pass, see {@link LiteralReplacer}. The compiled replacer is cached by the replacements.
+	 */
 	public static String replaceAll(String original, String[] replacements) {
+		return replaceAll(original, replacements, false);
+	}
+
+	/**
+	 * @param inPairOrder apply the pairs one after another, the text replaced by a pair is searched by the pairs
+	 *                    after it.
+	 */
+	public static String replaceAll(String original, String[] replacements, boolean inPairOrder) {
 		if (replacements == null || replacements.length == 0
 			|| original == null || original.length() == 0)
 			return original;
@@ -34,19 +56,21 @@ public class StringUtils {
 					"invalid replacements: the length of replacements should be even");
 		}
 
-		StringBuilder buffer = new StringBuilder(original);
-		for (int i = 0; i < replacements.length - 1; i = i + 2) {
-			String find = replacements[i];
-			String replacement = replacements[i + 1];
-
-			int idx = buffer.length();
-			int offset = find.length();
-
-			while ((idx = buffer.lastIndexOf(find, idx - 1)) > -1) {
-				buffer.replace(idx, idx + offset, replacement);
+		ConcurrentHashMap<List<String>, LiteralReplacer> replacers =
+				inPairOrder ? compiledOrderedReplacers : compiledReplacers;
+		LiteralReplacer replacer = replacers.get(Arrays.asList(replacements));
+		if (replacer == null) {
+			replacer = LiteralReplacer.compile(replacements, inPairOrder);
+			if (replacers.size() >= MAX_COMPILED_REPLACERS) {
+				replacers.clear();
+			}
+			// the key is copied, the caller may change its array
+			LiteralReplacer exists = replacers.putIfAbsent(Arrays.asList(replacements.clone()), replacer);
+			if (exists != null) {
+				replacer = exists;
 			}
 		}
-		return buffer.toString();
+		return replacer.replace(original);
 	}
 	
 	public static String regReplaceAll(String original, String[] replacements) {